@@ -3,6 +3,7 @@ plugins {
     id("io.micronaut.application") version "4.4.4"
     id("io.micronaut.test-resources") version "4.4.4"
     id("io.micronaut.aot") version "4.4.4"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 version = "1.0-SNAPSHOT"
@@ -17,12 +18,19 @@ dependencies {
     annotationProcessor("io.micronaut:micronaut-http-validation")
     annotationProcessor("io.micronaut.openapi:micronaut-openapi")
     annotationProcessor("io.micronaut.serde:micronaut-serde-processor")
+    annotationProcessor("io.micronaut.micrometer:micronaut-micrometer-annotation")
     implementation("io.micronaut:micronaut-http-server-netty")
     implementation("io.micronaut:micronaut-runtime")
+    implementation("io.micronaut.reactor:micronaut-reactor")
+    implementation("io.micronaut.micrometer:micronaut-micrometer-core")
+    implementation("io.micronaut.micrometer:micronaut-micrometer-registry-prometheus")
+    implementation("io.micronaut:micronaut-management")
     implementation("io.micronaut.serde:micronaut-serde-jackson")
     implementation("io.micronaut.views:micronaut-views-fieldset")
     implementation("io.micronaut.views:micronaut-views-thymeleaf")
     implementation("io.micronaut:micronaut-jackson-databind")
+    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-cbor")
+    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-smile")
     compileOnly("io.micronaut:micronaut-http-client")
     compileOnly("io.micronaut.openapi:micronaut-openapi-annotations")
     compileOnly("org.projectlombok:lombok")
@@ -31,6 +39,8 @@ dependencies {
     testImplementation("org.testcontainers:junit-jupiter")
     testImplementation("org.testcontainers:testcontainers")
     testImplementation("org.mockito:mockito-core")
+    testImplementation("org.hdrhistogram:HdrHistogram:2.2.2")
+    jmh("org.openjdk.jol:jol-core:0.17")
 
 }
 
@@ -44,7 +54,35 @@ java {
 }
 
 
-graalvmNative.toolchainDetection = false
+// Native profile: ./gradlew nativeCompile builds build/native/nativeCompile/mermaidExample, and
+// ./gradlew nativeSmokeTest runs NativeSmokeTest as a native image. Reachability metadata the
+// annotation processors cannot infer lives in src/main/resources/META-INF/native-image.
+val smokeTest by tasks.registering(Test::class) {
+    description = "Runs NativeSmokeTest on the JVM; nativeSmokeTest runs it as a native image."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform()
+    filter {
+        includeTestsMatching("*NativeSmokeTest")
+    }
+}
+
+graalvmNative {
+    toolchainDetection = false
+    metadataRepository {
+        enabled = true
+    }
+    binaries {
+        named("main") {
+            imageName = "mermaidExample"
+        }
+    }
+    registerTestBinary("smokeTest") {
+        usingSourceSet(sourceSets.test.get())
+        forTestTask(smokeTest)
+    }
+}
 
 micronaut {
     runtime("netty")
@@ -68,6 +106,76 @@ micronaut {
 }
 
 
+tasks.test {
+    // Opt-in load tests, e.g. ./gradlew test -Dpipeline.loadtest=true
+    systemProperty("pipeline.loadtest", System.getProperty("pipeline.loadtest", "false"))
+}
+
+// Open-loop load test against an in-process server; percentiles are printed and full HdrHistogram
+// distributions written to build/reports/loadtest. Pass -Dloadtest.* properties to tune the run,
+// e.g. ./gradlew loadTest -Dloadtest.rate=2000 -Dloadtest.mix=pipeline:8,add:1,delete:1
+tasks.register<Test>("loadTest") {
+    description = "Runs PipelineLoadTest and writes HdrHistogram latency reports."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform()
+    filter {
+        includeTestsMatching("*PipelineLoadTest")
+    }
+    systemProperty("pipeline.loadtest", "true")
+    systemProperty("loadtest.report-dir", layout.buildDirectory.dir("reports/loadtest").get().asFile.absolutePath)
+    System.getProperties().stringPropertyNames()
+        .filter { it.startsWith("loadtest.") }
+        .forEach { systemProperty(it, System.getProperty(it)) }
+    testLogging.showStandardStreams = true
+    outputs.upToDateWhen { false }
+}
+
+// Compiles pipeline.default.properties into a binary snapshot so startup doesn't parse it.
+val pipelineSnapshotDir = layout.buildDirectory.dir("generated/pipeline-snapshot")
+val compilePipelineSnapshot by tasks.registering(JavaExec::class) {
+    description = "Compiles pipeline.default.properties into pipeline.default.snapshot."
+    group = "build"
+    val source = layout.projectDirectory.file("src/main/resources/pipeline.default.properties")
+    val target = pipelineSnapshotDir.map { it.file("pipeline.default.snapshot") }
+    inputs.file(source)
+    outputs.dir(pipelineSnapshotDir)
+    classpath(tasks.named("compileJava"), configurations.runtimeClasspath)
+    mainClass = "com.krickert.search.pipeline.PipelineSnapshotCompiler"
+    argumentProviders.add(CommandLineArgumentProvider {
+        listOf(source.asFile.absolutePath, target.get().asFile.absolutePath)
+    })
+}
+sourceSets.main {
+    output.dir(mapOf("builtBy" to compilePipelineSnapshot), pipelineSnapshotDir)
+}
+
+// Benchmarks live in src/jmh/java; run with ./gradlew jmh, or narrow with -Pjmh.includes=<regex>.
+jmh {
+    jmhVersion = "1.37"
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+    benchmarkMode = listOf("thrpt")
+    timeUnit = "s"
+    // The gc profiler reports gc.alloc.rate.norm (bytes allocated per operation) next to throughput.
+    profilers = listOf("gc")
+    resultFormat = "JSON"
+    if (project.hasProperty("jmh.includes")) {
+        includes = listOf(project.property("jmh.includes").toString())
+    }
+}
+
+// Prints the retained heap of a parsed pipeline's snapshot map and of the PipelineGraph an analysis builds from it.
+tasks.register<JavaExec>("pipelineFootprint") {
+    description = "Measures the heap footprint of pipeline representations with JOL."
+    group = "benchmark"
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass = "com.krickert.search.benchmark.PipelineFootprint"
+    jvmArgs("-Djdk.attach.allowAttachSelf=true", "-XX:+EnableDynamicAgentLoading")
+}
+
 tasks.named<io.micronaut.gradle.docker.NativeImageDockerfile>("dockerfileNative") {
     jdkVersion = "21"
 }
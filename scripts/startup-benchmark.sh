@@ -0,0 +1,57 @@
+#!/usr/bin/env bash
+# Compares JVM and native-image startup: wall time from launch to the first successful
+# GET /pipeline response, and the resident set size of the process at that moment.
+#
+# Usage: scripts/startup-benchmark.sh [runs] [--no-build]
+#   runs        launches per variant (default 5); the median and best are reported
+#   --no-build  reuse build/libs/*-all.jar and build/native/nativeCompile/mermaidExample
+# Environment: PORT (default 18080), JAVA (default java on the PATH).
+# Needs GraalVM 21 for the native build, curl, and GNU date (Linux).
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+RUNS=${1:-5}
+PORT=${PORT:-18080}
+JAVA=${JAVA:-java}
+URL="http://localhost:${PORT}/pipeline"
+
+if [[ "${2:-}" != "--no-build" ]]; then
+  ./gradlew -q shadowJar nativeCompile
+fi
+JAR=$(ls build/libs/*-all.jar | head -n 1)
+NATIVE=build/native/nativeCompile/mermaidExample
+
+# Launches "$@" RUNS times and prints: label, median ms, best ms, median RSS MiB.
+measure() {
+  local label=$1
+  shift
+  local times=() rss=()
+  for ((run = 1; run <= RUNS; run++)); do
+    local start end pid kb
+    start=$(date +%s%N)
+    MICRONAUT_SERVER_PORT=$PORT "$@" > /dev/null 2>&1 &
+    pid=$!
+    until curl -sf -o /dev/null "$URL"; do
+      if ! kill -0 "$pid" 2> /dev/null; then
+        echo "$label exited before answering $URL" >&2
+        exit 1
+      fi
+      sleep 0.005
+    done
+    end=$(date +%s%N)
+    kb=$(ps -o rss= -p "$pid" | tr -d ' ')
+    kill "$pid"
+    wait "$pid" 2> /dev/null || true
+    times+=($(((end - start) / 1000000)))
+    rss+=("$kb")
+  done
+  local sorted_times sorted_rss
+  sorted_times=($(printf '%s\n' "${times[@]}" | sort -n))
+  sorted_rss=($(printf '%s\n' "${rss[@]}" | sort -n))
+  printf '%-8s %12s %10s %14s\n' "$label" "${sorted_times[$((RUNS / 2))]}" "${sorted_times[0]}" \
+    "$((sorted_rss[$((RUNS / 2))] / 1024))"
+}
+
+printf '%-8s %12s %10s %14s\n' variant "median ms" "best ms" "median RSS MiB"
+measure jvm "$JAVA" -jar "$JAR"
+measure native "$NATIVE"
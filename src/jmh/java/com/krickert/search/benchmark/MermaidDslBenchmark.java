@@ -0,0 +1,34 @@
+package com.krickert.search.benchmark;
+
+import com.krickert.search.pipeline.ServiceConfiguration;
+import com.krickert.search.pipeline.render.MermaidDslGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+
+/**
+ * Measures uncached Mermaid DSL generation, i.e. the cost of the first request after every
+ * pipeline change.
+ */
+@State(Scope.Benchmark)
+public class MermaidDslBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    int services;
+
+    private Map<String, ServiceConfiguration> pipeline;
+
+    @Setup
+    public void setUp() {
+        pipeline = SyntheticPipelines.services(services);
+    }
+
+    @Benchmark
+    public String generate() {
+        return MermaidDslGenerator.generate(pipeline);
+    }
+}
@@ -0,0 +1,42 @@
+package com.krickert.search.benchmark;
+
+import com.krickert.search.pipeline.PipelineConfig;
+import com.krickert.search.pipeline.PipelineGraph;
+import com.krickert.search.pipeline.PipelinePropertiesParser;
+import com.krickert.search.pipeline.ServiceConfiguration;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Measures the retained heap of a parsed pipeline's snapshot map, with names shared through the
+ * snapshot's table, and of the {@link PipelineGraph} an analysis builds from it. Snapshots keep
+ * only the map; the graph column is the transient working set of one analysis. Run with
+ * {@code ./gradlew pipelineFootprint}.
+ */
+public final class PipelineFootprint {
+
+    private PipelineFootprint() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1_000, 10_000, 50_000, 100_000};
+        System.out.printf("%10s %10s %16s %16s %8s%n", "services", "edges", "map bytes", "graph bytes", "ratio");
+        for (int services : sizes) {
+            Map<String, PipelineConfig> parsed = PipelinePropertiesParser.parse(
+                    new StringReader(SyntheticPipelines.properties("pipeline1", services)));
+            Map<String, ServiceConfiguration> map = parsed.get("pipeline1").snapshot().services();
+            PipelineGraph graph = PipelineGraph.of(map);
+            long edges = graph.edgeCount(PipelineGraph.Relation.LISTEN) + graph.edgeCount(PipelineGraph.Relation.PUBLISH)
+                    + graph.edgeCount(PipelineGraph.Relation.FORWARD);
+            long mapBytes = GraphLayout.parseInstance(map).totalSize();
+            long graphBytes = GraphLayout.parseInstance(graph).totalSize();
+            System.out.printf("%10d %10d %16d %16d %7.2fx%n", services, edges, mapBytes, graphBytes,
+                    (double) mapBytes / graphBytes);
+        }
+    }
+}
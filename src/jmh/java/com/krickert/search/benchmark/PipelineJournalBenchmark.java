@@ -0,0 +1,165 @@
+package com.krickert.search.benchmark;
+
+import com.krickert.search.pipeline.PipelineConfig;
+import com.krickert.search.pipeline.PipelineExecution;
+import com.krickert.search.pipeline.PipelineSnapshot;
+import com.krickert.search.pipeline.ServiceConfigurationDto;
+import com.krickert.search.pipeline.journal.PipelineJournal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Write throughput and recovery time of the {@link PipelineJournal}.
+ * <p>
+ * {@code append} runs eight threads, each editing its own pipeline and waiting for the change to
+ * be durable, so fsyncs are shared between threads. {@code recover} times a restart over a
+ * journal of {@code entries} records, either replayed in full or from the last compacted
+ * snapshot; the journal is written once per trial without fsync to keep setup short.
+ */
+public class PipelineJournalBenchmark {
+
+    static final int SERVICES = 100;
+    static final int PIPELINES = 16;
+
+    @State(Scope.Benchmark)
+    public static class Journal {
+
+        @Param({"true", "false"})
+        boolean fsync;
+
+        Path directory;
+        PipelineJournal journal;
+        final AtomicInteger pipelines = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("journal-append");
+            journal = open(directory, fsync, 100_000);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            journal.close();
+            delete(directory);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+
+        PipelineConfig pipeline;
+        ServiceConfigurationDto[] updates;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(Journal journal) {
+            pipeline = new PipelineConfig("pipeline-" + journal.pipelines.getAndIncrement());
+            pipeline.setService(SyntheticPipelines.services(SERVICES));
+            pipeline.addChangeListener(journal.journal::onPipelineChange);
+            updates = new ServiceConfigurationDto[SERVICES];
+            for (int i = 0; i < SERVICES; i++) {
+                updates[i] = SyntheticPipelines.dto(i, SERVICES);
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Recovery {
+
+        @Param({"1000000", "5000000"})
+        int entries;
+
+        // Records between compacted snapshots; the larger value means a full replay.
+        @Param({"100000", "1000000000"})
+        long snapshotEvery;
+
+        Path directory;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            directory = Files.createTempDirectory("journal-recover");
+            PipelineJournal journal = open(directory, false, snapshotEvery);
+            PipelineConfig[] pipelines = new PipelineConfig[PIPELINES];
+            for (int p = 0; p < PIPELINES; p++) {
+                pipelines[p] = new PipelineConfig("pipeline-" + p);
+                pipelines[p].addChangeListener(journal::onPipelineChange);
+            }
+            PipelineSnapshot last = null;
+            for (int i = 0; i < entries; i++) {
+                last = pipelines[i % PIPELINES].addOrUpdateService(
+                        SyntheticPipelines.dto((i / PIPELINES) % SERVICES, SERVICES));
+                if (i % 10_000 == 9_999) {
+                    // Keep the queue from filling while the writer catches up.
+                    journal.awaitDurable(last.name(), last.version());
+                }
+            }
+            journal.awaitDurable(last.name(), last.version());
+            journal.close();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            delete(directory);
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public PipelineSnapshot append(Journal journal, Writer writer) {
+        ServiceConfigurationDto dto = writer.updates[writer.next];
+        writer.next = writer.next + 1 == writer.updates.length ? 0 : writer.next + 1;
+        PipelineSnapshot snapshot = writer.pipeline.addOrUpdateService(dto);
+        journal.journal.awaitDurable(snapshot.name(), snapshot.version());
+        return snapshot;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public int recover(Recovery recovery) throws Exception {
+        PipelineJournal journal = open(recovery.directory, false, recovery.snapshotEvery);
+        int pipelines = journal.pipelines().size();
+        journal.close();
+        return pipelines;
+    }
+
+    static PipelineJournal open(Path directory, boolean fsync, long snapshotEvery) throws IOException {
+        PipelineJournal journal = new PipelineJournal(new PipelineExecution("platform", 1), new SimpleMeterRegistry(),
+                directory.toString(), fsync, snapshotEvery, 1024, 100_000, Duration.ofSeconds(30));
+        journal.open();
+        return journal;
+    }
+
+    static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
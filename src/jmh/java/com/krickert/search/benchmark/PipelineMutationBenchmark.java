@@ -0,0 +1,57 @@
+package com.krickert.search.benchmark;
+
+import com.krickert.search.pipeline.PipelineConfig;
+import com.krickert.search.pipeline.PipelineSnapshot;
+import com.krickert.search.pipeline.ServiceConfigurationDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@link PipelineConfig#addOrUpdateService} and {@link PipelineConfig#deleteService}
+ * against pipelines of increasing size. Each invocation touches a different service so the
+ * copy-on-write index is exercised across the whole graph rather than one hot entry.
+ */
+@State(Scope.Benchmark)
+public class PipelineMutationBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    int services;
+
+    private PipelineConfig pipeline;
+    private ServiceConfigurationDto[] updates;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        pipeline = new PipelineConfig("pipeline1");
+        pipeline.setService(SyntheticPipelines.services(services));
+        updates = new ServiceConfigurationDto[services];
+        for (int i = 0; i < services; i++) {
+            updates[i] = SyntheticPipelines.dto(i, services);
+        }
+    }
+
+    @Benchmark
+    public PipelineSnapshot addOrUpdateService() {
+        return pipeline.addOrUpdateService(nextUpdate());
+    }
+
+    /**
+     * Deletes a service and adds it back, so the pipeline size stays constant across iterations.
+     */
+    @Benchmark
+    public PipelineSnapshot deleteAndRestoreService() {
+        ServiceConfigurationDto dto = nextUpdate();
+        pipeline.deleteService(dto.getName());
+        return pipeline.addOrUpdateService(dto);
+    }
+
+    private ServiceConfigurationDto nextUpdate() {
+        ServiceConfigurationDto dto = updates[next];
+        next = next + 1 == updates.length ? 0 : next + 1;
+        return dto;
+    }
+}
@@ -0,0 +1,36 @@
+package com.krickert.search.benchmark;
+
+import com.krickert.search.pipeline.PipelineConfig;
+import com.krickert.search.pipeline.PipelinePropertiesParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+/**
+ * Measures {@link PipelinePropertiesParser}, the path {@code DefaultPipelineConfig} takes when
+ * no build-time snapshot is available.
+ */
+@State(Scope.Benchmark)
+public class PropertiesParseBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    int services;
+
+    private String properties;
+
+    @Setup
+    public void setUp() {
+        properties = SyntheticPipelines.properties("pipeline1", services);
+    }
+
+    @Benchmark
+    public Map<String, PipelineConfig> parse() throws IOException {
+        return PipelinePropertiesParser.parse(new StringReader(properties));
+    }
+}
@@ -0,0 +1,61 @@
+package com.krickert.search.benchmark;
+
+import com.krickert.search.pipeline.ServiceConfiguration;
+import com.krickert.search.pipeline.render.PipelineEncoding;
+import io.micronaut.core.type.Argument;
+import io.micronaut.serde.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Measures Micronaut Serde on the {@code Map<String, ServiceConfiguration>} payload served by
+ * {@code GET /pipeline} and stored in Consul, as JSON and in the negotiated binary encodings.
+ * Payload sizes per format are printed once per trial.
+ */
+@State(Scope.Benchmark)
+public class ServiceSerdeBenchmark {
+
+    private static final Argument<Map<String, ServiceConfiguration>> SERVICES =
+            Argument.mapOf(String.class, ServiceConfiguration.class);
+
+    @Param({"100", "1000", "10000"})
+    int services;
+
+    @Param({"json", "cbor", "smile"})
+    String format;
+
+    private ObjectMapper objectMapper;
+    private Map<String, ServiceConfiguration> pipeline;
+    private PipelineEncoding encoding;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = ObjectMapper.getDefault();
+        pipeline = SyntheticPipelines.services(services);
+        encoding = format.equals("json") ? null : PipelineEncoding.valueOf(format.toUpperCase(Locale.ROOT));
+        payload = serialize();
+        System.out.printf("%n%s payload for %d services: %d bytes%n", format, services, payload.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return encoding == null
+                ? objectMapper.writeValueAsBytes(SERVICES, pipeline)
+                : encoding.encode(objectMapper, pipeline);
+    }
+
+    @Benchmark
+    public Map<String, ServiceConfiguration> deserialize() throws IOException {
+        return encoding == null
+                ? objectMapper.readValue(payload, SERVICES)
+                : encoding.decode(objectMapper, payload);
+    }
+}
@@ -0,0 +1,53 @@
+package com.krickert.search.benchmark;
+
+import com.krickert.search.pipeline.ServiceConfiguration;
+import com.krickert.search.pipeline.ServiceConfigurationDto;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates synthetic pipelines shaped like the default one: a chain of services where each
+ * listens on its predecessor's topic plus its own, publishes to the next topic and forwards
+ * to the next service over gRPC.
+ */
+final class SyntheticPipelines {
+
+    private SyntheticPipelines() {
+    }
+
+    static String properties(String pipeline, int services) {
+        StringBuilder out = new StringBuilder(services * 260);
+        for (int i = 0; i < services; i++) {
+            String prefix = "pipeline.configs." + pipeline + ".service.svc-" + i + ".";
+            out.append("# ========== SVC-").append(i).append(" ==========\n");
+            out.append(prefix).append("kafka-listen-topics[0]=topic-").append(Math.max(0, i - 1)).append('\n');
+            out.append(prefix).append("kafka-listen-topics[1]=topic-").append(i).append('\n');
+            out.append(prefix).append("kafka-publish-topics=topic-").append(i + 1).append('\n');
+            out.append(prefix).append("grpc-forward-to=").append(i + 1 < services ? "svc-" + (i + 1) : "null").append('\n');
+        }
+        return out.toString();
+    }
+
+    static Map<String, ServiceConfiguration> services(int services) {
+        Map<String, ServiceConfiguration> result = new LinkedHashMap<>();
+        for (int i = 0; i < services; i++) {
+            String name = "svc-" + i;
+            result.put(name, ServiceConfiguration.of(name,
+                    List.of("topic-" + Math.max(0, i - 1), "topic-" + i),
+                    List.of("topic-" + (i + 1)),
+                    i + 1 < services ? List.of("svc-" + (i + 1)) : null));
+        }
+        return result;
+    }
+
+    static ServiceConfigurationDto dto(int index, int services) {
+        ServiceConfigurationDto dto = new ServiceConfigurationDto();
+        dto.setName("svc-" + index);
+        dto.setKafkaListenTopics(List.of("topic-" + index));
+        dto.setKafkaPublishTopics(List.of("topic-" + (index + 1)));
+        dto.setGrpcForwardTo(index + 1 < services ? List.of("svc-" + (index + 1)) : null);
+        return dto;
+    }
+}
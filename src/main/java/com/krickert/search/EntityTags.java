@@ -0,0 +1,103 @@
+package com.krickert.search;
+
+import com.krickert.search.pipeline.InstanceEpoch;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Helpers for building and matching HTTP entity tags.
+ */
+public final class EntityTags {
+
+    private EntityTags() {
+    }
+
+    /**
+     * Builds a strong ETag from the representation bytes, so identical content always gets the
+     * same tag even across restarts.
+     */
+    public static String strong(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return '"' + HexFormat.of().formatHex(digest, 0, 16) + '"';
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Derives the strong tag of another encoding of the same representation, e.g. its gzip
+     * variant, so caches never confuse the two.
+     */
+    public static String variant(String etag, String suffix) {
+        return etag.substring(0, etag.length() - 1) + '-' + suffix + '"';
+    }
+
+    /**
+     * The tag of a pipeline version, used for {@code If-Match} preconditions on batches.
+     */
+    public static String version(String pipeline, long version) {
+        return versionTag(pipeline, version);
+    }
+
+    /**
+     * The tag of a service version, used for {@code If-Match} preconditions on edits of that
+     * service.
+     */
+    public static String version(String pipeline, String service, long version) {
+        return versionTag(pipeline + '\0' + service, version);
+    }
+
+    // Scoped to the pipeline (and service), so a tag is never accepted for another one, and to
+    // this process's epoch, since versions only increase within one run of the process.
+    private static String versionTag(String scope, long version) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(scope.getBytes(StandardCharsets.UTF_8));
+            return '"' + InstanceEpoch.current() + '-' + HexFormat.of().formatHex(digest, 0, 6) + "-v" + version + '"';
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Returns true when an {@code If-None-Match} header value matches the tag, using the weak
+     * comparison RFC 7232 prescribes for it. Handles {@code *}, comma separated lists and weak
+     * validators.
+     */
+    public static boolean matches(String header, String etag) {
+        return matches(header, etag, false);
+    }
+
+    /**
+     * Returns true when an {@code If-Match} header value matches the tag, using strong
+     * comparison: a weak validator ({@code W/"..."}) never matches.
+     */
+    public static boolean matchesStrong(String header, String etag) {
+        return matches(header, etag, true);
+    }
+
+    private static boolean matches(String header, String etag, boolean strong) {
+        if (header == null || header.isBlank()) {
+            return false;
+        }
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                if (strong) {
+                    continue;
+                }
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
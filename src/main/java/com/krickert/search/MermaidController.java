@@ -1,32 +1,105 @@
 package com.krickert.search;
 
+import com.krickert.search.pipeline.PipelineBatchRequest;
+import com.krickert.search.pipeline.PipelineBatchResult;
 import com.krickert.search.pipeline.PipelineConfig;
 import com.krickert.search.pipeline.PipelineConfigService;
+import com.krickert.search.pipeline.PipelineDiff;
+import com.krickert.search.pipeline.PipelineExecution;
+import com.krickert.search.pipeline.PipelineHistory;
+import com.krickert.search.pipeline.PipelineMetrics;
+import com.krickert.search.pipeline.PipelinePage;
+import com.krickert.search.pipeline.PipelineSnapshot;
+import com.krickert.search.pipeline.PipelineSubgraph;
+import com.krickert.search.pipeline.PreconditionFailedException;
 import com.krickert.search.pipeline.ServiceConfiguration;
 import com.krickert.search.pipeline.ServiceConfigurationDto;
-import io.micronaut.core.util.StringUtils;
+import com.krickert.search.pipeline.TopicNeighbours;
+import com.krickert.search.pipeline.analysis.PipelineAnalysis;
+import com.krickert.search.pipeline.analysis.PipelineAnalysisService;
+import com.krickert.search.pipeline.consul.ConsulWriteBehindException;
+import com.krickert.search.pipeline.events.PipelineChangeEvent;
+import com.krickert.search.pipeline.events.PipelineChangeFeed;
+import com.krickert.search.pipeline.render.DiagramFormat;
+import com.krickert.search.pipeline.render.EncodedPipeline;
+import com.krickert.search.pipeline.render.MermaidDiagram;
+import com.krickert.search.pipeline.render.MermaidDslGenerator;
+import com.krickert.search.pipeline.render.MermaidDslService;
+import com.krickert.search.pipeline.render.PipelineBinaryService;
+import com.krickert.search.pipeline.render.PipelineEncoding;
+import com.krickert.search.pipeline.render.PipelineExportService;
+import com.krickert.search.pipeline.render.PipelineJson;
+import com.krickert.search.pipeline.render.PipelineJsonService;
+import com.krickert.search.pipeline.render.PipelineLayout;
+import com.krickert.search.pipeline.render.PipelineLayoutService;
+import io.micrometer.core.annotation.Timed;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.http.HttpHeaders;
+import io.micronaut.http.HttpResponse;
 import io.micronaut.http.HttpStatus;
 import io.micronaut.http.MediaType;
+import io.micronaut.http.MutableHttpResponse;
 import io.micronaut.http.annotation.Body;
 import io.micronaut.http.annotation.Controller;
+import io.micronaut.http.annotation.Error;
 import io.micronaut.http.annotation.Get;
+import io.micronaut.http.annotation.Header;
 import io.micronaut.http.annotation.Post;
 import io.micronaut.http.annotation.QueryValue;
+import io.micronaut.http.exceptions.HttpStatusException;
+import io.micronaut.http.sse.Event;
+import io.micronaut.scheduling.annotation.ExecuteOn;
 import io.micronaut.views.View;
 import jakarta.inject.Inject;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
 
+import java.util.List;
 import java.util.Map;
 
+// Handlers may block on the stores (e.g. write-behind backpressure), so they never run on the
+// event loop; pipeline.execution.mode picks virtual or platform threads for them.
 @Controller
+@ExecuteOn(PipelineExecution.EXECUTOR)
 public class MermaidController {
 
+    // Header carrying the pipeline version a representation was built from.
+    static final String PIPELINE_VERSION_HEADER = "X-Pipeline-Version";
+
+    // Timer shared by every endpoint, tagged with the endpoint path.
+    static final String REQUEST_TIMER = "pipeline.http.requests";
+
+    // Pipeline payloads are negotiated on both media type and content coding.
+    private static final String VARY_NEGOTIATED = HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING;
+
     private final PipelineConfigService configService;
+    private final MermaidDslService mermaidDslService;
+    private final PipelineChangeFeed changeFeed;
+    private final PipelineJsonService pipelineJsonService;
+    private final PipelineBinaryService pipelineBinaryService;
+    private final PipelineMetrics metrics;
+    private final PipelineAnalysisService analysisService;
+    private final PipelineLayoutService layoutService;
+    private final PipelineExportService exportService;
 
     @Inject
-    public MermaidController(PipelineConfigService configService) {
+    public MermaidController(PipelineConfigService configService, MermaidDslService mermaidDslService,
+                             PipelineChangeFeed changeFeed, PipelineJsonService pipelineJsonService,
+                             PipelineBinaryService pipelineBinaryService, PipelineMetrics metrics,
+                             PipelineAnalysisService analysisService, PipelineLayoutService layoutService,
+                             PipelineExportService exportService) {
         this.configService = configService;
+        this.mermaidDslService = mermaidDslService;
+        this.changeFeed = changeFeed;
+        this.pipelineJsonService = pipelineJsonService;
+        this.pipelineBinaryService = pipelineBinaryService;
+        this.metrics = metrics;
+        this.analysisService = analysisService;
+        this.layoutService = layoutService;
+        this.exportService = exportService;
     }
 
+    @Timed(value = REQUEST_TIMER, extraTags = {"endpoint", "/"}, histogram = true)
     @View("mermaid-editor")
     @Get("/")
     public Map<String, Object> index(@QueryValue(defaultValue = "") String pipeline) {
@@ -34,40 +107,400 @@ public class MermaidController {
         if (!pipeline.isEmpty()) {
             configService.setActivePipelineName(pipeline);
         }
-        PipelineConfig activeConfig = configService.getActivePipelineConfig();
+        PipelineSnapshot activeSnapshot = configService.getActivePipelineConfig().snapshot();
         return Map.of(
-                "pipelineConfig", activeConfig.getService(),
+                "pipelineConfig", activeSnapshot.services(),
+                "pipelineVersion", activeSnapshot.version(),
                 "pipelineNames", configService.getAllPipelineNames(),
-                "activePipeline", activeConfig.getName(),
-                "pipelines", configService.getAllPipelineConfigs()
+                "activePipeline", activeSnapshot.name()
         );
     }
 
-    @Get(value = "/pipeline", produces = MediaType.APPLICATION_JSON)
-    public Map<String, ServiceConfiguration> getPipelineJson() {
-        return configService.getActivePipelineConfig().getService();
+    @Timed(value = REQUEST_TIMER, extraTags = {"endpoint", "/pipeline"}, histogram = true)
+    @Get(value = "/pipeline", produces = {MediaType.APPLICATION_JSON, PipelineEncoding.CBOR_TYPE, PipelineEncoding.SMILE_TYPE})
+    public HttpResponse<byte[]> getPipelineJson(@Nullable @Header(HttpHeaders.ACCEPT) String accept,
+                                                @Nullable @Header(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding,
+                                                @Nullable @Header(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        return pipelineResponse(configService.getActivePipelineConfig().snapshot(), accept, acceptEncoding, ifNoneMatch);
+    }
+
+    /**
+     * Pages through the pipeline names, sorted, with each pipeline's version and size. The editor
+     * only inlines the active pipeline and loads others through {@code /pipelines/{name}}.
+     */
+    @Timed(value = REQUEST_TIMER, extraTags = {"endpoint", "/pipelines"}, histogram = true)
+    @Get(value = "/pipelines", produces = MediaType.APPLICATION_JSON)
+    public PipelinePage listPipelines(@QueryValue(defaultValue = "0") int offset,
+                                      @QueryValue(defaultValue = "" + PipelinePage.DEFAULT_LIMIT) int limit) {
+        if (offset < 0 || limit < 1) {
+            throw new HttpStatusException(HttpStatus.BAD_REQUEST, "offset must be >= 0 and limit >= 1");
+        }
+        return PipelinePage.of(configService.getAllPipelineConfigs(), offset, Math.min(limit, PipelinePage.MAX_LIMIT));
+    }
+
+    @Timed(value = REQUEST_TIMER, extraTags = {"endpoint", "/pipelines/{name}"}, histogram = true)
+    @Get(value = "/pipelines/{name}", produces = {MediaType.APPLICATION_JSON, PipelineEncoding.CBOR_TYPE, PipelineEncoding.SMILE_TYPE})
+    public HttpResponse<byte[]> getPipelineByName(String name,
+                                                  @Nullable @Header(HttpHeaders.ACCEPT) String accept,
+                                                  @Nullable @Header(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding,
+                                                  @Nullable @Header(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        PipelineConfig config = configService.getPipelineConfig(name);
+        if (config == null) {
+            return HttpResponse.notFound();
+        }
+        return pipelineResponse(config.snapshot(), accept, acceptEncoding, ifNoneMatch);
+    }
+
+    /**
+     * Writes a pipeline straight from the per-version byte caches, as CBOR or Smile when the
+     * {@code Accept} header prefers them and JSON otherwise. JSON gzip is served pre-encoded
+     * and, because Content-Encoding is already set, Netty passes it through uncompressed.
+     */
+    private HttpResponse<byte[]> pipelineResponse(PipelineSnapshot snapshot, String accept, String acceptEncoding,
+                                                  String ifNoneMatch) {
+        PipelineEncoding encoding = PipelineEncoding.negotiate(accept);
+        if (encoding != null) {
+            EncodedPipeline encoded = pipelineBinaryService.render(snapshot, encoding);
+            MutableHttpResponse<byte[]> response = EntityTags.matches(ifNoneMatch, encoded.etag())
+                    ? HttpResponse.status(HttpStatus.NOT_MODIFIED)
+                    : HttpResponse.ok(encoded.content()).contentType(encoding.mediaType())
+                            .header(HttpHeaders.CACHE_CONTROL, "no-cache");
+            return response.header(HttpHeaders.ETAG, encoded.etag())
+                    .header(HttpHeaders.VARY, VARY_NEGOTIATED)
+                    .header(PIPELINE_VERSION_HEADER, Long.toString(encoded.version()));
+        }
+        PipelineJson json = pipelineJsonService.render(snapshot);
+        boolean gzip = PipelineJsonService.acceptsGzip(acceptEncoding);
+        String etag = gzip ? json.gzipEtag() : json.etag();
+        if (json.matches(ifNoneMatch)) {
+            return HttpResponse.<byte[]>status(HttpStatus.NOT_MODIFIED)
+                    .header(HttpHeaders.ETAG, etag)
+                    .header(HttpHeaders.VARY, VARY_NEGOTIATED)
+                    .header(PIPELINE_VERSION_HEADER, Long.toString(json.version()));
+        }
+        byte[] body = gzip ? json.gzip() : json.identity();
+        metrics.recordJsonPayload(body.length);
+        MutableHttpResponse<byte[]> response = HttpResponse.ok(body)
+                .contentType(MediaType.APPLICATION_JSON_TYPE)
+                .header(HttpHeaders.ETAG, etag)
+                .header(HttpHeaders.VARY, VARY_NEGOTIATED)
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .header(PIPELINE_VERSION_HEADER, Long.toString(json.version()));
+        return gzip ? response.header(HttpHeaders.CONTENT_ENCODING, "gzip") : response;
+    }
+
+    /**
+     * Server-sent change feed. Each event carries the service deltas of one pipeline version;
+     * clients resume with {@code Last-Event-ID} set to the id of the last event they saw, or with
+     * {@code ?since=} set to the last version.
+     */
+    @Get(value = "/pipeline/events", produces = MediaType.TEXT_EVENT_STREAM)
+    public Publisher<Event<PipelineChangeEvent>> events(@QueryValue(defaultValue = "") String pipeline,
+                                                        @Nullable @QueryValue Long since,
+                                                        @Nullable @Header("Last-Event-ID") String lastEventId) {
+        PipelineConfig config = resolvePipeline(pipeline);
+        if (config == null) {
+            return Flux.error(new HttpStatusException(HttpStatus.NOT_FOUND, "Unknown pipeline: " + pipeline));
+        }
+        long sinceVersion = since == null ? -1 : since;
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            try {
+                sinceVersion = PipelineChangeFeed.resumeVersion(lastEventId.trim());
+            } catch (IllegalArgumentException e) {
+                return Flux.error(new HttpStatusException(HttpStatus.BAD_REQUEST, "Invalid Last-Event-ID"));
+            }
+        }
+        return changeFeed.events(config.getName(), sinceVersion, config.getVersion())
+                .map(event -> Event.of(event)
+                        .id(PipelineChangeFeed.eventId(event))
+                        .name(event.reset() ? "reset" : "change"));
+    }
+
+    @Timed(value = REQUEST_TIMER, extraTags = {"endpoint", "/pipeline/mermaid"}, histogram = true)
+    @Get(value = "/pipeline/mermaid", produces = MediaType.TEXT_PLAIN)
+    public HttpResponse<String> getPipelineMermaid(@QueryValue(defaultValue = "") String pipeline,
+                                                   @Nullable @Header(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        PipelineConfig config = resolvePipeline(pipeline);
+        if (config == null) {
+            return HttpResponse.notFound();
+        }
+        MermaidDiagram diagram = mermaidDslService.render(config);
+        if (EntityTags.matches(ifNoneMatch, diagram.etag())) {
+            return HttpResponse.<String>status(HttpStatus.NOT_MODIFIED)
+                    .header(HttpHeaders.ETAG, diagram.etag());
+        }
+        return HttpResponse.ok(diagram.dsl())
+                .header(HttpHeaders.ETAG, diagram.etag())
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache");
+    }
+
+    /**
+     * Cycles, unreachable services and dangling topics of a pipeline; computed once per version,
+     * so polling is cheap.
+     */
+    @Timed(value = REQUEST_TIMER, extraTags = {"endpoint", "/pipeline/analysis"}, histogram = true)
+    @Get(value = "/pipeline/analysis", produces = MediaType.APPLICATION_JSON)
+    public HttpResponse<PipelineAnalysis> getPipelineAnalysis(@QueryValue(defaultValue = "") String pipeline) {
+        PipelineConfig config = resolvePipeline(pipeline);
+        if (config == null) {
+            return HttpResponse.notFound();
+        }
+        PipelineAnalysis analysis = analysisService.analyze(config);
+        return HttpResponse.ok(analysis)
+                .header(PIPELINE_VERSION_HEADER, Long.toString(analysis.version()));
+    }
+
+    /**
+     * Layered node coordinates for the editor's preset layout, computed once per version.
+     */
+    @Timed(value = REQUEST_TIMER, extraTags = {"endpoint", "/pipeline/layout"}, histogram = true)
+    @Get(value = "/pipeline/layout", produces = MediaType.APPLICATION_JSON)
+    public HttpResponse<PipelineLayout> getPipelineLayout(@QueryValue(defaultValue = "") String pipeline) {
+        PipelineConfig config = resolvePipeline(pipeline);
+        if (config == null) {
+            return HttpResponse.notFound();
+        }
+        PipelineLayout layout = layoutService.layout(config);
+        return HttpResponse.ok(layout)
+                .header(PIPELINE_VERSION_HEADER, Long.toString(layout.version()));
     }
 
+    /**
+     * Downloads the pipeline diagram as SVG (server-side layout), Graphviz DOT or Mermaid. The
+     * body is streamed in chunks as it is rendered, so huge pipelines export without a browser.
+     */
+    @Timed(value = REQUEST_TIMER, extraTags = {"endpoint", "/pipeline/export"}, histogram = true)
+    @Get(value = "/pipeline/export", produces = {DiagramFormat.SVG_TYPE, DiagramFormat.DOT_TYPE, MediaType.TEXT_PLAIN})
+    public HttpResponse<Flux<byte[]>> exportPipeline(@QueryValue(defaultValue = "") String pipeline,
+                                                     @QueryValue(defaultValue = "svg") String format) {
+        DiagramFormat diagramFormat = DiagramFormat.of(format);
+        if (diagramFormat == null) {
+            throw new HttpStatusException(HttpStatus.BAD_REQUEST, "format must be one of svg, dot or mermaid");
+        }
+        PipelineConfig config = resolvePipeline(pipeline);
+        if (config == null) {
+            return HttpResponse.notFound();
+        }
+        PipelineSnapshot snapshot = config.snapshot();
+        return HttpResponse.ok(exportService.export(snapshot, diagramFormat))
+                .contentType(diagramFormat.mediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "inline; filename=\"" + MermaidDslGenerator.nodeId("pipeline", snapshot.name())
+                                + "." + diagramFormat.extension() + "\"")
+                .header(PIPELINE_VERSION_HEADER, Long.toString(snapshot.version()));
+    }
+
+    /**
+     * The services within {@code depth} hops of one service, upstream, downstream or both, as
+     * JSON or (with {@code format=mermaid}) as a Mermaid diagram of just that slice.
+     */
+    @Timed(value = REQUEST_TIMER, extraTags = {"endpoint", "/pipeline/subgraph"}, histogram = true)
+    @Get(value = "/pipeline/subgraph", produces = {MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN})
+    public HttpResponse<?> getSubgraph(@QueryValue(defaultValue = "") String pipeline,
+                                       @QueryValue String service,
+                                       @QueryValue(defaultValue = "" + PipelineSubgraph.DEFAULT_DEPTH) int depth,
+                                       @QueryValue(defaultValue = "down") String direction,
+                                       @QueryValue(defaultValue = "json") String format) {
+        PipelineSubgraph.Direction walk = PipelineSubgraph.Direction.of(direction);
+        if (walk == null) {
+            throw new HttpStatusException(HttpStatus.BAD_REQUEST, "direction must be one of up, down or both");
+        }
+        if (depth < 0) {
+            throw new HttpStatusException(HttpStatus.BAD_REQUEST, "depth must be >= 0");
+        }
+        boolean mermaid = "mermaid".equalsIgnoreCase(format);
+        if (!mermaid && !"json".equalsIgnoreCase(format)) {
+            throw new HttpStatusException(HttpStatus.BAD_REQUEST, "format must be json or mermaid");
+        }
+        PipelineConfig config = resolvePipeline(pipeline);
+        if (config == null) {
+            return HttpResponse.notFound();
+        }
+        PipelineSubgraph subgraph = PipelineSubgraph.of(config.snapshot(), service,
+                Math.min(depth, PipelineSubgraph.MAX_DEPTH), walk);
+        if (subgraph == null) {
+            return HttpResponse.notFound();
+        }
+        MutableHttpResponse<?> response = mermaid
+                ? HttpResponse.ok(MermaidDslGenerator.generate(subgraph.services())).contentType(MediaType.TEXT_PLAIN_TYPE)
+                : HttpResponse.ok(subgraph).contentType(MediaType.APPLICATION_JSON_TYPE);
+        return response.header(PIPELINE_VERSION_HEADER, Long.toString(subgraph.version()));
+    }
+
+    /**
+     * The versions of a pipeline still retained for diff and rollback, oldest first.
+     */
+    @Timed(value = REQUEST_TIMER, extraTags = {"endpoint", "/pipeline/history"}, histogram = true)
+    @Get(value = "/pipeline/history", produces = MediaType.APPLICATION_JSON)
+    public HttpResponse<List<PipelineHistory.Summary>> getHistory(@QueryValue(defaultValue = "") String pipeline) {
+        PipelineConfig config = resolvePipeline(pipeline);
+        if (config == null) {
+            return HttpResponse.notFound();
+        }
+        return HttpResponse.ok(config.history().revisions().stream().map(PipelineHistory.Revision::summary).toList());
+    }
+
+    /**
+     * The services that changed between two retained versions; {@code to} defaults to the
+     * current version.
+     */
+    @Timed(value = REQUEST_TIMER, extraTags = {"endpoint", "/pipeline/diff"}, histogram = true)
+    @Get(value = "/pipeline/diff", produces = MediaType.APPLICATION_JSON)
+    public HttpResponse<PipelineDiff> getDiff(@QueryValue(defaultValue = "") String pipeline,
+                                              @QueryValue long from,
+                                              @Nullable @QueryValue Long to) {
+        PipelineConfig config = resolvePipeline(pipeline);
+        if (config == null) {
+            return HttpResponse.notFound();
+        }
+        long toVersion = to == null ? config.getVersion() : to;
+        requireRetained(config, from);
+        requireRetained(config, toVersion);
+        PipelineDiff diff = config.diff(from, toVersion);
+        if (diff == null) {
+            // Evicted between the check and the diff.
+            throw new HttpStatusException(HttpStatus.GONE, "Version is no longer retained");
+        }
+        return HttpResponse.ok(diff);
+    }
+
+    /**
+     * Publishes a new version with the services of a retained earlier one, and returns what the
+     * rollback changed.
+     */
+    @Timed(value = REQUEST_TIMER, extraTags = {"endpoint", "/pipeline/rollback"}, histogram = true)
+    @Post(value = "/pipeline/rollback", produces = MediaType.APPLICATION_JSON)
+    public HttpResponse<PipelineDiff> rollback(@QueryValue(defaultValue = "") String pipeline,
+                                               @QueryValue long to) {
+        PipelineConfig config = resolvePipeline(pipeline);
+        if (config == null) {
+            return HttpResponse.notFound();
+        }
+        requireRetained(config, to);
+        PipelineDiff applied = configService.rollback(config, to);
+        if (applied == null) {
+            throw new HttpStatusException(HttpStatus.GONE, "Version " + to + " is no longer retained");
+        }
+        return HttpResponse.ok(applied)
+                .header(PIPELINE_VERSION_HEADER, Long.toString(applied.to()));
+    }
+
+    private static void requireRetained(PipelineConfig config, long version) {
+        if (version < 0 || version > config.getVersion()) {
+            throw new HttpStatusException(HttpStatus.NOT_FOUND, "Unknown version: " + version);
+        }
+        if (config.history().get(version) == null) {
+            throw new HttpStatusException(HttpStatus.GONE, "Version " + version + " is no longer retained");
+        }
+    }
+
+    @Timed(value = REQUEST_TIMER, extraTags = {"endpoint", "/pipeline/topic"}, histogram = true)
+    @Get(value = "/pipeline/topic", produces = MediaType.APPLICATION_JSON)
+    public TopicNeighbours getTopicNeighbours(@QueryValue String name) {
+        PipelineConfig activeConfig = configService.getActivePipelineConfig();
+        return new TopicNeighbours(name, activeConfig.publishersOf(name), activeConfig.listenersOf(name));
+    }
+
+    /**
+     * One service of a pipeline, tagged with its version for {@code If-Match} on later edits.
+     */
+    @Timed(value = REQUEST_TIMER, extraTags = {"endpoint", "/pipeline/service"}, histogram = true)
+    @Get(value = "/pipeline/service", produces = MediaType.APPLICATION_JSON)
+    public HttpResponse<ServiceConfiguration> getService(@QueryValue(defaultValue = "") String pipeline,
+                                                         @QueryValue String name) {
+        PipelineConfig config = resolvePipeline(pipeline);
+        if (config == null) {
+            return HttpResponse.notFound();
+        }
+        PipelineSnapshot snapshot = config.snapshot();
+        ServiceConfiguration service = snapshot.services().get(name);
+        if (service == null) {
+            return HttpResponse.notFound();
+        }
+        return HttpResponse.ok(service)
+                .header(HttpHeaders.ETAG, EntityTags.version(snapshot.name(), name, snapshot.serviceVersion(name)))
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .header(PIPELINE_VERSION_HEADER, Long.toString(snapshot.version()));
+    }
+
+    // With If-Match, the service's version tag must still match; otherwise 412.
+    @Timed(value = REQUEST_TIMER, extraTags = {"endpoint", "/pipeline/delete"}, histogram = true)
     @Post(value = "/pipeline/delete", consumes = MediaType.APPLICATION_JSON)
-    public HttpStatus deleteService(@Body ServiceConfigurationDto dto) {
+    public HttpResponse<?> deleteService(@Body ServiceConfigurationDto dto,
+                                         @Nullable @Header(HttpHeaders.IF_MATCH) String ifMatch) {
         // Assume dto.getName() holds the service name to delete.
-        configService.deleteService(dto.getName());
-        return HttpStatus.OK;
+        requireServiceName(dto);
+        PipelineSnapshot next = configService.deleteService(dto.getName(), ifMatch);
+        return HttpResponse.ok()
+                .header(PIPELINE_VERSION_HEADER, Long.toString(next.version()));
     }
 
+    // With If-Match, the service's version tag must still match; otherwise 412.
+    @Timed(value = REQUEST_TIMER, extraTags = {"endpoint", "/pipeline/add"}, histogram = true)
     @Post(value = "/pipeline/add", consumes = MediaType.APPLICATION_JSON)
-    public HttpStatus addService(@Body ServiceConfigurationDto dto) {
-        // Validate: if any forward-to service isn't present in the active pipeline, add it.
-        for (String grpcForward : dto.getGrpcForwardTo()) {
-            if (!configService.getActivePipelineConfig().containsService(grpcForward)) {
-                if (!"null".equals(grpcForward) && StringUtils.isNotEmpty(grpcForward)) {
-                    ServiceConfigurationDto newDto = new ServiceConfigurationDto();
-                    newDto.setName(grpcForward);
-                    configService.getActivePipelineConfig().addOrUpdateService(newDto);
-                }
-            }
+    public HttpResponse<?> addService(@Body ServiceConfigurationDto dto,
+                                      @Nullable @Header(HttpHeaders.IF_MATCH) String ifMatch) {
+        requireServiceName(dto);
+        // Missing forward-to services are added in the same atomic update as the service itself.
+        PipelineSnapshot next = configService.addOrUpdateService(dto, ifMatch);
+        return HttpResponse.status(HttpStatus.CREATED)
+                .header(HttpHeaders.ETAG, EntityTags.version(next.name(), dto.getName(), next.serviceVersion(dto.getName())))
+                .header(PIPELINE_VERSION_HEADER, Long.toString(next.version()));
+    }
+
+    @Timed(value = REQUEST_TIMER, extraTags = {"endpoint", "/pipeline/batch"}, histogram = true)
+    @Post(value = "/pipeline/batch", consumes = MediaType.APPLICATION_JSON, produces = MediaType.APPLICATION_JSON)
+    public HttpResponse<PipelineBatchResult> applyBatch(@QueryValue(defaultValue = "") String pipeline,
+                                                        @Nullable @Header(HttpHeaders.IF_MATCH) String ifMatch,
+                                                        @Body PipelineBatchRequest request) {
+        PipelineConfig config = resolvePipeline(pipeline);
+        if (config == null) {
+            return HttpResponse.notFound();
+        }
+        // If-Match here is on the pipeline version, as seen in X-Pipeline-Version.
+        PipelineBatchResult result = configService.applyBatch(config, request.getOperations(), ifMatch);
+        return result.applied()
+                ? HttpResponse.ok(result)
+                : HttpResponse.<PipelineBatchResult>status(HttpStatus.UNPROCESSABLE_ENTITY).body(result);
+    }
+
+    /**
+     * A failed {@code If-Match}: nothing was changed. The response carries the current version
+     * tag so the client can reload and retry.
+     */
+    @Error(exception = PreconditionFailedException.class)
+    public HttpResponse<Map<String, Object>> preconditionFailed(PreconditionFailedException e) {
+        MutableHttpResponse<Map<String, Object>> response = HttpResponse
+                .<Map<String, Object>>status(HttpStatus.PRECONDITION_FAILED)
+                .body(Map.of("message", e.getMessage(), "currentVersion", e.getCurrentVersion()));
+        if (e.getCurrentVersion() < 0) {
+            return response;
         }
-        configService.getActivePipelineConfig().addOrUpdateService(dto);
-        return HttpStatus.CREATED;
+        return response.header(HttpHeaders.ETAG, e.getService() == null
+                ? EntityTags.version(e.getPipeline(), e.getCurrentVersion())
+                : EntityTags.version(e.getPipeline(), e.getService(), e.getCurrentVersion()));
+    }
+
+    /**
+     * The Consul write-behind queue stayed full: the write was turned away before anything was
+     * published, so the client can retry it as is.
+     */
+    @Error(exception = ConsulWriteBehindException.class)
+    public HttpResponse<Map<String, Object>> writeBehindFull(ConsulWriteBehindException e) {
+        return HttpResponse.<Map<String, Object>>status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("message", e.getMessage()));
+    }
+
+    private static void requireServiceName(ServiceConfigurationDto dto) {
+        if (dto == null || !PipelineConfig.isServiceName(dto.getName())) {
+            throw new HttpStatusException(HttpStatus.BAD_REQUEST, "service name is required");
+        }
+    }
+
+    private PipelineConfig resolvePipeline(String pipeline) {
+        return pipeline.isEmpty()
+                ? configService.getActivePipelineConfig()
+                : configService.getPipelineConfig(pipeline);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package com.krickert.search;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micronaut.core.io.Writable;
+import io.micronaut.core.order.Ordered;
+import io.micronaut.http.MutableHttpResponse;
+import io.micronaut.http.annotation.ResponseFilter;
+import io.micronaut.http.annotation.ServerFilter;
+import io.micronaut.http.filter.ServerFilterPhase;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the Thymeleaf render of the mermaid-editor page. The views filter only turns the model
+ * into a lazy {@link Writable}; the template actually runs when the server writes the body, so
+ * this filter sits outside the views filter and times that write.
+ */
+@ServerFilter("/")
+public class ViewRenderTimingFilter implements Ordered {
+
+    private final Timer renderTimer;
+
+    public ViewRenderTimingFilter(MeterRegistry meterRegistry) {
+        this.renderTimer = Timer.builder("pipeline.view.render")
+                .description("Time to render a Thymeleaf view")
+                .tag("view", "mermaid-editor")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @ResponseFilter
+    public void timeRender(MutableHttpResponse<?> response) {
+        if (response.body() instanceof Writable writable) {
+            response.body(new TimedWritable(writable, renderTimer));
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        // Response filters run in reverse order, so this sees the body after the views filter.
+        return ServerFilterPhase.RENDERING.before();
+    }
+
+    private record TimedWritable(Writable delegate, Timer timer) implements Writable {
+
+        @Override
+        public void writeTo(Writer out) throws IOException {
+            long start = System.nanoTime();
+            try {
+                delegate.writeTo(out);
+            } finally {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream, Charset charset) throws IOException {
+            long start = System.nanoTime();
+            try {
+                delegate.writeTo(outputStream, charset);
+            } finally {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
@@ -1,16 +1,28 @@
 package com.krickert.search.pipeline;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micronaut.context.annotation.Value;
 import jakarta.annotation.PostConstruct;
 import jakarta.inject.Singleton;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
 
 @Setter
 @Getter
@@ -18,6 +30,9 @@ import java.util.regex.Pattern;
 @Slf4j
 public class DefaultPipelineConfig {
 
+    static final String DEFAULT_PROPERTIES = "pipeline.default.properties";
+    static final String DEFAULT_SNAPSHOT = "pipeline.default.snapshot";
+
     /**
      * Map of pipeline configurations, keyed by pipeline name.
      * -- SETTER --
@@ -28,110 +43,107 @@ public class DefaultPipelineConfig {
      */
     private Map<String, PipelineConfig> pipelines = new HashMap<>();
 
+    // Optional file that replaces the bundled defaults; always parsed at runtime.
+    @Getter(AccessLevel.NONE)
+    private final String overrideLocation;
+
+    @Getter(AccessLevel.NONE)
+    private final MeterRegistry meterRegistry;
+
+    public DefaultPipelineConfig(@Value("${pipeline.defaults.location:}") String overrideLocation,
+                                 MeterRegistry meterRegistry) {
+        this.overrideLocation = overrideLocation;
+        this.meterRegistry = meterRegistry;
+    }
+
     @PostConstruct
     public void init() {
-        Properties properties = new Properties();
-
-        // Load properties from pipeline.default.properties file
-        try (InputStream input = getClass().getClassLoader().getResourceAsStream("pipeline.default.properties")) {
-            if (input == null) {
-                log.warn("Unable to find pipeline.default.properties file");
+        long start = System.nanoTime();
+        try {
+            if (!overrideLocation.isBlank()) {
+                try (Reader reader = Files.newBufferedReader(Path.of(overrideLocation), StandardCharsets.ISO_8859_1)) {
+                    pipelines = new HashMap<>(PipelinePropertiesParser.parse(reader));
+                }
+                recordLoad("override", start);
+                log.info("Loaded {} pipelines from override {} in {} ms", pipelines.size(), overrideLocation,
+                        (System.nanoTime() - start) / 1_000_000);
                 return;
             }
-
-            properties.load(input);
-            log.info("Loaded pipeline.default.properties file");
-
-            // Parse properties into pipelines map
-            parsePipelineProperties(properties);
-
+            String source;
+            if (loadSnapshot()) {
+                source = "snapshot";
+            } else if (parseDefaults()) {
+                source = "properties";
+            } else {
+                return;
+            }
+            recordLoad(source, start);
+            log.info("Loaded {} default pipelines from {} in {} ms", pipelines.size(), source,
+                    (System.nanoTime() - start) / 1_000_000);
         } catch (IOException ex) {
-            log.error("Error loading pipeline.default.properties file", ex);
+            log.error("Error loading default pipelines", ex);
         }
     }
 
-    private void parsePipelineProperties(Properties properties) {
-        // Store all unique pipeline and service names to ensure we capture everything
-        Set<String> pipelineNames = new HashSet<>();
-        Map<String, Set<String>> serviceNames = new HashMap<>();
-
-        // First pass: Identify all pipeline and service names
-        Pattern identifierPattern = Pattern.compile("pipeline\\.configs\\.(\\w+)\\.service\\.([-\\w]+)\\.");
-        properties.forEach((key, value) -> {
-            String keyStr = key.toString();
-            Matcher matcher = identifierPattern.matcher(keyStr);
-            if (matcher.find()) {
-                String pipelineName = matcher.group(1);
-                String serviceName = matcher.group(2);
-
-                pipelineNames.add(pipelineName);
-                serviceNames.computeIfAbsent(pipelineName, k -> new HashSet<>()).add(serviceName);
+    /**
+     * Loads the snapshot compiled at build time, provided it was compiled from the
+     * pipeline.default.properties that is on the classpath now.
+     */
+    private boolean loadSnapshot() throws IOException {
+        ClassLoader classLoader = getClass().getClassLoader();
+        try (InputStream snapshot = classLoader.getResourceAsStream(DEFAULT_SNAPSHOT);
+             InputStream properties = classLoader.getResourceAsStream(DEFAULT_PROPERTIES)) {
+            if (snapshot == null || properties == null) {
+                return false;
             }
-        });
-
-        log.info("Found pipeline names: {}", pipelineNames);
-        serviceNames.forEach((pipeline, services) -> {
-            log.info("Pipeline {} has services: {}", pipeline, services);
-        });
-
-        // Create pipeline configurations
-        pipelineNames.forEach(pipelineName -> {
-            PipelineConfig pipelineConfig = new PipelineConfig(pipelineName);
-            Map<String, ServiceConfiguration> serviceConfigs = new HashMap<>();
-
-            // Create service configurations for this pipeline
-            Set<String> services = serviceNames.getOrDefault(pipelineName, Collections.emptySet());
-            services.forEach(serviceName -> {
-                ServiceConfiguration serviceConfig = new ServiceConfiguration(serviceName);
-
-                // Set kafka-listen-topics if present
-                String listenTopicsKey = String.format("pipeline.configs.%s.service.%s.kafka-listen-topics",
-                        pipelineName, serviceName);
-                if (properties.containsKey(listenTopicsKey)) {
-                    String value = properties.getProperty(listenTopicsKey);
-                    serviceConfig.setKafkaListenTopics(Arrays.asList(value.split(",")));
-                }
+            DataInputStream in = new DataInputStream(new BufferedInputStream(snapshot, 64 * 1024));
+            if (PipelineSnapshotCodec.readChecksum(in) != checksum(properties)) {
+                log.info("{} is stale, parsing {} instead", DEFAULT_SNAPSHOT, DEFAULT_PROPERTIES);
+                return false;
+            }
+            pipelines = new HashMap<>(PipelineSnapshotCodec.readPipelines(in));
+            log.debug("Loaded default pipelines from {}", DEFAULT_SNAPSHOT);
+            return true;
+        }
+    }
 
-                // Set kafka-publish-topics if present
-                String publishTopicsKey = String.format("pipeline.configs.%s.service.%s.kafka-publish-topics",
-                        pipelineName, serviceName);
-                if (properties.containsKey(publishTopicsKey)) {
-                    String value = properties.getProperty(publishTopicsKey);
-                    serviceConfig.setKafkaPublishTopics(Arrays.asList(value.split(",")));
-                }
+    private boolean parseDefaults() throws IOException {
+        try (InputStream input = getClass().getClassLoader().getResourceAsStream(DEFAULT_PROPERTIES)) {
+            if (input == null) {
+                log.warn("Unable to find {} file", DEFAULT_PROPERTIES);
+                return false;
+            }
+            // Properties files are ISO-8859-1, the same as Properties.load(InputStream).
+            pipelines = new HashMap<>(PipelinePropertiesParser.parse(
+                    new InputStreamReader(input, StandardCharsets.ISO_8859_1)));
+            return true;
+        }
+    }
 
-                // Set grpc-forward-to if present
-                String grpcForwardKey = String.format("pipeline.configs.%s.service.%s.grpc-forward-to",
-                        pipelineName, serviceName);
-                if (properties.containsKey(grpcForwardKey)) {
-                    String value = properties.getProperty(grpcForwardKey);
-                    if (!"null".equals(value)) {
-                        serviceConfig.setGrpcForwardTo(Arrays.asList(value.split(",")));
-                    }
-                }
+    private void recordLoad(String source, long start) {
+        Timer.builder("pipeline.defaults.load")
+                .description("Time to load the default pipelines at startup")
+                .tag("source", source)
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
 
-                // Add the service configuration to the map
-                serviceConfigs.put(serviceName, serviceConfig);
-            });
-
-            // Set services and add pipeline to the map
-            pipelineConfig.setService(serviceConfigs);
-            pipelines.put(pipelineName, pipelineConfig);
-        });
-
-        log.info("Loaded {} pipelines from properties file", pipelines.size());
-
-        // Debug logging to verify all services are included
-        pipelines.forEach((pipelineName, pipelineConfig) -> {
-            log.info("Pipeline: {} has {} services", pipelineName, pipelineConfig.getService().size());
-            pipelineConfig.getService().forEach((serviceName, serviceConfig) -> {
-                log.info("  Service: {}, Listen Topics: {}, Publish Topics: {}, Forward To: {}",
-                        serviceName,
-                        serviceConfig.getKafkaListenTopics(),
-                        serviceConfig.getKafkaPublishTopics(),
-                        serviceConfig.getGrpcForwardTo());
-            });
-        });
+    static long checksum(byte[] content) {
+        CRC32C crc = new CRC32C();
+        crc.update(content);
+        return crc.getValue() ^ ((long) content.length << 32);
+    }
+
+    static long checksum(InputStream input) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[64 * 1024];
+        long length = 0;
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            crc.update(buffer, 0, read);
+            length += read;
+        }
+        return crc.getValue() ^ (length << 32);
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,20 @@
+package com.krickert.search.pipeline;
+
+import java.util.Map;
+
+/**
+ * A local store that {@link PipelineConfigService} restores pipelines from when it is created,
+ * and that writes made through the service wait on before they return.
+ */
+public interface DurablePipelineStore {
+
+    /**
+     * The latest stored service map of every pipeline the store knows, keyed by pipeline name.
+     */
+    Map<String, Map<String, ServiceConfiguration>> pipelines();
+
+    /**
+     * Blocks until {@code version} of {@code pipeline}, and every version before it, is durable.
+     */
+    void awaitDurable(String pipeline, long version);
+}
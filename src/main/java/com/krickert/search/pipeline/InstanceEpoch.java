@@ -0,0 +1,21 @@
+package com.krickert.search.pipeline;
+
+import java.security.SecureRandom;
+
+/**
+ * Identifies this run of the process. Pipeline versions start over when the process restarts,
+ * so anything that hands a version to a client to send back later, such as an entity tag or a
+ * change-feed event id, pairs it with the epoch; a version from an earlier run then never
+ * passes for one of this run.
+ */
+public final class InstanceEpoch {
+
+    private static final String CURRENT = Long.toString(new SecureRandom().nextLong() & Long.MAX_VALUE, 36);
+
+    private InstanceEpoch() {
+    }
+
+    public static String current() {
+        return CURRENT;
+    }
+}
@@ -0,0 +1,175 @@
+package com.krickert.search.pipeline;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable service map with structural sharing, over a {@link PersistentTrie}.
+ * {@link #plus} and {@link #minus} copy only the path to the changed entry, so a new
+ * pipeline version shares every untouched node, and every {@link ServiceConfiguration}, with
+ * the version it was made from. That keeps both writes and a history of past versions cheap,
+ * and lets {@link #diff} skip whole subtrees two versions have in common.
+ * <p>
+ * Every entry also records the pipeline version that last put it, which serves as the version
+ * of the service for optimistic concurrency.
+ * <p>
+ * The {@link Map} mutators throw {@link UnsupportedOperationException}.
+ */
+public final class PersistentServiceMap extends AbstractMap<String, ServiceConfiguration> {
+
+    private static final PersistentServiceMap EMPTY = new PersistentServiceMap(PersistentTrie.empty());
+
+    private final PersistentTrie<Leaf> trie;
+    private Set<Map.Entry<String, ServiceConfiguration>> entrySet;
+
+    private PersistentServiceMap(PersistentTrie<Leaf> trie) {
+        this.trie = trie;
+    }
+
+    public static PersistentServiceMap empty() {
+        return EMPTY;
+    }
+
+    /**
+     * This map with {@code name} mapped to {@code config}, stamped with {@code version}; this
+     * map itself if {@code name} was already mapped to that very configuration, in which case
+     * the entry keeps its earlier version.
+     */
+    public PersistentServiceMap plus(String name, ServiceConfiguration config, long version) {
+        Objects.requireNonNull(name, "name");
+        PersistentTrie<Leaf> updated = trie.plus(new Leaf(name, config, version));
+        return updated == trie ? this : new PersistentServiceMap(updated);
+    }
+
+    /**
+     * This map without {@code name}; this map itself if it had no such entry.
+     */
+    public PersistentServiceMap minus(String name) {
+        PersistentTrie<Leaf> updated = trie.minus(name);
+        return updated == trie ? this : new PersistentServiceMap(updated);
+    }
+
+    @Override
+    public ServiceConfiguration get(Object key) {
+        Leaf leaf = key instanceof String name ? trie.get(name) : null;
+        return leaf == null ? null : leaf.value;
+    }
+
+    /**
+     * The version the service was last put at, or -1 if there is no such service.
+     */
+    public long versionOf(String name) {
+        Leaf leaf = trie.get(name);
+        return leaf == null ? -1 : leaf.version;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String name && trie.get(name) != null;
+    }
+
+    @Override
+    public int size() {
+        return trie.size();
+    }
+
+    @Override
+    public Set<Map.Entry<String, ServiceConfiguration>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<String, ServiceConfiguration>> iterator() {
+                    Iterator<Leaf> leaves = trie.iterator();
+                    return new Iterator<>() {
+                        @Override
+                        public boolean hasNext() {
+                            return leaves.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, ServiceConfiguration> next() {
+                            return leaves.next();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return trie.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /**
+     * Receives the entries that differ between two maps.
+     */
+    @FunctionalInterface
+    public interface DiffVisitor {
+
+        /**
+         * @param name   the service name
+         * @param before the configuration in the first map, null if it was absent
+         * @param after  the configuration in the second map, null if it is absent
+         */
+        void changed(String name, ServiceConfiguration before, ServiceConfiguration after);
+    }
+
+    /**
+     * Reports every service whose configuration differs between {@code from} and {@code to}.
+     * Subtrees the two maps share are skipped by reference, so the cost is proportional to the
+     * number of changes (times the depth of the trie), not to the size of the maps.
+     */
+    public static void diff(PersistentServiceMap from, PersistentServiceMap to, DiffVisitor visitor) {
+        PersistentTrie.diff(from.trie, to.trie, (name, before, after) -> visitor.changed(name,
+                before == null ? null : before.value, after == null ? null : after.value));
+    }
+
+    // A service entry: the configuration is compared by reference, the version is not compared.
+    private static final class Leaf extends PersistentTrie.Entry implements Map.Entry<String, ServiceConfiguration> {
+
+        final ServiceConfiguration value;
+        final long version;
+
+        Leaf(String key, ServiceConfiguration value, long version) {
+            super(key);
+            this.value = value;
+            this.version = version;
+        }
+
+        @Override
+        boolean sameAs(PersistentTrie.Entry other) {
+            return other instanceof Leaf leaf && leaf.value == value;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public ServiceConfiguration getValue() {
+            return value;
+        }
+
+        @Override
+        public ServiceConfiguration setValue(ServiceConfiguration value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Map.Entry<?, ?> e && key.equals(e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(value);
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package com.krickert.search.pipeline;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable string-keyed hash array mapped trie, 32 children per node, behind
+ * {@link PersistentServiceMap} and the adjacency maps of {@link ServiceGraphIndex}.
+ * {@link #plus} and {@link #minus} copy only the path to the changed entry, so a trie derived
+ * from another shares every untouched node with it, and {@link #diff} can skip whole subtrees
+ * two tries have in common.
+ * <p>
+ * Entries are supplied by the owning map, as subclasses of {@link Entry} carrying whatever
+ * payload it needs; the trie only uses their key and hash, and asks
+ * {@link Entry#sameAs} whether a new entry changes anything.
+ *
+ * @param <E> the entry type
+ */
+final class PersistentTrie<E extends PersistentTrie.Entry> implements Iterable<E> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final PersistentTrie<?> EMPTY = new PersistentTrie<>(Node.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E extends Entry> PersistentTrie<E> empty() {
+        return (PersistentTrie<E>) EMPTY;
+    }
+
+    /**
+     * A key and its payload. The hash is computed once, when the entry is created.
+     */
+    abstract static class Entry {
+
+        final String key;
+        final int hash;
+
+        Entry(String key) {
+            this.key = key;
+            this.hash = hash(key);
+        }
+
+        /**
+         * Whether this entry carries the same payload as {@code other}, an entry with the same
+         * key, so that putting it would change nothing.
+         */
+        abstract boolean sameAs(Entry other);
+    }
+
+    /**
+     * Receives the entries that differ between two tries.
+     */
+    @FunctionalInterface
+    interface DiffVisitor<E> {
+
+        /**
+         * @param key    the key
+         * @param before the entry in the first trie, null if it was absent
+         * @param after  the entry in the second trie, null if it is absent
+         */
+        void changed(String key, E before, E after);
+    }
+
+    /**
+     * This trie with {@code entry} in place of any entry with the same key; this trie itself if
+     * that entry is {@link Entry#sameAs the same}, in which case the existing entry is kept.
+     */
+    PersistentTrie<E> plus(E entry) {
+        boolean[] added = new boolean[1];
+        Node updated = root.plus(entry, 0, added);
+        return updated == root ? this : new PersistentTrie<>(updated, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * This trie without {@code key}; this trie itself if it had no such entry.
+     */
+    PersistentTrie<E> minus(String key) {
+        if (key == null) {
+            return this;
+        }
+        Node updated = root.minus(key, hash(key), 0);
+        return updated == root ? this : new PersistentTrie<>(updated, size - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    E get(String key) {
+        return key == null ? null : (E) root.find(key, hash(key), 0);
+    }
+
+    int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new EntryIterator<>(root);
+    }
+
+    /**
+     * Reports every key whose entry differs between {@code from} and {@code to}. Subtrees the
+     * two tries share are skipped by reference, so the cost is proportional to the number of
+     * changes (times the depth of the trie), not to the size of the tries.
+     */
+    static <E extends Entry> void diff(PersistentTrie<E> from, PersistentTrie<E> to, DiffVisitor<E> visitor) {
+        diff(from.root, to.root, visitor);
+    }
+
+    private static <E extends Entry> void diff(Object from, Object to, DiffVisitor<E> visitor) {
+        if (from == to) {
+            return;
+        }
+        if (from instanceof Node a && to instanceof Node b) {
+            int bitmap = a.bitmap | b.bitmap;
+            while (bitmap != 0) {
+                int bit = Integer.lowestOneBit(bitmap);
+                bitmap &= ~bit;
+                diff(a.child(bit), b.child(bit), visitor);
+            }
+            return;
+        }
+        // Different shapes at this slot, e.g. one entry on one side and a subtree on the other:
+        // compare the few entries below it directly.
+        Map<String, E> before = entries(from);
+        Map<String, E> after = entries(to);
+        before.forEach((key, entry) -> {
+            E other = after.get(key);
+            if (other == null || !other.sameAs(entry)) {
+                visitor.changed(key, entry, other);
+            }
+        });
+        after.forEach((key, entry) -> {
+            if (!before.containsKey(key)) {
+                visitor.changed(key, null, entry);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Entry> Map<String, E> entries(Object slot) {
+        Map<String, E> entries = new HashMap<>();
+        if (slot instanceof Node node) {
+            new EntryIterator<E>(node).forEachRemaining(entry -> entries.put(entry.key, entry));
+        } else if (slot instanceof Entry entry) {
+            entries.put(entry.key, (E) entry);
+        } else if (slot instanceof Collision collision) {
+            for (Entry entry : collision.entries()) {
+                entries.put(entry.key, (E) entry);
+            }
+        }
+        return entries;
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    // Entries whose full 32-bit hashes are equal, so no level of the trie can tell them apart.
+    private record Collision(int hash, Entry[] entries) {
+    }
+
+    /**
+     * A trie node: one bit per occupied child slot, children packed in slot order. A child is an
+     * {@link Entry}, a {@link Collision} or another node.
+     */
+    private static final class Node {
+
+        static final Node EMPTY = new Node(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] children;
+
+        Node(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+
+        Object child(int bit) {
+            return (bitmap & bit) == 0 ? null : children[Integer.bitCount(bitmap & (bit - 1))];
+        }
+
+        Entry find(String key, int hash, int shift) {
+            Object child = child(1 << ((hash >>> shift) & MASK));
+            if (child instanceof Entry entry) {
+                return entry.key.equals(key) ? entry : null;
+            }
+            if (child instanceof Node node) {
+                return node.find(key, hash, shift + BITS);
+            }
+            if (child instanceof Collision collision) {
+                for (Entry entry : collision.entries()) {
+                    if (entry.key.equals(key)) {
+                        return entry;
+                    }
+                }
+            }
+            return null;
+        }
+
+        Node plus(Entry entry, int shift, boolean[] added) {
+            int bit = 1 << ((entry.hash >>> shift) & MASK);
+            int index = Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                Object[] copy = new Object[children.length + 1];
+                System.arraycopy(children, 0, copy, 0, index);
+                copy[index] = entry;
+                System.arraycopy(children, index, copy, index + 1, children.length - index);
+                return new Node(bitmap | bit, copy);
+            }
+            Object child = children[index];
+            Object replacement;
+            if (child instanceof Node node) {
+                replacement = node.plus(entry, shift + BITS, added);
+            } else if (child instanceof Entry existing) {
+                if (existing.key.equals(entry.key)) {
+                    replacement = entry.sameAs(existing) ? existing : entry;
+                } else {
+                    added[0] = true;
+                    replacement = merge(existing, existing.hash, entry, shift + BITS);
+                }
+            } else {
+                replacement = plus((Collision) child, entry, shift + BITS, added);
+            }
+            return replacement == child ? this : with(index, replacement);
+        }
+
+        Node minus(String key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = Integer.bitCount(bitmap & (bit - 1));
+            Object child = children[index];
+            Object replacement;
+            if (child instanceof Entry entry) {
+                if (!entry.key.equals(key)) {
+                    return this;
+                }
+                replacement = null;
+            } else if (child instanceof Node node) {
+                Node smaller = node.minus(key, hash, shift + BITS);
+                if (smaller == node) {
+                    return this;
+                }
+                // A subtree left with a single entry is pulled up into this slot.
+                replacement = smaller.bitmap == 0 ? null
+                        : smaller.children.length == 1 && !(smaller.children[0] instanceof Node)
+                        ? smaller.children[0] : smaller;
+            } else {
+                Collision collision = (Collision) child;
+                Entry[] remaining = Arrays.stream(collision.entries())
+                        .filter(entry -> !entry.key.equals(key))
+                        .toArray(Entry[]::new);
+                if (remaining.length == collision.entries().length) {
+                    return this;
+                }
+                replacement = remaining.length == 1 ? remaining[0] : new Collision(collision.hash(), remaining);
+            }
+            if (replacement != null) {
+                return with(index, replacement);
+            }
+            Object[] copy = new Object[children.length - 1];
+            System.arraycopy(children, 0, copy, 0, index);
+            System.arraycopy(children, index + 1, copy, index, children.length - index - 1);
+            return new Node(bitmap & ~bit, copy);
+        }
+
+        private Node with(int index, Object child) {
+            Object[] copy = children.clone();
+            copy[index] = child;
+            return new Node(bitmap, copy);
+        }
+
+        private static Object plus(Collision collision, Entry entry, int shift, boolean[] added) {
+            if (collision.hash() != entry.hash) {
+                added[0] = true;
+                return merge(collision, collision.hash(), entry, shift);
+            }
+            Entry[] entries = collision.entries();
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].key.equals(entry.key)) {
+                    if (entry.sameAs(entries[i])) {
+                        return collision;
+                    }
+                    Entry[] copy = entries.clone();
+                    copy[i] = entry;
+                    return new Collision(collision.hash(), copy);
+                }
+            }
+            added[0] = true;
+            Entry[] copy = Arrays.copyOf(entries, entries.length + 1);
+            copy[entries.length] = entry;
+            return new Collision(collision.hash(), copy);
+        }
+
+        /**
+         * A subtree holding an existing slot (an entry or collision) and a new entry with a
+         * different key.
+         */
+        private static Object merge(Object existing, int existingHash, Entry entry, int shift) {
+            if (existingHash == entry.hash) {
+                Entry[] entries = existing instanceof Collision collision
+                        ? Arrays.copyOf(collision.entries(), collision.entries().length + 1)
+                        : new Entry[]{(Entry) existing, null};
+                entries[entries.length - 1] = entry;
+                return new Collision(entry.hash, entries);
+            }
+            int existingBit = 1 << ((existingHash >>> shift) & MASK);
+            int entryBit = 1 << ((entry.hash >>> shift) & MASK);
+            if (existingBit == entryBit) {
+                return new Node(existingBit, new Object[]{merge(existing, existingHash, entry, shift + BITS)});
+            }
+            Object[] children = Integer.compareUnsigned(existingBit, entryBit) < 0
+                    ? new Object[]{existing, entry}
+                    : new Object[]{entry, existing};
+            return new Node(existingBit | entryBit, children);
+        }
+    }
+
+    private static final class EntryIterator<E extends Entry> implements Iterator<E> {
+
+        private final ArrayDeque<Object> pending = new ArrayDeque<>();
+        private Entry[] collision;
+        private int collisionIndex;
+        private Entry next;
+
+        EntryIterator(Node root) {
+            pending.push(root);
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Entry current = next;
+            advance();
+            return (E) current;
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null) {
+                if (collision != null && collisionIndex < collision.length) {
+                    next = collision[collisionIndex++];
+                    return;
+                }
+                collision = null;
+                Object slot = pending.poll();
+                if (slot == null) {
+                    return;
+                }
+                if (slot instanceof Entry entry) {
+                    next = entry;
+                } else if (slot instanceof Collision c) {
+                    collision = c.entries();
+                    collisionIndex = 0;
+                } else {
+                    Object[] children = ((Node) slot).children;
+                    for (int i = children.length - 1; i >= 0; i--) {
+                        pending.push(children[i]);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.krickert.search.pipeline;
+
+import io.micronaut.serde.annotation.Serdeable;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@Serdeable
+public class PipelineBatchRequest {
+    private List<PipelineOperation> operations = new ArrayList<>();
+}
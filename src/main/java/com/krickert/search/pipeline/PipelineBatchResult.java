@@ -0,0 +1,14 @@
+package com.krickert.search.pipeline;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.util.List;
+
+/**
+ * Result of applying a batch to a pipeline. Either every operation was published in a single
+ * new version, or none was and {@code version} is still the version the batch was checked against.
+ */
+@Serdeable
+public record PipelineBatchResult(String pipeline, boolean applied, long version,
+                                  List<PipelineOperationResult> results) {
+}
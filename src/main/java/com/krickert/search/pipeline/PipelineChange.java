@@ -0,0 +1,22 @@
+package com.krickert.search.pipeline;
+
+import java.util.Set;
+
+/**
+ * A published transition of one pipeline from {@code previous} to {@code current}.
+ *
+ * @param previous        the snapshot that was replaced
+ * @param current         the snapshot that was published
+ * @param changedServices services added, replaced or removed by the transition
+ * @param reset           true when the whole service map was replaced, e.g. by configuration
+ *                        binding, and consumers should reload rather than patch
+ * @param remote          true when the change was pulled from the persistent store rather than
+ *                        made locally, so stores must not write it back
+ */
+public record PipelineChange(PipelineSnapshot previous, PipelineSnapshot current,
+                             Set<String> changedServices, boolean reset, boolean remote) {
+
+    public String pipeline() {
+        return current.name();
+    }
+}
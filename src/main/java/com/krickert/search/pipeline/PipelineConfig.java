@@ -1,17 +1,29 @@
 package com.krickert.search.pipeline;
 
+import com.krickert.search.EntityTags;
 import io.micronaut.context.annotation.EachProperty;
 import io.micronaut.context.annotation.Parameter;
 import io.micronaut.core.annotation.Introspected;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.core.util.StringUtils;
 import io.micronaut.serde.annotation.Serdeable;
 import jakarta.inject.Singleton;
+import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
+@Slf4j
 @Getter
-@Setter
 @EachProperty("pipeline.configs")
 @Singleton
 @Serdeable
@@ -21,22 +33,353 @@ public class PipelineConfig {
     // The property key from the configuration (pipeline1, pipeline2, etc.)
     private final String name;
 
-    // The existing map of service configurations.
-    private Map<String, ServiceConfiguration> service;
+    // The current immutable snapshot. Writers publish a replacement with compareAndSet, so
+    // readers never lock and never see a half-applied change.
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<PipelineSnapshot> snapshot;
+
+    @Getter(AccessLevel.NONE)
+    private final List<Consumer<PipelineChange>> changeListeners = new CopyOnWriteArrayList<>();
+
+    // Concurrent writers can finish their compareAndSet in one order and reach the listeners in
+    // another; changes are parked here until every earlier version has been delivered.
+    @Getter(AccessLevel.NONE)
+    private final Map<Long, PipelineChange> pendingChanges = new HashMap<>();
+
+    // Guards pendingChanges and lastNotifiedVersion, and is held while listeners run so they see
+    // versions in order. A lock rather than a monitor: listeners may block (journal, write-behind),
+    // and a virtual thread blocking inside synchronized pins its carrier thread.
+    @Getter(AccessLevel.NONE)
+    private final ReentrantLock deliveryLock = new ReentrantLock();
+
+    @Getter(AccessLevel.NONE)
+    private long lastNotifiedVersion;
+
+    // Recent versions, recorded in version order as they are delivered to the listeners.
+    @Getter(AccessLevel.NONE)
+    private final PipelineHistory history = new PipelineHistory(PipelineHistory.DEFAULT_SIZE);
 
     public PipelineConfig(@Parameter String name) {
         this.name = name;
+        this.snapshot = new AtomicReference<>(PipelineSnapshot.empty(name));
+        this.history.record(snapshot.get());
+    }
+
+    /**
+     * The current snapshot. Use this rather than several getters when the service map, index and
+     * version have to agree with each other.
+     */
+    public PipelineSnapshot snapshot() {
+        return snapshot.get();
+    }
+
+    public long getVersion() {
+        return snapshot.get().version();
+    }
+
+    /**
+     * Returns an unmodifiable view of the services in the current snapshot.
+     */
+    public Map<String, ServiceConfiguration> getService() {
+        return snapshot.get().services();
+    }
+
+    public void setService(Map<String, ServiceConfiguration> service) {
+        replaceServices(service, false);
+    }
+
+    /**
+     * Replaces the whole service map with the copy held by the persistent store.
+     */
+    public PipelineSnapshot applyRemote(Map<String, ServiceConfiguration> service) {
+        return replaceServices(service, true);
+    }
+
+    private PipelineSnapshot replaceServices(Map<String, ServiceConfiguration> service, boolean remote) {
+        PipelineSnapshot current;
+        PipelineSnapshot next;
+        do {
+            current = snapshot.get();
+            next = PipelineSnapshot.of(name, current.version() + 1, service);
+        } while (!snapshot.compareAndSet(current, next));
+        published(new PipelineChange(current, next, next.services().keySet(), true, remote));
+        return next;
+    }
+
+    public PipelineHistory history() {
+        return history;
+    }
+
+    /**
+     * Sets how many versions are retained, keeping the most recent ones.
+     */
+    public void retainHistory(int size) {
+        history.resize(size);
+    }
+
+    /**
+     * The changes between two retained versions, or null if either is no longer retained.
+     */
+    public PipelineDiff diff(long fromVersion, long toVersion) {
+        PipelineHistory.Revision from = history.get(fromVersion);
+        PipelineHistory.Revision to = history.get(toVersion);
+        return from == null || to == null ? null : PipelineDiff.between(name, from, to);
+    }
+
+    /**
+     * Publishes a new version whose services are those of a retained earlier version. Only the
+     * services that differ are touched, and the rollback reaches listeners and stores like any
+     * other change.
+     *
+     * @return what the rollback changed, or null if the version is no longer retained
+     */
+    public PipelineDiff rollback(long version) {
+        PipelineHistory.Revision target = history.get(version);
+        if (target == null) {
+            return null;
+        }
+        PipelineChange change = publish(builder -> builder.revertTo(target.services()));
+        return PipelineDiff.between(change.previous(), change.current());
+    }
+
+    /**
+     * Registers a listener that is called once for every published version, in version order.
+     */
+    public void addChangeListener(Consumer<PipelineChange> listener) {
+        changeListeners.add(listener);
     }
 
     public boolean containsService(String serviceName) {
-        return service.containsKey(serviceName);
+        return snapshot.get().services().containsKey(serviceName);
+    }
+
+    public PipelineSnapshot addOrUpdateService(ServiceConfigurationDto dto) {
+        return addOrUpdateService(dto, null);
+    }
+
+    /**
+     * Adds or replaces a service. With {@code ifMatch} set, the service must exist and its
+     * version tag must match, checked against the same snapshot the change is published over.
+     *
+     * @throws IllegalArgumentException    if the service has no {@link #isServiceName name}
+     * @throws PreconditionFailedException if the precondition does not hold
+     */
+    public PipelineSnapshot addOrUpdateService(ServiceConfigurationDto dto, @Nullable String ifMatch) {
+        requireServiceName(dto.getName());
+        return update(builder -> {
+            requireServiceMatch(builder, dto.getName(), ifMatch);
+            addOrUpdateService(builder, dto);
+        });
+    }
+
+    public PipelineSnapshot deleteService(String serviceName) {
+        return deleteService(serviceName, null);
+    }
+
+    /**
+     * Deletes a service, subject to the same {@code ifMatch} precondition as
+     * {@link #addOrUpdateService(ServiceConfigurationDto, String)}.
+     *
+     * @throws IllegalArgumentException    if {@code serviceName} is not a {@link #isServiceName name}
+     * @throws PreconditionFailedException if the precondition does not hold
+     */
+    public PipelineSnapshot deleteService(String serviceName, @Nullable String ifMatch) {
+        requireServiceName(serviceName);
+        return update(builder -> {
+            requireServiceMatch(builder, serviceName, ifMatch);
+            builder.remove(serviceName);
+        });
+    }
+
+    /**
+     * Whether {@code serviceName} can name a service: not null, not blank, and not the string
+     * {@code "null"} that form inputs send for an empty field.
+     */
+    public static boolean isServiceName(@Nullable String serviceName) {
+        return serviceName != null && !serviceName.isBlank() && !"null".equalsIgnoreCase(serviceName);
+    }
+
+    private static void requireServiceName(String serviceName) {
+        if (!isServiceName(serviceName)) {
+            throw new IllegalArgumentException("service name is required");
+        }
+    }
+
+    private void requireServiceMatch(PipelineSnapshot.Builder builder, String serviceName, String ifMatch) {
+        if (ifMatch == null) {
+            return;
+        }
+        long version = builder.baseServiceVersion(serviceName);
+        if (version < 0 || !EntityTags.matchesStrong(ifMatch, EntityTags.version(name, serviceName, version))) {
+            throw new PreconditionFailedException(name, serviceName, version);
+        }
+    }
+
+    /**
+     * Applies a mutation to a working copy of the current snapshot and publishes the result with
+     * compareAndSet, retrying against the newer snapshot if another writer got there first. The
+     * mutation may therefore run more than once and must not have side effects of its own.
+     * <p>
+     * A mutation that changes nothing, such as deleting a missing service, publishes nothing:
+     * the current snapshot is returned and its version stays the same.
+     */
+    public PipelineSnapshot update(Consumer<PipelineSnapshot.Builder> mutation) {
+        return publish(mutation).current();
+    }
+
+    private PipelineChange publish(Consumer<PipelineSnapshot.Builder> mutation) {
+        while (true) {
+            PipelineSnapshot current = snapshot.get();
+            PipelineSnapshot.Builder builder = current.toBuilder();
+            mutation.accept(builder);
+            PipelineSnapshot next = builder.build();
+            if (next == current) {
+                return new PipelineChange(current, current, Set.of(), false, false);
+            }
+            if (snapshot.compareAndSet(current, next)) {
+                PipelineChange change = new PipelineChange(current, next, builder.changedServices(), false, false);
+                published(change);
+                return change;
+            }
+        }
+    }
+
+    /**
+     * Applies an ordered list of operations as one transaction: if every operation is valid the
+     * whole batch is published as a single new version, otherwise nothing changes.
+     */
+    public PipelineBatchResult applyBatch(List<PipelineOperation> operations) {
+        return applyBatch(operations, null);
+    }
+
+    /**
+     * Applies a batch as {@link #applyBatch(List)} does; with {@code ifMatch} set, only if the
+     * pipeline version tag matches the snapshot the batch would replace.
+     *
+     * @throws PreconditionFailedException if the precondition does not hold
+     */
+    public PipelineBatchResult applyBatch(List<PipelineOperation> operations, @Nullable String ifMatch) {
+        while (true) {
+            PipelineSnapshot current = snapshot.get();
+            if (ifMatch != null && !EntityTags.matchesStrong(ifMatch, EntityTags.version(name, current.version()))) {
+                throw new PreconditionFailedException(name, null, current.version());
+            }
+            if (operations.isEmpty()) {
+                return new PipelineBatchResult(name, true, current.version(), List.of());
+            }
+            PipelineSnapshot.Builder builder = current.toBuilder();
+            List<PipelineOperationResult> results = new ArrayList<>(operations.size());
+            boolean failed = false;
+            for (int i = 0; i < operations.size(); i++) {
+                PipelineOperationResult result = apply(builder, i, operations.get(i));
+                failed |= result.status() == PipelineOperationResult.Status.FAILED;
+                results.add(result);
+            }
+            if (failed) {
+                results.replaceAll(result -> result.status() == PipelineOperationResult.Status.APPLIED
+                        ? result.withStatus(PipelineOperationResult.Status.NOT_APPLIED)
+                        : result);
+                return new PipelineBatchResult(name, false, current.version(), results);
+            }
+            PipelineSnapshot next = builder.build();
+            if (next == current) {
+                return new PipelineBatchResult(name, true, current.version(), results);
+            }
+            if (snapshot.compareAndSet(current, next)) {
+                published(new PipelineChange(current, next, builder.changedServices(), false, false));
+                return new PipelineBatchResult(name, true, next.version(), results);
+            }
+        }
+    }
+
+    private void published(PipelineChange change) {
+        deliveryLock.lock();
+        try {
+            pendingChanges.put(change.current().version(), change);
+            PipelineChange next;
+            while ((next = pendingChanges.remove(lastNotifiedVersion + 1)) != null) {
+                lastNotifiedVersion = next.current().version();
+                history.record(next.current());
+                for (Consumer<PipelineChange> listener : changeListeners) {
+                    try {
+                        listener.accept(next);
+                    } catch (RuntimeException e) {
+                        log.error("Pipeline change listener failed for {} version {}", name, lastNotifiedVersion, e);
+                    }
+                }
+            }
+        } finally {
+            deliveryLock.unlock();
+        }
+    }
+
+    private static PipelineOperationResult apply(PipelineSnapshot.Builder builder, int index,
+                                                 PipelineOperation operation) {
+        PipelineOperation.Type op = operation.getOp();
+        String serviceName = operation.serviceName();
+        if (op == null) {
+            return failed(index, null, serviceName, "op is required");
+        }
+        if (!isServiceName(serviceName)) {
+            return failed(index, op, serviceName, "service name is required");
+        }
+        switch (op) {
+            case ADD, UPDATE -> {
+                ServiceConfigurationDto dto = operation.getService();
+                if (dto == null) {
+                    return failed(index, op, serviceName, "service is required for " + op);
+                }
+                boolean exists = builder.contains(serviceName);
+                if (op == PipelineOperation.Type.ADD && exists) {
+                    return failed(index, op, serviceName, "service already exists");
+                }
+                if (op == PipelineOperation.Type.UPDATE && !exists) {
+                    return failed(index, op, serviceName, "service does not exist");
+                }
+                dto.setName(serviceName);
+                addOrUpdateService(builder, dto);
+            }
+            case DELETE -> {
+                if (builder.remove(serviceName) == null) {
+                    return failed(index, op, serviceName, "service does not exist");
+                }
+            }
+        }
+        return new PipelineOperationResult(index, op, serviceName, PipelineOperationResult.Status.APPLIED, null);
+    }
+
+    private static PipelineOperationResult failed(int index, PipelineOperation.Type op, String serviceName,
+                                                  String message) {
+        return new PipelineOperationResult(index, op, serviceName, PipelineOperationResult.Status.FAILED, message);
+    }
+
+    static void addOrUpdateService(PipelineSnapshot.Builder builder, ServiceConfigurationDto dto) {
+        // Any forward-to service that isn't in the pipeline yet is added as an empty placeholder.
+        if (dto.getGrpcForwardTo() != null) {
+            for (String grpcForward : dto.getGrpcForwardTo()) {
+                if (!"null".equals(grpcForward) && StringUtils.isNotEmpty(grpcForward)
+                        && !builder.contains(grpcForward)) {
+                    builder.put(ServiceConfiguration.of(grpcForward, null, null, null));
+                }
+            }
+        }
+        builder.put(ServiceConfiguration.of(dto.getName(), dto.getKafkaListenTopics(),
+                dto.getKafkaPublishTopics(), dto.getGrpcForwardTo()));
+    }
+
+    public Set<String> publishersOf(String topic) {
+        return snapshot.get().index().publishersOf(topic);
+    }
+
+    public Set<String> listenersOf(String topic) {
+        return snapshot.get().index().listenersOf(topic);
+    }
+
+    public Set<String> forwardTargetsOf(String serviceName) {
+        return snapshot.get().index().forwardTargetsOf(serviceName);
     }
 
-    public void addOrUpdateService(ServiceConfigurationDto dto) {
-        ServiceConfiguration config = new ServiceConfiguration(dto.getName());
-        config.setKafkaListenTopics(dto.getKafkaListenTopics());
-        config.setKafkaPublishTopics(dto.getKafkaPublishTopics());
-        config.setGrpcForwardTo(dto.getGrpcForwardTo());
-        service.put(dto.getName(), config);
+    public Set<String> forwardSourcesOf(String serviceName) {
+        return snapshot.get().index().forwardSourcesOf(serviceName);
     }
-}
\ No newline at end of file
+}
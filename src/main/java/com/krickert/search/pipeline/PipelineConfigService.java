@@ -1,11 +1,15 @@
 package com.krickert.search.pipeline;
 
 import io.micronaut.context.annotation.Value;
+import io.micronaut.context.event.ApplicationEventPublisher;
+import io.micronaut.core.annotation.Nullable;
 import io.micronaut.runtime.context.scope.Refreshable;
 import jakarta.inject.Singleton;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -16,17 +20,60 @@ import java.util.stream.Collectors;
 @Getter
 public class PipelineConfigService {
 
-    // All pipeline configs are injected as a map, keyed by the configuration name.
+    // The default pipelines plus any pipeline.configs.* beans from configuration, keyed by name.
     private final Map<String, PipelineConfig> pipelineConfigs;
 
     // The active pipeline name is set via configuration; default "pipeline1" for example.
-    private String activePipelineName;
+    // Volatile so a switch made by one request is seen by every other request thread.
+    private volatile String activePipelineName;
+
+    @Getter(AccessLevel.NONE)
+    private final ApplicationEventPublisher<PipelineChange> changePublisher;
+
+    @Getter(AccessLevel.NONE)
+    private final int historySize;
+
+    // Present when a local store such as the pipeline journal is enabled.
+    @Getter(AccessLevel.NONE)
+    private final DurablePipelineStore durableStore;
+
+    // Present when a write-behind store such as Consul can turn writes away while it is backed up.
+    @Getter(AccessLevel.NONE)
+    private final PipelineWriteGate writeGate;
 
     public PipelineConfigService(Map<String, PipelineConfig> pipelineConfigs,
-                                 @Value("${pipeline.active:pipeline1}") String activePipelineName) {
+                                 DefaultPipelineConfig defaultPipelineConfig,
+                                 @Value("${pipeline.active:pipeline1}") String activePipelineName,
+                                 ApplicationEventPublisher<PipelineChange> changePublisher,
+                                 @Value("${pipeline.history.size:64}") int historySize,
+                                 @Nullable DurablePipelineStore durableStore,
+                                 @Nullable PipelineWriteGate writeGate) {
         // Using a ConcurrentHashMap for thread safety.
-        this.pipelineConfigs = new ConcurrentHashMap<>(pipelineConfigs);
+        this.pipelineConfigs = new ConcurrentHashMap<>();
+        // Defaults are copied so edits never leak back into DefaultPipelineConfig; pipelines bound
+        // from application configuration override a default of the same name.
+        defaultPipelineConfig.getPipelines().forEach((name, defaults) -> {
+            PipelineConfig copy = new PipelineConfig(name);
+            copy.setService(defaults.getService());
+            this.pipelineConfigs.put(name, copy);
+        });
+        this.pipelineConfigs.putAll(pipelineConfigs);
+        // The durable store holds the last state written, so it wins over both. Listeners are
+        // not registered yet, so restoring is not written back.
+        if (durableStore != null) {
+            durableStore.pipelines().forEach((name, services) ->
+                    this.pipelineConfigs.computeIfAbsent(name, PipelineConfig::new).setService(services));
+        }
         this.activePipelineName = activePipelineName;
+        this.changePublisher = changePublisher;
+        this.historySize = historySize;
+        this.durableStore = durableStore;
+        this.writeGate = writeGate;
+        // Every published version is re-broadcast as an application event (change feed, stores).
+        this.pipelineConfigs.values().forEach(config -> {
+            config.retainHistory(historySize);
+            config.addChangeListener(changePublisher::publishEvent);
+        });
     }
 
     public PipelineConfig getActivePipelineConfig() {
@@ -47,15 +94,81 @@ public class PipelineConfigService {
         }
     }
 
-    public void deleteService(String serviceName) {
-        PipelineConfig activeConfig = getActivePipelineConfig();
-        // Remove references from all services' grpcForwardTo lists.
-        activeConfig.getService().values().forEach(service -> {
-            if (service.getGrpcForwardTo() != null) {
-                service.getGrpcForwardTo().removeIf(target -> target.equalsIgnoreCase(serviceName));
-            }
+    public PipelineConfig getPipelineConfig(String pipelineName) {
+        return pipelineConfigs.get(pipelineName);
+    }
+
+    /**
+     * Returns the named pipeline, creating an empty one if it doesn't exist yet.
+     */
+    public PipelineConfig getOrCreatePipelineConfig(String pipelineName) {
+        return pipelineConfigs.computeIfAbsent(pipelineName, name -> {
+            PipelineConfig config = new PipelineConfig(name);
+            config.retainHistory(historySize);
+            config.addChangeListener(changePublisher::publishEvent);
+            return config;
         });
-        // Remove the service itself from the active configuration.
-        activeConfig.getService().remove(serviceName);
+    }
+
+    public PipelineSnapshot addOrUpdateService(ServiceConfigurationDto dto) {
+        return addOrUpdateService(dto, null);
+    }
+
+    /**
+     * Adds or replaces a service in the active pipeline. The {@code If-Match} check and the
+     * publish are one compare-and-set, so concurrent editors never need a lock. With a durable
+     * store enabled, returns once the new version is durable; with a write gate, nothing is
+     * published if the gate turns the write away.
+     */
+    public PipelineSnapshot addOrUpdateService(ServiceConfigurationDto dto, @Nullable String ifMatch) {
+        PipelineConfig pipelineConfig = admit(getActivePipelineConfig());
+        return durable(pipelineConfig.addOrUpdateService(dto, ifMatch));
+    }
+
+    public PipelineSnapshot deleteService(String serviceName) {
+        return deleteService(serviceName, null);
+    }
+
+    public PipelineSnapshot deleteService(String serviceName, @Nullable String ifMatch) {
+        PipelineConfig pipelineConfig = admit(getActivePipelineConfig());
+        return durable(pipelineConfig.deleteService(serviceName, ifMatch));
+    }
+
+    public PipelineBatchResult applyBatch(PipelineConfig pipelineConfig, List<PipelineOperation> operations) {
+        return applyBatch(pipelineConfig, operations, null);
+    }
+
+    public PipelineBatchResult applyBatch(PipelineConfig pipelineConfig, List<PipelineOperation> operations,
+                                          @Nullable String ifMatch) {
+        PipelineBatchResult result = admit(pipelineConfig).applyBatch(operations, ifMatch);
+        if (result.applied() && durableStore != null) {
+            durableStore.awaitDurable(result.pipeline(), result.version());
+        }
+        return result;
+    }
+
+    /**
+     * Rolls a pipeline back to a retained version; see {@link PipelineConfig#rollback}.
+     */
+    public PipelineDiff rollback(PipelineConfig pipelineConfig, long version) {
+        PipelineDiff diff = admit(pipelineConfig).rollback(version);
+        if (diff != null && durableStore != null) {
+            durableStore.awaitDurable(diff.pipeline(), diff.to());
+        }
+        return diff;
+    }
+
+    private PipelineConfig admit(PipelineConfig pipelineConfig) {
+        if (writeGate != null) {
+            writeGate.admit(pipelineConfig.getName());
+        }
+        return pipelineConfig;
+    }
+
+    private PipelineSnapshot durable(PipelineSnapshot snapshot) {
+        if (durableStore != null) {
+            durableStore.awaitDurable(snapshot.name(), snapshot.version());
+        }
+        return snapshot;
     }
 }
\ No newline at end of file
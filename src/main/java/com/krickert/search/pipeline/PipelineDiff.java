@@ -0,0 +1,75 @@
+package com.krickert.search.pipeline;
+
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The services that differ between two versions of a pipeline. Applying the changes, in any
+ * order, to the services at {@code from} gives the services at {@code to}.
+ *
+ * @param pipeline the pipeline name
+ * @param from     the version compared from
+ * @param to       the version compared to
+ * @param changes  one entry per service that was added, updated or removed, by service name
+ */
+@Serdeable
+public record PipelineDiff(String pipeline, long from, long to, List<Change> changes) {
+
+    /**
+     * @param type   what happened to the service between the two versions
+     * @param name   the service name
+     * @param before the configuration at {@code from}, null when the service was added
+     * @param after  the configuration at {@code to}, null when the service was removed
+     */
+    @Serdeable
+    public record Change(Type type, String name, @Nullable ServiceConfiguration before,
+                         @Nullable ServiceConfiguration after) {
+    }
+
+    public enum Type {
+        ADDED,
+        UPDATED,
+        REMOVED
+    }
+
+    /**
+     * Compares two retained revisions. Only the parts of their maps that are not shared are
+     * visited, so the cost follows the number of changes rather than the size of the pipeline.
+     */
+    public static PipelineDiff between(String pipeline, PipelineHistory.Revision from, PipelineHistory.Revision to) {
+        return between(pipeline, from.version(), from.services(), to.version(), to.services());
+    }
+
+    public static PipelineDiff between(PipelineSnapshot from, PipelineSnapshot to) {
+        return between(to.name(), from.version(), from.services(), to.version(), to.services());
+    }
+
+    private static PipelineDiff between(String pipeline, long fromVersion, PersistentServiceMap from,
+                                        long toVersion, PersistentServiceMap to) {
+        List<Change> changes = new ArrayList<>();
+        PersistentServiceMap.diff(from, to, (name, before, after) -> {
+            if (before == null) {
+                changes.add(new Change(Type.ADDED, name, null, after));
+            } else if (after == null) {
+                changes.add(new Change(Type.REMOVED, name, before, null));
+            } else if (!sameConfiguration(before, after)) {
+                // A service re-saved without edits is a new object with the same content.
+                changes.add(new Change(Type.UPDATED, name, before, after));
+            }
+        });
+        changes.sort(Comparator.comparing(Change::name));
+        return new PipelineDiff(pipeline, fromVersion, toVersion, changes);
+    }
+
+    private static boolean sameConfiguration(ServiceConfiguration a, ServiceConfiguration b) {
+        return Objects.equals(a.getName(), b.getName())
+                && Objects.equals(a.getKafkaListenTopics(), b.getKafkaListenTopics())
+                && Objects.equals(a.getKafkaPublishTopics(), b.getKafkaPublishTopics())
+                && Objects.equals(a.getGrpcForwardTo(), b.getGrpcForwardTo());
+    }
+}
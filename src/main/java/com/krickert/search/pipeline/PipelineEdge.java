@@ -0,0 +1,35 @@
+package com.krickert.search.pipeline;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A directed edge of the pipeline diagram: topic to listening service, service to published
+ * topic, or service to gRPC forward target.
+ */
+@Serdeable
+public record PipelineEdge(String source, String target, Kind kind) {
+
+    public enum Kind {
+        LISTEN,
+        PUBLISH,
+        FORWARD
+    }
+
+    public static List<PipelineEdge> of(ServiceConfiguration service) {
+        List<PipelineEdge> edges = new ArrayList<>();
+        String name = service.getName();
+        if (service.getKafkaListenTopics() != null) {
+            service.getKafkaListenTopics().forEach(topic -> edges.add(new PipelineEdge(topic, name, Kind.LISTEN)));
+        }
+        if (service.getKafkaPublishTopics() != null) {
+            service.getKafkaPublishTopics().forEach(topic -> edges.add(new PipelineEdge(name, topic, Kind.PUBLISH)));
+        }
+        if (service.getGrpcForwardTo() != null) {
+            service.getGrpcForwardTo().forEach(target -> edges.add(new PipelineEdge(name, target, Kind.FORWARD)));
+        }
+        return edges;
+    }
+}
@@ -0,0 +1,76 @@
+package com.krickert.search.pipeline;
+
+import io.micronaut.context.annotation.Bean;
+import io.micronaut.context.annotation.Factory;
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses between platform and virtual threads for work that may block: request handling
+ * (through the {@value #EXECUTOR} executor) and the threads of the persistent stores.
+ * <p>
+ * {@code pipeline.execution.mode=virtual} runs every request and store thread on its own
+ * virtual thread; {@code platform} (the default) uses a fixed pool of
+ * {@code pipeline.execution.platform-threads} platform threads for requests and dedicated
+ * daemon threads for the stores.
+ */
+@Slf4j
+@Getter
+@Factory
+public class PipelineExecution {
+
+    // Named executor that controllers hand blocking requests to with @ExecuteOn.
+    public static final String EXECUTOR = "pipeline-io";
+
+    public enum Mode {
+        PLATFORM, VIRTUAL
+    }
+
+    private final Mode mode;
+    private final int platformThreads;
+
+    public PipelineExecution(@Value("${pipeline.execution.mode:platform}") String mode,
+                             @Value("${pipeline.execution.platform-threads:64}") int platformThreads) {
+        this.mode = Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        this.platformThreads = Math.max(1, platformThreads);
+        log.info("Pipeline execution mode: {}", this.mode);
+    }
+
+    /**
+     * Creates threads for long-running store work, e.g. watches and write-behind flushers.
+     */
+    public ThreadFactory threadFactory(String name) {
+        if (mode == Mode.VIRTUAL) {
+            return Thread.ofVirtual().name(name).factory();
+        }
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Singleton
+    @Named(EXECUTOR)
+    @Bean(preDestroy = "shutdown")
+    ExecutorService pipelineExecutor() {
+        if (mode == Mode.VIRTUAL) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(EXECUTOR + "-", 0).factory());
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(platformThreads, runnable -> {
+            Thread thread = new Thread(runnable, EXECUTOR + "-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
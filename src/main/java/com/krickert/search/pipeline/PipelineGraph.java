@@ -0,0 +1,254 @@
+package com.krickert.search.pipeline;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Compact, immutable form of a pipeline's services. Every name is interned once in a
+ * {@link SymbolTable}, and the listen, publish and forward lists of all services are stored as
+ * three CSR-style pairs of int arrays (per-service offsets into one flat array of symbol ids),
+ * instead of a {@link ServiceConfiguration} and three {@code List<String>}s per service.
+ * <p>
+ * {@link ServiceConfiguration} views are built on demand by {@link #service(int)} and
+ * {@link #services()}; a null list stays null, so the graph round-trips exactly.
+ * <p>
+ * Snapshots do not hold this form: their builders replace one service at a time, which the flat
+ * arrays cannot do cheaply. A graph is built for a pass over a whole pipeline, such as an
+ * analysis, and dropped afterwards.
+ */
+public final class PipelineGraph {
+
+    public enum Relation {
+        LISTEN, PUBLISH, FORWARD
+    }
+
+    private static final int RELATIONS = Relation.values().length;
+
+    private final SymbolTable symbols;
+    // Symbol id of each service, in service order.
+    private final int[] serviceSymbols;
+    // Service index of each symbol, or -1 for names that are only topics or forward targets.
+    private final int[] symbolServices;
+    private final int[][] offsets = new int[RELATIONS][];
+    private final int[][] targets = new int[RELATIONS][];
+    // Bit (service * RELATIONS + relation) is set when that list is null rather than empty.
+    private final BitSet nullLists;
+
+    private PipelineGraph(SymbolTable symbols, int[] serviceSymbols, int[][] offsets, int[][] targets,
+                          BitSet nullLists) {
+        this.symbols = symbols;
+        this.serviceSymbols = serviceSymbols;
+        this.nullLists = nullLists;
+        System.arraycopy(offsets, 0, this.offsets, 0, RELATIONS);
+        System.arraycopy(targets, 0, this.targets, 0, RELATIONS);
+        this.symbolServices = new int[symbols.size()];
+        Arrays.fill(symbolServices, -1);
+        for (int service = 0; service < serviceSymbols.length; service++) {
+            symbolServices[serviceSymbols[service]] = service;
+        }
+    }
+
+    public static PipelineGraph of(Map<String, ServiceConfiguration> services) {
+        int serviceCount = services.size();
+        SymbolTable symbols = new SymbolTable(serviceCount * 2);
+        int[] serviceSymbols = new int[serviceCount];
+        int[][] offsets = new int[RELATIONS][serviceCount + 1];
+        int[][] targets = new int[RELATIONS][];
+        int[] fill = new int[RELATIONS];
+        BitSet nullLists = new BitSet(serviceCount * RELATIONS);
+
+        // First pass sizes the flat arrays exactly.
+        int service = 0;
+        for (ServiceConfiguration config : services.values()) {
+            for (Relation relation : Relation.values()) {
+                List<String> values = values(config, relation);
+                offsets[relation.ordinal()][service + 1] = values == null ? 0 : values.size();
+            }
+            service++;
+        }
+        for (int relation = 0; relation < RELATIONS; relation++) {
+            for (int i = 0; i < serviceCount; i++) {
+                offsets[relation][i + 1] += offsets[relation][i];
+            }
+            targets[relation] = new int[offsets[relation][serviceCount]];
+        }
+
+        service = 0;
+        for (Map.Entry<String, ServiceConfiguration> entry : services.entrySet()) {
+            serviceSymbols[service] = symbols.intern(entry.getKey());
+            for (Relation relation : Relation.values()) {
+                List<String> values = values(entry.getValue(), relation);
+                if (values == null) {
+                    nullLists.set(service * RELATIONS + relation.ordinal());
+                    continue;
+                }
+                for (String value : values) {
+                    targets[relation.ordinal()][fill[relation.ordinal()]++] = symbols.intern(value);
+                }
+            }
+            service++;
+        }
+        symbols.trim();
+        return new PipelineGraph(symbols, serviceSymbols, offsets, targets, nullLists);
+    }
+
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
+    public int serviceCount() {
+        return serviceSymbols.length;
+    }
+
+    public String serviceName(int service) {
+        return symbols.name(serviceSymbols[service]);
+    }
+
+    public int serviceSymbol(int service) {
+        return serviceSymbols[service];
+    }
+
+    /**
+     * Returns the index of the named service, or -1 if there is no such service.
+     */
+    public int serviceIndex(String name) {
+        int symbol = symbols.idOf(name);
+        return symbol < 0 ? -1 : symbolServices[symbol];
+    }
+
+    /**
+     * Returns the index of the service a symbol names, or -1 if it names only a topic or an
+     * undefined forward target.
+     */
+    public int serviceOfSymbol(int symbol) {
+        return symbolServices[symbol];
+    }
+
+    public int edgeCount(Relation relation) {
+        return targets[relation.ordinal()].length;
+    }
+
+    /**
+     * Start (inclusive) of a service's entries in {@link #targets(Relation)}; the end is the
+     * start of the next service.
+     */
+    public int start(Relation relation, int service) {
+        return offsets[relation.ordinal()][service];
+    }
+
+    public int end(Relation relation, int service) {
+        return offsets[relation.ordinal()][service + 1];
+    }
+
+    /**
+     * The flat array of symbol ids for a relation. Shared with the graph; never modify it.
+     */
+    public int[] targets(Relation relation) {
+        return targets[relation.ordinal()];
+    }
+
+    /**
+     * A read-only list view of one of a service's name lists, or null if the list was null.
+     */
+    public List<String> names(Relation relation, int service) {
+        if (nullLists.get(service * RELATIONS + relation.ordinal())) {
+            return null;
+        }
+        int[] flat = targets[relation.ordinal()];
+        int from = start(relation, service);
+        int size = end(relation, service) - from;
+        return new AbstractList<>() {
+            @Override
+            public String get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException(index);
+                }
+                return symbols.name(flat[from + index]);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Builds the {@link ServiceConfiguration} of one service.
+     */
+    public ServiceConfiguration service(int service) {
+        return ServiceConfiguration.of(serviceName(service),
+                names(Relation.LISTEN, service), names(Relation.PUBLISH, service), names(Relation.FORWARD, service));
+    }
+
+    /**
+     * A read-only map view keyed by service name, in service order. Values are built per lookup,
+     * so callers that read the same service repeatedly should keep the result.
+     */
+    public Map<String, ServiceConfiguration> services() {
+        return new AbstractMap<>() {
+            @Override
+            public ServiceConfiguration get(Object key) {
+                int service = key instanceof String name ? serviceIndex(name) : -1;
+                return service < 0 ? null : service(service);
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return key instanceof String name && serviceIndex(name) >= 0;
+            }
+
+            @Override
+            public int size() {
+                return serviceSymbols.length;
+            }
+
+            @Override
+            public Set<Entry<String, ServiceConfiguration>> entrySet() {
+                return new AbstractSet<>() {
+                    @Override
+                    public Iterator<Entry<String, ServiceConfiguration>> iterator() {
+                        return new Iterator<>() {
+                            private int next;
+
+                            @Override
+                            public boolean hasNext() {
+                                return next < serviceSymbols.length;
+                            }
+
+                            @Override
+                            public Entry<String, ServiceConfiguration> next() {
+                                if (!hasNext()) {
+                                    throw new NoSuchElementException();
+                                }
+                                int service = next++;
+                                return new SimpleImmutableEntry<>(serviceName(service), service(service));
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return serviceSymbols.length;
+                    }
+                };
+            }
+        };
+    }
+
+    private static List<String> values(ServiceConfiguration config, Relation relation) {
+        return switch (relation) {
+            case LISTEN -> config.getKafkaListenTopics();
+            case PUBLISH -> config.getKafkaPublishTopics();
+            case FORWARD -> config.getGrpcForwardTo();
+        };
+    }
+}
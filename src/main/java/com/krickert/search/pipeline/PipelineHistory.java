@@ -0,0 +1,90 @@
+package com.krickert.search.pipeline;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The most recent versions of one pipeline, in a ring of fixed size. Each revision keeps only
+ * the version's {@link PersistentServiceMap}, which shares every unchanged node and
+ * {@link ServiceConfiguration} with its neighbours, so retaining a version costs roughly the
+ * services that changed in it. A version that replaced the whole map (configuration binding or
+ * a reload from the store) shares nothing with the one before it.
+ */
+public final class PipelineHistory {
+
+    public static final int DEFAULT_SIZE = 64;
+
+    private Revision[] ring;
+    private long newest = -1;
+
+    PipelineHistory(int size) {
+        this.ring = new Revision[Math.max(1, size)];
+    }
+
+    /**
+     * One retained version.
+     *
+     * @param version     the pipeline version
+     * @param publishedAt when the version was published
+     * @param services    the services at that version
+     */
+    public record Revision(long version, Instant publishedAt, PersistentServiceMap services) {
+
+        public Summary summary() {
+            return new Summary(version, publishedAt, services.size());
+        }
+    }
+
+    /**
+     * A retained version without its services, for listing the history.
+     */
+    @Serdeable
+    public record Summary(long version, Instant publishedAt, int services) {
+    }
+
+    // Called in version order.
+    synchronized void record(PipelineSnapshot snapshot) {
+        ring[slot(snapshot.version())] = new Revision(snapshot.version(), Instant.now(), snapshot.services());
+        newest = snapshot.version();
+    }
+
+    /**
+     * The retained revision of a version, or null if it is older than the ring or not yet published.
+     */
+    public synchronized Revision get(long version) {
+        if (version < 0 || version > newest) {
+            return null;
+        }
+        Revision revision = ring[slot(version)];
+        return revision != null && revision.version() == version ? revision : null;
+    }
+
+    /**
+     * Every retained revision, oldest first.
+     */
+    public synchronized List<Revision> revisions() {
+        List<Revision> revisions = new ArrayList<>(ring.length);
+        for (long version = Math.max(0, newest - ring.length + 1); version <= newest; version++) {
+            Revision revision = get(version);
+            if (revision != null) {
+                revisions.add(revision);
+            }
+        }
+        return revisions;
+    }
+
+    synchronized void resize(int size) {
+        List<Revision> retained = revisions();
+        ring = new Revision[Math.max(1, size)];
+        for (Revision revision : retained) {
+            ring[slot(revision.version())] = revision;
+        }
+    }
+
+    private int slot(long version) {
+        return (int) (version % ring.length);
+    }
+}
@@ -0,0 +1,122 @@
+package com.krickert.search.pipeline;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.context.annotation.Context;
+import io.micronaut.runtime.event.annotation.EventListener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pipeline gauges and churn counters. Eager so the gauges exist before the first scrape rather
+ * than the first request.
+ */
+@Slf4j
+@Context
+public class PipelineMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final PipelineConfigService configService;
+    private final Set<String> registeredPipelines = ConcurrentHashMap.newKeySet();
+    private final DistributionSummary jsonPayloadSize;
+
+    public PipelineMetrics(MeterRegistry meterRegistry, PipelineConfigService configService) {
+        this.meterRegistry = meterRegistry;
+        this.configService = configService;
+        this.jsonPayloadSize = DistributionSummary.builder("pipeline.json.payload.size")
+                .description("Size of pipeline JSON responses")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("pipeline.count", configService, service -> service.getAllPipelineNames().size())
+                .description("Pipelines currently defined")
+                .strongReference(true)
+                .register(meterRegistry);
+        configService.getAllPipelineConfigs().forEach(this::registerGauges);
+    }
+
+    public void recordJsonPayload(int bytes) {
+        jsonPayloadSize.record(bytes);
+    }
+
+    @EventListener
+    public void onPipelineChange(PipelineChange change) {
+        PipelineConfig config = configService.getPipelineConfig(change.pipeline());
+        if (config != null) {
+            registerGauges(config);
+        }
+        String source = change.remote() ? "remote" : "local";
+        if (change.reset()) {
+            // A reset lists every service of the new map, so count only what actually differs,
+            // removals included.
+            PersistentServiceMap.diff(change.previous().services(), change.current().services(),
+                    (name, before, after) -> {
+                        if (before == null || after == null || !before.sameContent(after)) {
+                            countMutation(change, source,
+                                    before == null ? "added" : after == null ? "removed" : "updated");
+                        }
+                    });
+            return;
+        }
+        for (String name : change.changedServices()) {
+            boolean existed = change.previous().services().containsKey(name);
+            boolean exists = change.current().services().containsKey(name);
+            countMutation(change, source, !existed ? "added" : exists ? "updated" : "removed");
+        }
+    }
+
+    private void countMutation(PipelineChange change, String source, String type) {
+        Counter.builder("pipeline.mutations")
+                .description("Services added, updated or removed, by published change")
+                .tag("pipeline", change.pipeline())
+                .tag("type", type)
+                .tag("source", source)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Registers the size gauges of a pipeline once. Gauges read the current snapshot on every
+     * scrape, so they never lag behind a change.
+     */
+    private void registerGauges(PipelineConfig config) {
+        if (!registeredPipelines.add(config.getName())) {
+            return;
+        }
+        Gauge.builder("pipeline.services", config, c -> c.snapshot().services().size())
+                .description("Services in the pipeline")
+                .tag("pipeline", config.getName())
+                .strongReference(true)
+                .register(meterRegistry);
+        Gauge.builder("pipeline.topics", config, c -> c.snapshot().index().topics().size())
+                .description("Kafka topics referenced by the pipeline")
+                .tag("pipeline", config.getName())
+                .strongReference(true)
+                .register(meterRegistry);
+        Gauge.builder("pipeline.edges", config, PipelineMetrics::edgeCount)
+                .description("Listen, publish and forward edges in the pipeline")
+                .tag("pipeline", config.getName())
+                .strongReference(true)
+                .register(meterRegistry);
+        log.debug("Registered metrics for pipeline {}", config.getName());
+    }
+
+    private static double edgeCount(PipelineConfig config) {
+        long edges = 0;
+        for (ServiceConfiguration service : config.snapshot().services().values()) {
+            edges += size(service.getKafkaListenTopics())
+                    + size(service.getKafkaPublishTopics())
+                    + size(service.getGrpcForwardTo());
+        }
+        return edges;
+    }
+
+    private static int size(List<String> list) {
+        return list == null ? 0 : list.size();
+    }
+}
@@ -0,0 +1,32 @@
+package com.krickert.search.pipeline;
+
+import io.micronaut.serde.annotation.Serdeable;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * One step of a {@link PipelineBatchRequest}. Add and update carry the full service;
+ * delete only needs the name, taken from {@code name} or {@code service.name}.
+ */
+@Getter
+@Setter
+@Serdeable
+public class PipelineOperation {
+
+    public enum Type {
+        ADD,
+        UPDATE,
+        DELETE
+    }
+
+    private Type op;
+    private String name;
+    private ServiceConfigurationDto service;
+
+    public String serviceName() {
+        if (name != null) {
+            return name;
+        }
+        return service == null ? null : service.getName();
+    }
+}
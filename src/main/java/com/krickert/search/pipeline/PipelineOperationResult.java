@@ -0,0 +1,28 @@
+package com.krickert.search.pipeline;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+/**
+ * Outcome of a single operation in a batch.
+ *
+ * @param index   position of the operation in the request
+ * @param op      the operation type
+ * @param name    the service the operation targeted
+ * @param status  {@code APPLIED}, {@code FAILED}, or {@code NOT_APPLIED} when the operation was
+ *                valid but the batch was rejected because another operation failed
+ * @param message why the operation failed, otherwise {@code null}
+ */
+@Serdeable
+public record PipelineOperationResult(int index, PipelineOperation.Type op, String name,
+                                      Status status, String message) {
+
+    public enum Status {
+        APPLIED,
+        FAILED,
+        NOT_APPLIED
+    }
+
+    PipelineOperationResult withStatus(Status newStatus) {
+        return new PipelineOperationResult(index, op, name, newStatus, message);
+    }
+}
@@ -0,0 +1,42 @@
+package com.krickert.search.pipeline;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * One page of pipelines, ordered by name.
+ *
+ * @param offset    index of the first pipeline on this page
+ * @param limit     maximum number of pipelines per page
+ * @param total     number of pipelines overall
+ * @param pipelines the pipelines on this page
+ */
+@Serdeable
+public record PipelinePage(int offset, int limit, int total, List<Summary> pipelines) {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    public static PipelinePage of(Collection<PipelineConfig> configs, int offset, int limit) {
+        List<PipelineSnapshot> snapshots = new ArrayList<>(configs.size());
+        configs.forEach(config -> snapshots.add(config.snapshot()));
+        snapshots.sort(Comparator.comparing(PipelineSnapshot::name));
+        List<Summary> page = new ArrayList<>(Math.min(limit, Math.max(0, snapshots.size() - offset)));
+        for (int i = offset; i < snapshots.size() && page.size() < limit; i++) {
+            PipelineSnapshot snapshot = snapshots.get(i);
+            page.add(new Summary(snapshot.name(), snapshot.version(), snapshot.services().size()));
+        }
+        return new PipelinePage(offset, limit, snapshots.size(), page);
+    }
+
+    /**
+     * A pipeline's name, current version and number of services.
+     */
+    @Serdeable
+    public record Summary(String name, long version, int services) {
+    }
+}
@@ -0,0 +1,321 @@
+package com.krickert.search.pipeline;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-pass parser for {@code pipeline.configs.<pipeline>.service.<service>.<field>} properties.
+ * <p>
+ * The input is streamed line by line and each key is tokenized in place, so no
+ * {@link java.util.Properties} table, regular expression or per-service key lookup is needed.
+ * Lists may be given comma separated ({@code kafka-listen-topics=a,b}) or indexed
+ * ({@code kafka-listen-topics[0]=a}); both kebab-case and camelCase field names are accepted.
+ * Line syntax follows {@link java.util.Properties#load(Reader)}: {@code #}/{@code !} comments,
+ * {@code =}, {@code :} or whitespace separators, backslash escapes and line continuations.
+ * Keys outside {@code pipeline.configs.} are ignored.
+ */
+@Slf4j
+public final class PipelinePropertiesParser {
+
+    private static final String PREFIX = "pipeline.configs.";
+    private static final String SERVICE_SEGMENT = "service.";
+
+    private enum Field {
+        LISTEN,
+        PUBLISH,
+        FORWARD
+    }
+
+    // Mutable per-service lists while parsing; null means the field never appeared.
+    private static final class ServiceDraft {
+        private List<String> listen;
+        private List<String> publish;
+        private List<String> forward;
+
+        List<String> get(Field field) {
+            return switch (field) {
+                case LISTEN -> listen;
+                case PUBLISH -> publish;
+                case FORWARD -> forward;
+            };
+        }
+
+        void set(Field field, List<String> values) {
+            switch (field) {
+                case LISTEN -> listen = values;
+                case PUBLISH -> publish = values;
+                case FORWARD -> forward = values;
+            }
+        }
+    }
+
+    private final Map<String, Map<String, ServiceDraft>> pipelines = new LinkedHashMap<>();
+    private int entries;
+
+    private PipelinePropertiesParser() {
+    }
+
+    /**
+     * Parses every pipeline definition in the reader. The reader is not closed.
+     */
+    public static Map<String, PipelineConfig> parse(Reader reader) throws IOException {
+        PipelinePropertiesParser parser = new PipelinePropertiesParser();
+        parser.read(reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader, 64 * 1024));
+        return parser.build();
+    }
+
+    private void read(BufferedReader reader) throws IOException {
+        StringBuilder logical = new StringBuilder(256);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int start = skipWhitespace(line, 0);
+            if (logical.isEmpty()) {
+                if (start == line.length()) {
+                    continue;
+                }
+                char first = line.charAt(start);
+                if (first == '#' || first == '!') {
+                    continue;
+                }
+            }
+            // An odd number of trailing backslashes continues the line; leading whitespace
+            // of the continuation line is dropped.
+            int end = line.length();
+            int backslashes = 0;
+            while (end - backslashes > start && line.charAt(end - backslashes - 1) == '\\') {
+                backslashes++;
+            }
+            if ((backslashes & 1) == 1) {
+                logical.append(line, start, end - 1);
+                continue;
+            }
+            logical.append(line, start, end);
+            accept(logical);
+            logical.setLength(0);
+        }
+        if (!logical.isEmpty()) {
+            accept(logical);
+        }
+    }
+
+    private void accept(CharSequence line) {
+        // Cheap rejection before unescaping anything.
+        if (line.length() <= PREFIX.length() || line.charAt(0) != 'p' || !startsWith(line, PREFIX)) {
+            return;
+        }
+        int keyEnd = 0;
+        int length = line.length();
+        while (keyEnd < length) {
+            char c = line.charAt(keyEnd);
+            if (c == '\\') {
+                keyEnd += 2;
+                continue;
+            }
+            if (c == '=' || c == ':' || c == ' ' || c == '\t' || c == '\f') {
+                break;
+            }
+            keyEnd++;
+        }
+        keyEnd = Math.min(keyEnd, length);
+        int valueStart = skipWhitespace(line, keyEnd);
+        if (valueStart < length && (line.charAt(valueStart) == '=' || line.charAt(valueStart) == ':')) {
+            valueStart = skipWhitespace(line, valueStart + 1);
+        }
+        String key = unescape(line, 0, keyEnd);
+        String value = unescape(line, valueStart, length);
+        entry(key, value);
+    }
+
+    private void entry(String key, String value) {
+        int pipelineStart = PREFIX.length();
+        int pipelineEnd = key.indexOf('.', pipelineStart);
+        if (pipelineEnd <= pipelineStart || !key.startsWith(SERVICE_SEGMENT, pipelineEnd + 1)) {
+            return;
+        }
+        int serviceStart = pipelineEnd + 1 + SERVICE_SEGMENT.length();
+        int serviceEnd = key.indexOf('.', serviceStart);
+        if (serviceEnd <= serviceStart) {
+            return;
+        }
+        int fieldStart = serviceEnd + 1;
+        int fieldEnd = key.length();
+        int listIndex = -1;
+        if (key.endsWith("]")) {
+            int bracket = key.lastIndexOf('[');
+            if (bracket <= fieldStart) {
+                return;
+            }
+            listIndex = parseIndex(key, bracket + 1, key.length() - 1);
+            if (listIndex < 0) {
+                return;
+            }
+            fieldEnd = bracket;
+        }
+        Field field = field(key, fieldStart, fieldEnd);
+        if (field == null) {
+            return;
+        }
+        String pipelineName = key.substring(pipelineStart, pipelineEnd);
+        String serviceName = key.substring(serviceStart, serviceEnd);
+        ServiceDraft draft = pipelines.computeIfAbsent(pipelineName, k -> new LinkedHashMap<>())
+                .computeIfAbsent(serviceName, k -> new ServiceDraft());
+        entries++;
+
+        if (listIndex >= 0) {
+            List<String> values = draft.get(field);
+            if (values == null) {
+                values = new ArrayList<>(4);
+                draft.set(field, values);
+            }
+            while (values.size() <= listIndex) {
+                values.add(null);
+            }
+            values.set(listIndex, value.trim());
+        } else if (field == Field.FORWARD && "null".equals(value)) {
+            // "grpc-forward-to=null" marks a terminal service; it has no forward list at all.
+            draft.set(field, null);
+        } else {
+            draft.set(field, splitCommas(value));
+        }
+    }
+
+    private Map<String, PipelineConfig> build() {
+        Map<String, PipelineConfig> result = new LinkedHashMap<>(pipelines.size() * 2);
+        int services = 0;
+        for (Map.Entry<String, Map<String, ServiceDraft>> pipeline : pipelines.entrySet()) {
+            Map<String, ServiceConfiguration> serviceConfigs = new HashMap<>(pipeline.getValue().size() * 2);
+            for (Map.Entry<String, ServiceDraft> service : pipeline.getValue().entrySet()) {
+                ServiceDraft draft = service.getValue();
+                ServiceConfiguration config = ServiceConfiguration.of(service.getKey(),
+                        compact(draft.listen), compact(draft.publish), compact(draft.forward));
+                serviceConfigs.put(config.getName(), config);
+                if (log.isDebugEnabled()) {
+                    log.debug("Pipeline {} service {}: listen={}, publish={}, forward={}", pipeline.getKey(),
+                            service.getKey(), config.getKafkaListenTopics(), config.getKafkaPublishTopics(),
+                            config.getGrpcForwardTo());
+                }
+            }
+            PipelineConfig pipelineConfig = new PipelineConfig(pipeline.getKey());
+            pipelineConfig.setService(serviceConfigs);
+            result.put(pipeline.getKey(), pipelineConfig);
+            services += serviceConfigs.size();
+        }
+        log.info("Parsed {} pipelines with {} services from {} pipeline properties", result.size(), services, entries);
+        return result;
+    }
+
+    private static Field field(String key, int start, int end) {
+        return switch (key.substring(start, end)) {
+            case "kafka-listen-topics", "kafkaListenTopics" -> Field.LISTEN;
+            case "kafka-publish-topics", "kafkaPublishTopics" -> Field.PUBLISH;
+            case "grpc-forward-to", "grpcForwardTo" -> Field.FORWARD;
+            default -> null;
+        };
+    }
+
+    private static List<String> splitCommas(String value) {
+        List<String> values = new ArrayList<>(4);
+        int start = 0;
+        int length = value.length();
+        while (start <= length) {
+            int comma = value.indexOf(',', start);
+            int end = comma < 0 ? length : comma;
+            String item = value.substring(start, end).trim();
+            if (!item.isEmpty()) {
+                values.add(item);
+            }
+            start = end + 1;
+        }
+        return values;
+    }
+
+    // Names are shared per pipeline when PipelineSnapshot#of copies the services.
+    private static List<String> compact(List<String> values) {
+        if (values == null) {
+            return null;
+        }
+        values.removeIf(value -> value == null || value.isEmpty());
+        return values;
+    }
+
+    private static int parseIndex(String key, int start, int end) {
+        if (start >= end) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = start; i < end; i++) {
+            char c = key.charAt(i);
+            if (c < '0' || c > '9' || index > 100_000) {
+                return -1;
+            }
+            index = index * 10 + (c - '0');
+        }
+        return index;
+    }
+
+    private static boolean startsWith(CharSequence line, String prefix) {
+        for (int i = 0; i < prefix.length(); i++) {
+            if (line.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipWhitespace(CharSequence line, int from) {
+        int i = from;
+        while (i < line.length()) {
+            char c = line.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\f') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static String unescape(CharSequence line, int start, int end) {
+        int backslash = -1;
+        for (int i = start; i < end; i++) {
+            if (line.charAt(i) == '\\') {
+                backslash = i;
+                break;
+            }
+        }
+        if (backslash < 0) {
+            return line.subSequence(start, end).toString();
+        }
+        StringBuilder out = new StringBuilder(end - start);
+        out.append(line, start, backslash);
+        for (int i = backslash; i < end; i++) {
+            char c = line.charAt(i);
+            if (c != '\\' || i + 1 >= end) {
+                out.append(c);
+                continue;
+            }
+            char next = line.charAt(++i);
+            switch (next) {
+                case 't' -> out.append('\t');
+                case 'n' -> out.append('\n');
+                case 'r' -> out.append('\r');
+                case 'f' -> out.append('\f');
+                case 'u' -> {
+                    if (i + 4 < end) {
+                        out.append((char) Integer.parseInt(line.subSequence(i + 1, i + 5).toString(), 16));
+                        i += 4;
+                    }
+                }
+                default -> out.append(next);
+            }
+        }
+        return out.toString();
+    }
+}
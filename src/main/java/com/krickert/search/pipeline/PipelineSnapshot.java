@@ -0,0 +1,252 @@
+package com.krickert.search.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable, version-stamped view of one pipeline. {@link PipelineConfig} publishes a new
+ * snapshot for every mutation, so a reader holding a snapshot always sees a consistent service
+ * map and adjacency index, no matter what writers do concurrently.
+ *
+ * @param name     the pipeline name
+ * @param version  incremented by one for every published change
+ * @param services immutable map of service name to configuration, sharing structure with the
+ *                 snapshot it was derived from; each entry carries its service version
+ * @param index    topic and gRPC adjacency for {@code services}
+ */
+public record PipelineSnapshot(String name, long version,
+                               PersistentServiceMap services,
+                               ServiceGraphIndex index) {
+
+    public static PipelineSnapshot empty(String name) {
+        return new PipelineSnapshot(name, 0, PersistentServiceMap.empty(), new ServiceGraphIndex());
+    }
+
+    /**
+     * Builds the first snapshot from a bound or deserialized service map, copying every entry.
+     * This starts a new lineage, with its own table of shared names.
+     */
+    public static PipelineSnapshot of(String name, long version, Map<String, ServiceConfiguration> services) {
+        SymbolTable names = new SymbolTable(services.size() * 2);
+        PersistentServiceMap copy = PersistentServiceMap.empty();
+        for (Map.Entry<String, ServiceConfiguration> entry : services.entrySet()) {
+            ServiceConfiguration config = entry.getValue();
+            String serviceName = names.canonical(config.getName() == null ? entry.getKey() : config.getName());
+            copy = copy.plus(names.canonical(entry.getKey()), ServiceConfiguration.of(serviceName,
+                    shared(names, config.getKafkaListenTopics()), shared(names, config.getKafkaPublishTopics()),
+                    shared(names, config.getGrpcForwardTo())), version);
+        }
+        ServiceGraphIndex index = ServiceGraphIndex.of(copy, names);
+        index.seal();
+        return new PipelineSnapshot(name, version, copy, index);
+    }
+
+    /**
+     * The version of a service: the pipeline version that last added or changed it, or -1 if
+     * the pipeline has no such service.
+     */
+    public long serviceVersion(String serviceName) {
+        return services.versionOf(serviceName);
+    }
+
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * The configuration with its name and list elements replaced by the instances in
+     * {@code names}; the configuration itself if it already uses them.
+     */
+    private static ServiceConfiguration shared(SymbolTable names, ServiceConfiguration config) {
+        String name = config.getName() == null ? null : names.canonical(config.getName());
+        List<String> listen = shared(names, config.getKafkaListenTopics());
+        List<String> publish = shared(names, config.getKafkaPublishTopics());
+        List<String> forward = shared(names, config.getGrpcForwardTo());
+        if (name == config.getName() && listen == config.getKafkaListenTopics()
+                && publish == config.getKafkaPublishTopics() && forward == config.getGrpcForwardTo()) {
+            return config;
+        }
+        return ServiceConfiguration.of(name, listen, publish, forward);
+    }
+
+    // The list itself when every element is already the shared instance.
+    private static List<String> shared(SymbolTable names, List<String> values) {
+        if (values == null) {
+            return null;
+        }
+        List<String> result = values;
+        for (int i = 0; i < values.size(); i++) {
+            String value = values.get(i);
+            String canonical = value == null ? null : names.canonical(value);
+            if (canonical != value) {
+                if (result == values) {
+                    result = new ArrayList<>(values);
+                }
+                result.set(i, canonical);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Working copy of a snapshot. The service map and the index maps are persistent, so starting
+     * a builder copies nothing and each change copies only the trie path to the keys it touches,
+     * plus any adjacency set it modifies.
+     * <p>
+     * Every configuration put through a builder shares its names through the table of the
+     * lineage. Names of removed services and topics stay in that table until it holds more than
+     * twice the names still in use; the next builder then starts a new table from the base
+     * snapshot's services.
+     */
+    public static final class Builder {
+
+        // Dead names a lineage's table may hold beyond twice its live ones before it is rebuilt.
+        private static final int MIN_STALE_NAMES = 64;
+
+        private final PipelineSnapshot base;
+        private PersistentServiceMap services;
+        private final ServiceGraphIndex index;
+        private final Set<String> changed = new LinkedHashSet<>();
+
+        private Builder(PipelineSnapshot base) {
+            this.base = base;
+            this.services = base.services();
+            SymbolTable names = base.index().names();
+            int live = services.size() + base.index().topicEntries();
+            this.index = names.size() > 2 * live + MIN_STALE_NAMES
+                    ? base.index().copy(namesOf(services)) : base.index().copy();
+        }
+
+        // A new table holding the instances the services already share.
+        private static SymbolTable namesOf(PersistentServiceMap services) {
+            SymbolTable names = new SymbolTable(services.size() * 2);
+            for (ServiceConfiguration config : services.values()) {
+                shared(names, config);
+            }
+            return names;
+        }
+
+        public boolean contains(String serviceName) {
+            return services.containsKey(serviceName);
+        }
+
+        public ServiceConfiguration get(String serviceName) {
+            return services.get(serviceName);
+        }
+
+        /**
+         * The version of the service in the snapshot this builder started from.
+         */
+        public long baseServiceVersion(String serviceName) {
+            return base.serviceVersion(serviceName);
+        }
+
+        public long baseVersion() {
+            return base.version();
+        }
+
+        /**
+         * Adds or replaces a service. Replacing a service with an equal configuration changes
+         * nothing, so the service keeps its version.
+         *
+         * @return the configuration it replaced, or {@code null} if there was none
+         */
+        public ServiceConfiguration put(ServiceConfiguration config) {
+            config = shared(index.names(), config);
+            ServiceConfiguration previous = services.get(config.getName());
+            if (previous != null && previous.sameContent(config)) {
+                return previous;
+            }
+            services = services.plus(config.getName(), config, base.version() + 1);
+            changed.add(config.getName());
+            if (previous != null) {
+                index.remove(previous);
+            }
+            index.add(config);
+            return previous;
+        }
+
+        /**
+         * Removes a service and drops it from every {@code grpcForwardTo} list that names it.
+         * Only the services that forward to it are touched.
+         *
+         * @return the removed configuration, or {@code null} if there was none
+         */
+        public ServiceConfiguration remove(String serviceName) {
+            for (String source : List.copyOf(index.forwardSourcesOf(serviceName))) {
+                ServiceConfiguration config = services.get(source);
+                if (config == null || config.getGrpcForwardTo() == null) {
+                    continue;
+                }
+                List<String> remaining = new ArrayList<>(config.getGrpcForwardTo().size());
+                for (String target : config.getGrpcForwardTo()) {
+                    if (!target.equalsIgnoreCase(serviceName)) {
+                        remaining.add(target);
+                    }
+                }
+                put(ServiceConfiguration.of(config.getName(), config.getKafkaListenTopics(),
+                        config.getKafkaPublishTopics(), remaining));
+            }
+            return discard(serviceName);
+        }
+
+        /**
+         * Removes a service without touching the {@code grpcForwardTo} lists that name it.
+         *
+         * @return the removed configuration, or {@code null} if there was none
+         */
+        ServiceConfiguration discard(String serviceName) {
+            ServiceConfiguration removed = services.get(serviceName);
+            if (removed != null) {
+                services = services.minus(serviceName);
+                changed.add(serviceName);
+                index.remove(removed);
+            }
+            return removed;
+        }
+
+        /**
+         * Makes the service map equal to {@code target}, a map this one shares structure with,
+         * touching only the services that differ.
+         */
+        void revertTo(PersistentServiceMap target) {
+            PersistentServiceMap.diff(services, target, (name, now, then) -> {
+                if (then == null) {
+                    discard(name);
+                } else {
+                    put(then);
+                }
+            });
+        }
+
+        /**
+         * Names of the services added, replaced or removed through this builder.
+         */
+        public Set<String> changedServices() {
+            return Collections.unmodifiableSet(changed);
+        }
+
+        /**
+         * Whether the service map differs from the one this builder started from.
+         */
+        public boolean hasChanges() {
+            return services != base.services();
+        }
+
+        /**
+         * The next version of the snapshot, or the snapshot this builder started from, unchanged,
+         * if nothing was changed through it.
+         */
+        public PipelineSnapshot build() {
+            if (!hasChanges()) {
+                return base;
+            }
+            index.seal();
+            return new PipelineSnapshot(base.name(), base.version() + 1, services, index);
+        }
+    }
+}
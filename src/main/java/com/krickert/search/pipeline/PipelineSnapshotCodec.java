@@ -0,0 +1,193 @@
+package com.krickert.search.pipeline;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of a set of pipelines, used for the build-time snapshot of
+ * {@code pipeline.default.properties} and for the compacted snapshots of the mutation journal.
+ * <p>
+ * Layout: magic, format version, a checksum of the source it was compiled from, a string table
+ * holding every pipeline, service and topic name once, then the pipelines with every name written
+ * as a varint index into the table. A {@code 0} list length means the field was absent; otherwise
+ * the length is stored plus one.
+ */
+public final class PipelineSnapshotCodec {
+
+    static final int MAGIC = 0x50534E50; // "PSNP"
+    static final int FORMAT_VERSION = 1;
+
+    private PipelineSnapshotCodec() {
+    }
+
+    public static void write(Map<String, PipelineConfig> pipelines, long sourceChecksum, OutputStream output)
+            throws IOException {
+        Map<String, Map<String, ServiceConfiguration>> services = new LinkedHashMap<>(pipelines.size() * 2);
+        pipelines.forEach((pipelineName, config) -> services.put(pipelineName, config.getService()));
+        writeServices(services, sourceChecksum, output);
+    }
+
+    /**
+     * Writes the service maps of a set of pipelines, keyed by pipeline name, in the same layout
+     * as {@link #write}.
+     */
+    public static void writeServices(Map<String, ? extends Map<String, ServiceConfiguration>> pipelines,
+                                     long sourceChecksum, OutputStream output) throws IOException {
+        Map<String, Integer> symbols = new LinkedHashMap<>();
+        pipelines.forEach((pipelineName, pipelineServices) -> {
+            intern(symbols, pipelineName);
+            pipelineServices.forEach((serviceName, service) -> {
+                intern(symbols, serviceName);
+                internAll(symbols, service.getKafkaListenTopics());
+                internAll(symbols, service.getKafkaPublishTopics());
+                internAll(symbols, service.getGrpcForwardTo());
+            });
+        });
+
+        DataOutputStream out = new DataOutputStream(output);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(sourceChecksum);
+        writeVarInt(out, symbols.size());
+        for (String symbol : symbols.keySet()) {
+            out.writeUTF(symbol);
+        }
+        writeVarInt(out, pipelines.size());
+        for (Map.Entry<String, ? extends Map<String, ServiceConfiguration>> pipeline : pipelines.entrySet()) {
+            writeVarInt(out, symbols.get(pipeline.getKey()));
+            Map<String, ServiceConfiguration> services = pipeline.getValue();
+            writeVarInt(out, services.size());
+            for (Map.Entry<String, ServiceConfiguration> service : services.entrySet()) {
+                writeVarInt(out, symbols.get(service.getKey()));
+                writeList(out, symbols, service.getValue().getKafkaListenTopics());
+                writeList(out, symbols, service.getValue().getKafkaPublishTopics());
+                writeList(out, symbols, service.getValue().getGrpcForwardTo());
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads the checksum of the source the snapshot was compiled from, leaving the stream
+     * positioned at the string table.
+     */
+    public static long readChecksum(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a pipeline snapshot");
+        }
+        int format = in.readInt();
+        if (format != FORMAT_VERSION) {
+            throw new IOException("Unsupported pipeline snapshot format " + format);
+        }
+        return in.readLong();
+    }
+
+    /**
+     * Reads the pipelines that follow the header consumed by {@link #readChecksum}.
+     */
+    public static Map<String, PipelineConfig> readPipelines(DataInputStream in) throws IOException {
+        Map<String, Map<String, ServiceConfiguration>> services = readServices(in);
+        Map<String, PipelineConfig> pipelines = new LinkedHashMap<>(services.size() * 2);
+        services.forEach((pipelineName, pipelineServices) -> {
+            PipelineConfig pipelineConfig = new PipelineConfig(pipelineName);
+            pipelineConfig.setService(pipelineServices);
+            pipelines.put(pipelineName, pipelineConfig);
+        });
+        return pipelines;
+    }
+
+    /**
+     * Reads the service maps that follow the header consumed by {@link #readChecksum}, keyed by
+     * pipeline name.
+     */
+    public static Map<String, Map<String, ServiceConfiguration>> readServices(DataInputStream in) throws IOException {
+        String[] symbols = new String[readVarInt(in)];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = in.readUTF();
+        }
+        int pipelineCount = readVarInt(in);
+        Map<String, Map<String, ServiceConfiguration>> pipelines = new LinkedHashMap<>(pipelineCount * 2);
+        for (int p = 0; p < pipelineCount; p++) {
+            String pipelineName = symbols[readVarInt(in)];
+            int serviceCount = readVarInt(in);
+            Map<String, ServiceConfiguration> services = new HashMap<>(serviceCount * 2);
+            for (int s = 0; s < serviceCount; s++) {
+                String serviceName = symbols[readVarInt(in)];
+                List<String> listen = readList(in, symbols);
+                List<String> publish = readList(in, symbols);
+                List<String> forward = readList(in, symbols);
+                services.put(serviceName, ServiceConfiguration.of(serviceName, listen, publish, forward));
+            }
+            pipelines.put(pipelineName, services);
+        }
+        return pipelines;
+    }
+
+    public static Map<String, PipelineConfig> read(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        readChecksum(in);
+        return readPipelines(in);
+    }
+
+    private static void intern(Map<String, Integer> symbols, String value) {
+        symbols.putIfAbsent(value, symbols.size());
+    }
+
+    private static void internAll(Map<String, Integer> symbols, List<String> values) {
+        if (values != null) {
+            values.forEach(value -> intern(symbols, value));
+        }
+    }
+
+    private static void writeList(DataOutputStream out, Map<String, Integer> symbols, List<String> values)
+            throws IOException {
+        if (values == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, values.size() + 1);
+        for (String value : values) {
+            writeVarInt(out, symbols.get(value));
+        }
+    }
+
+    private static List<String> readList(DataInputStream in, String[] symbols) throws IOException {
+        int size = readVarInt(in);
+        if (size == 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(size - 1);
+        for (int i = 1; i < size; i++) {
+            values.add(symbols[readVarInt(in)]);
+        }
+        return values;
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in pipeline snapshot");
+    }
+}
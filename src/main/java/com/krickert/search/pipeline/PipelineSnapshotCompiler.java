@@ -0,0 +1,40 @@
+package com.krickert.search.pipeline;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Build-time entry point that compiles {@code pipeline.default.properties} into the binary
+ * snapshot loaded by {@link DefaultPipelineConfig}. Run by the {@code compilePipelineSnapshot}
+ * Gradle task.
+ * <p>
+ * Usage: {@code PipelineSnapshotCompiler <pipeline.default.properties> <output snapshot>}
+ */
+public final class PipelineSnapshotCompiler {
+
+    private PipelineSnapshotCompiler() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: PipelineSnapshotCompiler <properties file> <snapshot file>");
+        }
+        Path source = Path.of(args[0]);
+        Path target = Path.of(args[1]);
+        byte[] content = Files.readAllBytes(source);
+        Map<String, PipelineConfig> pipelines;
+        try (Reader reader = Files.newBufferedReader(source, StandardCharsets.ISO_8859_1)) {
+            pipelines = PipelinePropertiesParser.parse(reader);
+        }
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target))) {
+            PipelineSnapshotCodec.write(pipelines, DefaultPipelineConfig.checksum(content), out);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.krickert.search.pipeline;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The services within {@code depth} hops of one service, following Kafka topics (a publisher to
+ * the listeners of the topic) and {@code grpcForwardTo} edges. Each hop is a lookup in the
+ * snapshot's {@link ServiceGraphIndex}, so the cost grows with the slice returned rather than
+ * with the pipeline.
+ * <p>
+ * {@code both} is the union of the upstream and downstream slices; it does not turn around
+ * mid-way, which would pull in the siblings of every service on the path.
+ *
+ * @param pipeline  the pipeline name
+ * @param version   the pipeline version the slice was taken from
+ * @param service   the service the slice is centred on
+ * @param depth     the maximum number of hops from {@code service}
+ * @param direction which edges were followed
+ * @param services  the services in the slice, in breadth-first order, starting with {@code service}
+ */
+@Serdeable
+public record PipelineSubgraph(String pipeline, long version, String service, int depth, Direction direction,
+                               Map<String, ServiceConfiguration> services) {
+
+    public static final int DEFAULT_DEPTH = 2;
+    public static final int MAX_DEPTH = 64;
+
+    public enum Direction {
+        /** Services that feed the given one. */
+        UP,
+        /** Services fed by the given one. */
+        DOWN,
+        BOTH;
+
+        /**
+         * The direction named by a {@code direction} query value, or null when it is not one.
+         */
+        public static Direction of(String name) {
+            for (Direction direction : values()) {
+                if (direction.name().equals(name.trim().toUpperCase(Locale.ROOT))) {
+                    return direction;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Slices a snapshot around a service, or returns null when the pipeline has no such service.
+     */
+    public static PipelineSubgraph of(PipelineSnapshot snapshot, String service, int depth, Direction direction) {
+        if (!snapshot.services().containsKey(service)) {
+            return null;
+        }
+        Map<String, ServiceConfiguration> slice = new LinkedHashMap<>();
+        slice.put(service, snapshot.services().get(service));
+        if (direction != Direction.DOWN) {
+            collect(snapshot, service, depth, false, slice);
+        }
+        if (direction != Direction.UP) {
+            collect(snapshot, service, depth, true, slice);
+        }
+        return new PipelineSubgraph(snapshot.name(), snapshot.version(), service, depth, direction,
+                Collections.unmodifiableMap(slice));
+    }
+
+    private static void collect(PipelineSnapshot snapshot, String start, int depth, boolean downstream,
+                                Map<String, ServiceConfiguration> slice) {
+        Map<String, ServiceConfiguration> services = snapshot.services();
+        ServiceGraphIndex index = snapshot.index();
+        // Visited per direction: with BOTH a service can be seen upstream and still lead further down.
+        Set<String> visited = new HashSet<>();
+        visited.add(start);
+        ArrayDeque<String> frontier = new ArrayDeque<>();
+        frontier.add(start);
+        for (int hop = 0; hop < depth && !frontier.isEmpty(); hop++) {
+            for (int i = frontier.size(); i > 0; i--) {
+                String service = frontier.poll();
+                ServiceConfiguration config = services.get(service);
+                if (downstream) {
+                    for (String topic : nullSafe(config.getKafkaPublishTopics())) {
+                        visit(index.listenersOf(topic), services, visited, frontier, slice);
+                    }
+                    visit(index.forwardTargetsOf(service), services, visited, frontier, slice);
+                } else {
+                    for (String topic : nullSafe(config.getKafkaListenTopics())) {
+                        visit(index.publishersOf(topic), services, visited, frontier, slice);
+                    }
+                    visit(index.forwardSourcesOf(service), services, visited, frontier, slice);
+                }
+            }
+        }
+    }
+
+    private static void visit(Set<String> neighbours, Map<String, ServiceConfiguration> services,
+                              Set<String> visited, ArrayDeque<String> frontier,
+                              Map<String, ServiceConfiguration> slice) {
+        for (String neighbour : neighbours) {
+            // Forward targets that are not services of their own (dangling) end the walk there.
+            ServiceConfiguration config = services.get(neighbour);
+            if (config != null && visited.add(neighbour)) {
+                frontier.add(neighbour);
+                slice.putIfAbsent(neighbour, config);
+            }
+        }
+    }
+
+    private static List<String> nullSafe(List<String> values) {
+        return values == null ? List.of() : values;
+    }
+}
@@ -0,0 +1,41 @@
+package com.krickert.search.pipeline;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Caches one derived value per pipeline, tagged with the pipeline version it was built from.
+ * A lookup with a newer version rebuilds the value, so mutations invalidate it implicitly; a
+ * lookup with an older version gets a value built for it but never replaces the newer one.
+ *
+ * @param <T> the type of the cached value
+ */
+public class PipelineVersionCache<T> {
+
+    private final Map<String, Entry<T>> entries = new ConcurrentHashMap<>();
+
+    public T get(String pipelineName, long version, Supplier<T> loader) {
+        Entry<T> entry = entries.get(pipelineName);
+        if (entry != null && entry.version() == version) {
+            return entry.value();
+        }
+        if (entry != null && entry.version() > version) {
+            // A reader still on an older snapshot; keep the newer entry for everyone else.
+            return loader.get();
+        }
+        // compute() serializes concurrent misses for the same pipeline, so the value is built once.
+        Entry<T> cached = entries.compute(pipelineName, (key, current) ->
+                current != null && current.version() >= version
+                        ? current
+                        : new Entry<>(version, loader.get()));
+        return cached.version() == version ? cached.value() : loader.get();
+    }
+
+    public void invalidate(String pipelineName) {
+        entries.remove(pipelineName);
+    }
+
+    private record Entry<T>(long version, T value) {
+    }
+}
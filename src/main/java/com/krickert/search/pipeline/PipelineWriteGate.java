@@ -0,0 +1,14 @@
+package com.krickert.search.pipeline;
+
+/**
+ * A downstream store that {@link PipelineConfigService} asks before it applies a write, so a
+ * store that cannot take another change rejects the write before anything is published.
+ */
+public interface PipelineWriteGate {
+
+    /**
+     * Returns once a change to {@code pipeline} can be accepted, blocking for a bounded time if
+     * the store is busy; throws if it still cannot be.
+     */
+    void admit(String pipeline);
+}
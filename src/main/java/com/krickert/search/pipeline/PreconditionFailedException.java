@@ -0,0 +1,33 @@
+package com.krickert.search.pipeline;
+
+import lombok.Getter;
+
+import java.io.Serial;
+
+/**
+ * Thrown when an {@code If-Match} precondition does not hold against the snapshot a mutation
+ * would replace. Nothing is published.
+ */
+@Getter
+public class PreconditionFailedException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final String pipeline;
+    // The service the precondition was on, or null for a pipeline-level precondition.
+    private final String service;
+    // The version the precondition was checked against; -1 when the service does not exist.
+    private final long currentVersion;
+
+    public PreconditionFailedException(String pipeline, String service, long currentVersion) {
+        super(service == null
+                ? "Pipeline " + pipeline + " is at version " + currentVersion
+                : currentVersion < 0
+                ? "Service " + service + " does not exist in pipeline " + pipeline
+                : "Service " + service + " in pipeline " + pipeline + " is at version " + currentVersion);
+        this.pipeline = pipeline;
+        this.service = service;
+        this.currentVersion = currentVersion;
+    }
+}
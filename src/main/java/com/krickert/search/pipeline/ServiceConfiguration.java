@@ -1,28 +1,74 @@
 package com.krickert.search.pipeline;
 
+import io.micronaut.core.annotation.Creator;
 import io.micronaut.core.annotation.Introspected;
+import io.micronaut.core.annotation.Nullable;
 import io.micronaut.serde.annotation.Serdeable;
 import lombok.Getter;
-import lombok.Setter;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
+/**
+ * One service of a pipeline. Instances are immutable: they are shared by every
+ * {@link PipelineSnapshot} that contains them and keyed by name in its service map and index,
+ * so a change is made by putting a new instance. Deserialization and configuration binding go
+ * through the constructor.
+ */
 @Getter
-@Setter
 @Serdeable
 @Introspected
-public class ServiceConfiguration {
+public final class ServiceConfiguration {
 
-    private String name;
-    private List<String> kafkaListenTopics;
-    private List<String> kafkaPublishTopics;
-    private List<String> grpcForwardTo;
+    private final String name;
+    private final List<String> kafkaListenTopics;
+    private final List<String> kafkaPublishTopics;
+    private final List<String> grpcForwardTo;
 
-    // Default constructor is needed for deserialization.
-    public ServiceConfiguration() {
+    public ServiceConfiguration(String name) {
+        this(name, null, null, null);
     }
 
-    public ServiceConfiguration(String name) {
+    /**
+     * The lists are copied into unmodifiable lists. Null list elements, which JSON input can
+     * carry, are left out.
+     */
+    @Creator
+    public ServiceConfiguration(@Nullable String name, @Nullable List<String> kafkaListenTopics,
+                                @Nullable List<String> kafkaPublishTopics, @Nullable List<String> grpcForwardTo) {
         this.name = name;
+        this.kafkaListenTopics = frozen(kafkaListenTopics);
+        this.kafkaPublishTopics = frozen(kafkaPublishTopics);
+        this.grpcForwardTo = frozen(grpcForwardTo);
+    }
+
+    public static ServiceConfiguration of(String name, List<String> kafkaListenTopics,
+                                          List<String> kafkaPublishTopics, List<String> grpcForwardTo) {
+        return new ServiceConfiguration(name, kafkaListenTopics, kafkaPublishTopics, grpcForwardTo);
+    }
+
+    /**
+     * Whether {@code other}, a configuration of the same service, has the same topics and
+     * forward-to services, so replacing this one with it would change nothing.
+     */
+    boolean sameContent(ServiceConfiguration other) {
+        return Objects.equals(kafkaListenTopics, other.kafkaListenTopics)
+                && Objects.equals(kafkaPublishTopics, other.kafkaPublishTopics)
+                && Objects.equals(grpcForwardTo, other.grpcForwardTo);
+    }
+
+    private static List<String> frozen(List<String> values) {
+        if (values == null) {
+            return null;
+        }
+        List<String> copy = new ArrayList<>(values.size());
+        for (String value : values) {
+            if (value != null) {
+                copy.add(value);
+            }
+        }
+        return Collections.unmodifiableList(copy);
     }
-}
\ No newline at end of file
+}
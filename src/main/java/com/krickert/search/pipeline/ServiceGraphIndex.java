@@ -0,0 +1,225 @@
+package com.krickert.search.pipeline;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Adjacency index over a pipeline's services: which services publish to and listen on each
+ * Kafka topic, and the outbound/inbound gRPC forwarding edges of each service.
+ * <p>
+ * The index is maintained incrementally as services are added, replaced or removed, so
+ * neighbour lookups and deletes cost time proportional to the degree of the node involved.
+ * gRPC targets are matched case-insensitively, the same way deletes always have been.
+ * <p>
+ * An index that belongs to a published {@link PipelineSnapshot} is never modified again.
+ * Writers take a {@link #copy()}, which shares the index's persistent maps: a change path-copies
+ * only the trie nodes of the keys it touches, and clones an adjacency set the first time it is
+ * modified, so deriving the index of a new version costs nothing up front.
+ * <p>
+ * Copies also share the {@link SymbolTable} that gives every service and topic name of the
+ * pipeline one {@code String} instance across all of its retained versions.
+ */
+public class ServiceGraphIndex {
+
+    private PersistentTrie<Edges> topicPublishers;
+    private PersistentTrie<Edges> topicListeners;
+    private PersistentTrie<Edges> forwardTargets;
+    private PersistentTrie<Edges> forwardSources;
+    private final SymbolTable names;
+
+    // Adjacency sets created by this instance; anything else is shared with the source index.
+    private final Set<Set<String>> owned = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    ServiceGraphIndex() {
+        this(new SymbolTable());
+    }
+
+    ServiceGraphIndex(SymbolTable names) {
+        this(PersistentTrie.empty(), PersistentTrie.empty(), PersistentTrie.empty(),
+                PersistentTrie.empty(), names);
+    }
+
+    private ServiceGraphIndex(PersistentTrie<Edges> topicPublishers,
+                              PersistentTrie<Edges> topicListeners,
+                              PersistentTrie<Edges> forwardTargets,
+                              PersistentTrie<Edges> forwardSources,
+                              SymbolTable names) {
+        this.topicPublishers = topicPublishers;
+        this.topicListeners = topicListeners;
+        this.forwardTargets = forwardTargets;
+        this.forwardSources = forwardSources;
+        this.names = names;
+    }
+
+    static ServiceGraphIndex of(Map<String, ServiceConfiguration> services, SymbolTable names) {
+        ServiceGraphIndex index = new ServiceGraphIndex(names);
+        services.values().forEach(index::add);
+        return index;
+    }
+
+    ServiceGraphIndex copy() {
+        return copy(names);
+    }
+
+    ServiceGraphIndex copy(SymbolTable names) {
+        return new ServiceGraphIndex(topicPublishers, topicListeners, forwardTargets, forwardSources, names);
+    }
+
+    SymbolTable names() {
+        return names;
+    }
+
+    // An upper bound on the distinct topics: one with both publishers and listeners counts twice.
+    int topicEntries() {
+        return topicPublishers.size() + topicListeners.size();
+    }
+
+    // Called once the owning snapshot is published; from then on the index is read-only.
+    void seal() {
+        owned.clear();
+    }
+
+    void add(ServiceConfiguration service) {
+        String name = service.getName();
+        for (String topic : nullSafe(service.getKafkaPublishTopics())) {
+            topicPublishers = link(topicPublishers, topic, name);
+        }
+        for (String topic : nullSafe(service.getKafkaListenTopics())) {
+            topicListeners = link(topicListeners, topic, name);
+        }
+        for (String target : nullSafe(service.getGrpcForwardTo())) {
+            addForward(name, target);
+        }
+    }
+
+    void remove(ServiceConfiguration service) {
+        String name = service.getName();
+        for (String topic : nullSafe(service.getKafkaPublishTopics())) {
+            topicPublishers = unlink(topicPublishers, topic, name);
+        }
+        for (String topic : nullSafe(service.getKafkaListenTopics())) {
+            topicListeners = unlink(topicListeners, topic, name);
+        }
+        for (String target : nullSafe(service.getGrpcForwardTo())) {
+            removeForward(name, target);
+        }
+    }
+
+    void addForward(String source, String target) {
+        forwardTargets = link(forwardTargets, source, target);
+        forwardSources = link(forwardSources, normalize(target), source);
+    }
+
+    void removeForward(String source, String target) {
+        forwardTargets = unlink(forwardTargets, source, target);
+        forwardSources = unlink(forwardSources, normalize(target), source);
+    }
+
+    public Set<String> publishersOf(String topic) {
+        return view(topicPublishers, topic);
+    }
+
+    public Set<String> listenersOf(String topic) {
+        return view(topicListeners, topic);
+    }
+
+    public Set<String> forwardTargetsOf(String service) {
+        return view(forwardTargets, service);
+    }
+
+    /**
+     * Services whose {@code grpcForwardTo} names the given service (ignoring case).
+     */
+    public Set<String> forwardSourcesOf(String service) {
+        return view(forwardSources, normalize(service));
+    }
+
+    public Set<String> topics() {
+        Set<String> topics = new LinkedHashSet<>();
+        for (Edges edges : topicPublishers) {
+            topics.add(edges.key);
+        }
+        for (Edges edges : topicListeners) {
+            topics.add(edges.key);
+        }
+        return topics;
+    }
+
+    private PersistentTrie<Edges> link(PersistentTrie<Edges> edges, String key, String value) {
+        if (key == null || value == null) {
+            return edges;
+        }
+        Set<String> values = values(edges, key);
+        if (values != null && values.contains(value)) {
+            return edges;
+        }
+        if (values != null && owned.contains(values)) {
+            values.add(value);
+            return edges;
+        }
+        Set<String> copy = values == null ? new LinkedHashSet<>() : new LinkedHashSet<>(values);
+        copy.add(value);
+        owned.add(copy);
+        return edges.plus(new Edges(key, copy));
+    }
+
+    private PersistentTrie<Edges> unlink(PersistentTrie<Edges> edges, String key, String value) {
+        if (key == null) {
+            return edges;
+        }
+        Set<String> values = values(edges, key);
+        if (values == null || !values.contains(value)) {
+            return edges;
+        }
+        if (values.size() == 1) {
+            return edges.minus(key);
+        }
+        if (owned.contains(values)) {
+            values.remove(value);
+            return edges;
+        }
+        Set<String> copy = new LinkedHashSet<>(values);
+        copy.remove(value);
+        owned.add(copy);
+        return edges.plus(new Edges(key, copy));
+    }
+
+    private static Set<String> values(PersistentTrie<Edges> edges, String key) {
+        Edges entry = edges.get(key);
+        return entry == null ? null : entry.values;
+    }
+
+    private static Set<String> view(PersistentTrie<Edges> edges, String key) {
+        Set<String> values = values(edges, key);
+        return values == null ? Set.of() : Collections.unmodifiableSet(values);
+    }
+
+    private static String normalize(String serviceName) {
+        return serviceName.toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> nullSafe(List<String> values) {
+        return values == null ? List.of() : values;
+    }
+
+    // The services (or targets) adjacent to one topic or service.
+    private static final class Edges extends PersistentTrie.Entry {
+
+        final Set<String> values;
+
+        Edges(String key, Set<String> values) {
+            super(key);
+            this.values = values;
+        }
+
+        @Override
+        boolean sameAs(PersistentTrie.Entry other) {
+            return other instanceof Edges edges && edges.values == values;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.krickert.search.pipeline;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns the service and topic names of one pipeline. Each distinct name is stored once and
+ * addressed by a dense int id, so graphs can refer to names with plain int arrays.
+ * <p>
+ * A {@link PipelineGraph} fills its table on one thread and only reads it once built. The table
+ * a {@link PipelineSnapshot} lineage shares its names through is used only via
+ * {@link #canonical}, which concurrent builders of that lineage may call at the same time.
+ */
+public final class SymbolTable {
+
+    private final Map<String, Integer> ids;
+    private String[] names;
+    private int size;
+
+    public SymbolTable() {
+        this(16);
+    }
+
+    public SymbolTable(int expectedSize) {
+        ids = new HashMap<>(Math.max(16, expectedSize * 4 / 3 + 1));
+        names = new String[Math.max(4, expectedSize)];
+    }
+
+    /**
+     * Returns the id of the name, assigning the next id if it hasn't been seen before.
+     */
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+        }
+        names[size] = name;
+        ids.put(name, size);
+        return size++;
+    }
+
+    /**
+     * Returns the id of the name, or -1 if it isn't in the table.
+     */
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * Returns the shared instance of an equal name, interning it first if needed.
+     */
+    public synchronized String canonical(String name) {
+        int id = intern(name);
+        return names[id];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // Drops the spare capacity once the table is complete.
+    void trim() {
+        if (names.length != size) {
+            names = Arrays.copyOf(names, size);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.krickert.search.pipeline;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.util.Set;
+
+/**
+ * The services that publish to and listen on a Kafka topic.
+ */
+@Serdeable
+public record TopicNeighbours(String topic, Set<String> publishers, Set<String> listeners) {
+}
@@ -0,0 +1,46 @@
+package com.krickert.search.pipeline.analysis;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.util.List;
+
+/**
+ * Structural problems found in one pipeline version.
+ *
+ * @param pipeline            the pipeline analysed
+ * @param version             the snapshot version the analysis was built from
+ * @param cycles              strongly connected groups of services and topics, i.e. loops
+ *                            through gRPC forwards and/or Kafka hops
+ * @param entryServices       services nothing in the pipeline forwards or publishes to; a service
+ *                            fed only by topics published outside the pipeline is one
+ * @param unreachableServices services that neither an entry service nor an externally fed topic
+ *                            can reach
+ * @param isolatedServices    services with no listen, publish or forward edges at all
+ * @param deadTopics          topics that are published but never consumed
+ * @param orphanTopics        topics that are consumed but never published
+ * @param danglingForwards    gRPC forwards to services that are not defined
+ */
+@Serdeable
+public record PipelineAnalysis(String pipeline,
+                               long version,
+                               List<Cycle> cycles,
+                               List<String> entryServices,
+                               List<String> unreachableServices,
+                               List<String> isolatedServices,
+                               List<String> deadTopics,
+                               List<String> orphanTopics,
+                               List<Forward> danglingForwards) {
+
+    public boolean healthy() {
+        return cycles.isEmpty() && unreachableServices.isEmpty() && deadTopics.isEmpty()
+                && orphanTopics.isEmpty() && danglingForwards.isEmpty();
+    }
+
+    @Serdeable
+    public record Cycle(List<String> services, List<String> topics) {
+    }
+
+    @Serdeable
+    public record Forward(String source, String target) {
+    }
+}
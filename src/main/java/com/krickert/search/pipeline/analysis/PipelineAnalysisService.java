@@ -0,0 +1,20 @@
+package com.krickert.search.pipeline.analysis;
+
+import com.krickert.search.pipeline.PipelineConfig;
+import com.krickert.search.pipeline.PipelineSnapshot;
+import com.krickert.search.pipeline.PipelineVersionCache;
+import jakarta.inject.Singleton;
+
+/**
+ * Serves the structural analysis of a pipeline, running it at most once per pipeline version.
+ */
+@Singleton
+public class PipelineAnalysisService {
+
+    private final PipelineVersionCache<PipelineAnalysis> cache = new PipelineVersionCache<>();
+
+    public PipelineAnalysis analyze(PipelineConfig pipelineConfig) {
+        PipelineSnapshot snapshot = pipelineConfig.snapshot();
+        return cache.get(snapshot.name(), snapshot.version(), () -> PipelineAnalyzer.analyze(snapshot));
+    }
+}
@@ -0,0 +1,315 @@
+package com.krickert.search.pipeline.analysis;
+
+import com.krickert.search.pipeline.PipelineGraph;
+import com.krickert.search.pipeline.PipelineGraph.Relation;
+import com.krickert.search.pipeline.PipelineSnapshot;
+import com.krickert.search.pipeline.ServiceConfiguration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Finds cycles, unreachable services and dangling topics in a pipeline in O(V + E). Services are
+ * visited in snapshot order; only the reported lists are sorted, so the report is stable between
+ * versions.
+ * <p>
+ * The pipeline is read through its compact {@link PipelineGraph} and modelled as one directed
+ * graph whose nodes are services and topics: a service points at every service it forwards to
+ * and every topic it publishes, and a topic points at every service that listens on it.
+ * Strongly connected components come from an iterative Tarjan pass, so deep forwarding chains
+ * cannot overflow the stack.
+ * <p>
+ * Topics nothing in the pipeline publishes are fed from outside it, so reachability starts from
+ * them as well as from the entry services.
+ */
+public final class PipelineAnalyzer {
+
+    private PipelineAnalyzer() {
+    }
+
+    public static PipelineAnalysis analyze(PipelineSnapshot snapshot) {
+        return new Graph(snapshot.services()).analyze(snapshot.name(), snapshot.version());
+    }
+
+    private static final class Graph {
+
+        private final List<String> serviceNames;
+        private final List<String> topicNames = new ArrayList<>();
+        private final List<PipelineAnalysis.Forward> danglingForwards = new ArrayList<>();
+
+        // Edge list over analysis nodes, turned into compressed sparse rows once complete.
+        private final int[] edgeFrom;
+        private final int[] edgeTo;
+        private int edgeCount;
+        private boolean[] published = new boolean[16];
+        private boolean[] listened = new boolean[16];
+
+        private final int nodeCount;
+        private int[] offsets;
+        private int[] targets;
+
+        Graph(Map<String, ServiceConfiguration> services) {
+            PipelineGraph graph = PipelineGraph.of(services);
+            int serviceCount = graph.serviceCount();
+            serviceNames = new ArrayList<>(serviceCount);
+            for (int service = 0; service < serviceCount; service++) {
+                serviceNames.add(graph.serviceName(service));
+            }
+            int maxEdges = graph.edgeCount(Relation.LISTEN) + graph.edgeCount(Relation.PUBLISH)
+                    + graph.edgeCount(Relation.FORWARD);
+            edgeFrom = new int[maxEdges];
+            edgeTo = new int[maxEdges];
+            // Analysis node of each topic symbol; services keep their graph index as node id.
+            int[] topicNodes = new int[graph.symbols().size()];
+            Arrays.fill(topicNodes, -1);
+            // gRPC targets match case-insensitively, as they do everywhere else.
+            Map<String, Integer> lowerCaseServices = null;
+
+            int[] publish = graph.targets(Relation.PUBLISH);
+            int[] listen = graph.targets(Relation.LISTEN);
+            int[] forward = graph.targets(Relation.FORWARD);
+            for (int service = 0; service < serviceCount; service++) {
+                for (int e = graph.start(Relation.PUBLISH, service); e < graph.end(Relation.PUBLISH, service); e++) {
+                    int node = topicNode(topicNodes, publish[e], graph);
+                    published[node - serviceCount] = true;
+                    addEdge(service, node);
+                }
+                for (int e = graph.start(Relation.LISTEN, service); e < graph.end(Relation.LISTEN, service); e++) {
+                    int node = topicNode(topicNodes, listen[e], graph);
+                    listened[node - serviceCount] = true;
+                    addEdge(node, service);
+                }
+                for (int e = graph.start(Relation.FORWARD, service); e < graph.end(Relation.FORWARD, service); e++) {
+                    String target = graph.symbols().name(forward[e]);
+                    if (target == null || target.isBlank() || "null".equals(target)) {
+                        continue;
+                    }
+                    int targetService = graph.serviceOfSymbol(forward[e]);
+                    if (targetService < 0) {
+                        if (lowerCaseServices == null) {
+                            lowerCaseServices = new HashMap<>(serviceCount * 2);
+                            // Of names equal but for case, the first in name order wins.
+                            for (int i = 0; i < serviceCount; i++) {
+                                lowerCaseServices.merge(serviceNames.get(i).toLowerCase(Locale.ROOT), i,
+                                        (a, b) -> serviceNames.get(a).compareTo(serviceNames.get(b)) <= 0 ? a : b);
+                            }
+                        }
+                        targetService = lowerCaseServices.getOrDefault(target.toLowerCase(Locale.ROOT), -1);
+                    }
+                    if (targetService < 0) {
+                        danglingForwards.add(new PipelineAnalysis.Forward(serviceNames.get(service), target));
+                    } else {
+                        addEdge(service, targetService);
+                    }
+                }
+            }
+            nodeCount = serviceCount + topicNames.size();
+            buildRows();
+        }
+
+        PipelineAnalysis analyze(String pipeline, long version) {
+            int services = serviceNames.size();
+            int[] inDegree = new int[nodeCount];
+            for (int i = 0; i < edgeCount; i++) {
+                inDegree[edgeTo[i]]++;
+            }
+
+            // Edges into each service from inside the pipeline, i.e. not from an external topic.
+            int[] internalInDegree = new int[services];
+            for (int i = 0; i < edgeCount; i++) {
+                int from = edgeFrom[i];
+                if (edgeTo[i] < services && (from < services || inDegree[from] > 0)) {
+                    internalInDegree[edgeTo[i]]++;
+                }
+            }
+
+            List<String> entries = new ArrayList<>();
+            List<String> isolated = new ArrayList<>();
+            int[] queue = new int[nodeCount];
+            boolean[] reached = new boolean[nodeCount];
+            int tail = 0;
+            for (int service = 0; service < services; service++) {
+                if (internalInDegree[service] == 0) {
+                    entries.add(serviceNames.get(service));
+                    if (inDegree[service] == 0 && offsets[service] == offsets[service + 1]) {
+                        isolated.add(serviceNames.get(service));
+                    }
+                    reached[service] = true;
+                    queue[tail++] = service;
+                }
+            }
+            for (int topic = services; topic < nodeCount; topic++) {
+                if (inDegree[topic] == 0) {
+                    reached[topic] = true;
+                    queue[tail++] = topic;
+                }
+            }
+            for (int head = 0; head < tail; head++) {
+                int node = queue[head];
+                for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+                    int next = targets[e];
+                    if (!reached[next]) {
+                        reached[next] = true;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            List<String> unreachable = new ArrayList<>();
+            for (int service = 0; service < services; service++) {
+                if (!reached[service]) {
+                    unreachable.add(serviceNames.get(service));
+                }
+            }
+
+            List<String> deadTopics = new ArrayList<>();
+            List<String> orphanTopics = new ArrayList<>();
+            for (int topic = 0; topic < topicNames.size(); topic++) {
+                if (published[topic] && !listened[topic]) {
+                    deadTopics.add(topicNames.get(topic));
+                } else if (listened[topic] && !published[topic]) {
+                    orphanTopics.add(topicNames.get(topic));
+                }
+            }
+
+            List<PipelineAnalysis.Cycle> cycles = cycles();
+            // Every cycle holds at least one service: topics only link services.
+            cycles.sort(Comparator.comparing(cycle -> cycle.services().get(0)));
+            Collections.sort(entries);
+            Collections.sort(unreachable);
+            Collections.sort(isolated);
+            Collections.sort(deadTopics);
+            Collections.sort(orphanTopics);
+            // Stable, so each service's forwards stay in configured order.
+            danglingForwards.sort(Comparator.comparing(PipelineAnalysis.Forward::source));
+            return new PipelineAnalysis(pipeline, version, cycles, entries, unreachable, isolated,
+                    deadTopics, orphanTopics, Collections.unmodifiableList(danglingForwards));
+        }
+
+        /**
+         * Iterative Tarjan. Every component with more than one node, or a node with an edge to
+         * itself, is a cycle.
+         */
+        private List<PipelineAnalysis.Cycle> cycles() {
+            int[] index = new int[nodeCount];
+            int[] low = new int[nodeCount];
+            boolean[] onStack = new boolean[nodeCount];
+            int[] stack = new int[nodeCount];
+            int[] callStack = new int[nodeCount];
+            int[] nextEdge = new int[nodeCount];
+            Arrays.fill(index, -1);
+            int counter = 0;
+            int sp = 0;
+            List<PipelineAnalysis.Cycle> cycles = new ArrayList<>();
+
+            for (int root = 0; root < nodeCount; root++) {
+                if (index[root] != -1) {
+                    continue;
+                }
+                int depth = 0;
+                callStack[depth] = root;
+                nextEdge[root] = offsets[root];
+                index[root] = low[root] = counter++;
+                stack[sp++] = root;
+                onStack[root] = true;
+                while (depth >= 0) {
+                    int node = callStack[depth];
+                    if (nextEdge[node] < offsets[node + 1]) {
+                        int next = targets[nextEdge[node]++];
+                        if (index[next] == -1) {
+                            index[next] = low[next] = counter++;
+                            stack[sp++] = next;
+                            onStack[next] = true;
+                            nextEdge[next] = offsets[next];
+                            callStack[++depth] = next;
+                        } else if (onStack[next]) {
+                            low[node] = Math.min(low[node], index[next]);
+                        }
+                        continue;
+                    }
+                    depth--;
+                    if (depth >= 0) {
+                        int parent = callStack[depth];
+                        low[parent] = Math.min(low[parent], low[node]);
+                    }
+                    if (low[node] == index[node]) {
+                        int start = sp;
+                        do {
+                            start--;
+                            onStack[stack[start]] = false;
+                        } while (stack[start] != node);
+                        if (sp - start > 1 || hasSelfLoop(node)) {
+                            cycles.add(cycle(stack, start, sp));
+                        }
+                        sp = start;
+                    }
+                }
+            }
+            return cycles;
+        }
+
+        private PipelineAnalysis.Cycle cycle(int[] stack, int from, int to) {
+            List<String> services = new ArrayList<>();
+            List<String> topics = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                int node = stack[i];
+                if (node < serviceNames.size()) {
+                    services.add(serviceNames.get(node));
+                } else {
+                    topics.add(topicNames.get(node - serviceNames.size()));
+                }
+            }
+            Collections.sort(services);
+            Collections.sort(topics);
+            return new PipelineAnalysis.Cycle(services, topics);
+        }
+
+        private boolean hasSelfLoop(int node) {
+            for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+                if (targets[e] == node) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int topicNode(int[] topicNodes, int symbol, PipelineGraph graph) {
+            if (topicNodes[symbol] < 0) {
+                int topic = topicNames.size();
+                topicNames.add(graph.symbols().name(symbol));
+                if (topic == published.length) {
+                    published = Arrays.copyOf(published, topic * 2);
+                    listened = Arrays.copyOf(listened, topic * 2);
+                }
+                topicNodes[symbol] = serviceNames.size() + topic;
+            }
+            return topicNodes[symbol];
+        }
+
+        private void addEdge(int from, int to) {
+            edgeFrom[edgeCount] = from;
+            edgeTo[edgeCount] = to;
+            edgeCount++;
+        }
+
+        private void buildRows() {
+            offsets = new int[nodeCount + 1];
+            for (int i = 0; i < edgeCount; i++) {
+                offsets[edgeFrom[i] + 1]++;
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                offsets[node + 1] += offsets[node];
+            }
+            targets = new int[edgeCount];
+            int[] fill = Arrays.copyOf(offsets, nodeCount);
+            for (int i = 0; i < edgeCount; i++) {
+                targets[fill[edgeFrom[i]]++] = edgeTo[i];
+            }
+        }
+    }
+}
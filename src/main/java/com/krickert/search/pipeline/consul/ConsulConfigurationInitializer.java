@@ -0,0 +1,46 @@
+package com.krickert.search.pipeline.consul;
+
+import com.krickert.search.pipeline.DefaultPipelineConfig;
+import com.krickert.search.pipeline.PipelineConfig;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.event.StartupEvent;
+import io.micronaut.runtime.event.annotation.EventListener;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+
+/**
+ * Seeds Consul with the default pipelines at startup and then starts watching it. Pipelines that
+ * already exist in Consul are left alone, so edits made there survive a restart.
+ */
+@Slf4j
+@Singleton
+@Requires(property = "consul.enabled", value = "true")
+public class ConsulConfigurationInitializer {
+
+    private final DefaultPipelineConfig defaultPipelineConfig;
+    private final ConsulPipelineStore pipelineStore;
+
+    public ConsulConfigurationInitializer(DefaultPipelineConfig defaultPipelineConfig,
+                                          ConsulPipelineStore pipelineStore) {
+        this.defaultPipelineConfig = defaultPipelineConfig;
+        this.pipelineStore = pipelineStore;
+    }
+
+    @EventListener
+    public void onStartup(StartupEvent event) {
+        for (Map.Entry<String, PipelineConfig> entry : defaultPipelineConfig.getPipelines().entrySet()) {
+            String pipelineName = entry.getKey();
+            PipelineConfig config = entry.getValue();
+            try {
+                // Keyed by the map entry so the Consul key matches the pipeline's configuration key.
+                boolean written = pipelineStore.seed(pipelineName, config.snapshot());
+                log.info(written ? "Seeded pipeline {} into Consul" : "Pipeline {} already in Consul", pipelineName);
+            } catch (Exception e) {
+                log.error("Failed to seed pipeline {} into Consul", pipelineName, e);
+            }
+        }
+        pipelineStore.startWatching();
+    }
+}
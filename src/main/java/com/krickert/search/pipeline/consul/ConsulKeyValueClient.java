@@ -0,0 +1,145 @@
+package com.krickert.search.pipeline.consul;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.type.Argument;
+import io.micronaut.http.HttpRequest;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.MediaType;
+import io.micronaut.http.client.HttpClient;
+import io.micronaut.http.client.annotation.Client;
+import io.micronaut.http.client.exceptions.HttpClientResponseException;
+import io.micronaut.http.uri.UriBuilder;
+import jakarta.inject.Singleton;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Thin blocking client for the Consul KV HTTP API. The base URL comes from
+ * {@code micronaut.http.services.consul.url}, which defaults to {@code consul.url}.
+ * <p>
+ * Calls block, so they must not be made from a Netty event loop thread.
+ */
+@Singleton
+@Requires(property = "consul.enabled", value = "true")
+public class ConsulKeyValueClient {
+
+    static final String INDEX_HEADER = "X-Consul-Index";
+
+    private final HttpClient httpClient;
+
+    public ConsulKeyValueClient(@Client(id = "consul") HttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    public HttpResponse<Boolean> putValue(String key, String value) {
+        return put(kvUri(key).build(), value);
+    }
+
+    /**
+     * Stores the value only if the key does not exist yet (check-and-set with index 0).
+     */
+    public HttpResponse<Boolean> putValueIfAbsent(String key, String value) {
+        return put(kvUri(key).queryParam("cas", 0).build(), value);
+    }
+
+    public HttpResponse<String> getValue(String key) {
+        try {
+            return httpClient.toBlocking().exchange(
+                    HttpRequest.GET(kvUri(key).queryParam("raw", true).build()), String.class);
+        } catch (HttpClientResponseException e) {
+            if (e.getStatus() == HttpStatus.NOT_FOUND) {
+                return HttpResponse.notFound();
+            }
+            throw e;
+        }
+    }
+
+    public HttpResponse<Boolean> deleteValue(String key) {
+        return httpClient.toBlocking().exchange(HttpRequest.DELETE(kvUri(key).build().toString()), Boolean.class);
+    }
+
+    /**
+     * Lists every key under {@code prefix}. With a non-zero {@code index} this is a Consul
+     * blocking query: the call returns as soon as something under the prefix changes, or after
+     * {@code wait} with the same index if nothing did.
+     */
+    public ConsulKvListing listValues(String prefix, long index, Duration wait) {
+        UriBuilder uri = kvUri(prefix).queryParam("recurse", true);
+        if (index > 0) {
+            uri.queryParam("index", index).queryParam("wait", wait.toSeconds() + "s");
+        }
+        try {
+            HttpResponse<List<ConsulKvEntry>> response = httpClient.toBlocking()
+                    .exchange(HttpRequest.GET(uri.build()), Argument.listOf(ConsulKvEntry.class));
+            return new ConsulKvListing(response.getBody().orElse(List.of()), consulIndex(response));
+        } catch (HttpClientResponseException e) {
+            // A prefix with no keys is a 404, which still carries the index to block on.
+            if (e.getStatus() == HttpStatus.NOT_FOUND) {
+                return new ConsulKvListing(List.of(), consulIndex(e.getResponse()));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Applies the operations atomically through {@code /v1/txn}. Consul accepts at most 64
+     * operations per transaction.
+     *
+     * @return the new {@code ModifyIndex} of every key the transaction set, or empty if Consul
+     * rolled the transaction back
+     */
+    public Optional<Map<String, Long>> transaction(List<ConsulTxnOperation> operations) {
+        try {
+            HttpResponse<ConsulTxnResponse> response = httpClient.toBlocking().exchange(
+                    HttpRequest.PUT("/v1/txn", operations).contentType(MediaType.APPLICATION_JSON_TYPE),
+                    ConsulTxnResponse.class);
+            if (response.getStatus() != HttpStatus.OK) {
+                return Optional.empty();
+            }
+            Map<String, Long> modifyIndexes = new HashMap<>();
+            List<ConsulTxnResponse.Result> results = response.getBody()
+                    .map(ConsulTxnResponse::results)
+                    .orElse(null);
+            if (results != null) {
+                for (ConsulTxnResponse.Result result : results) {
+                    if (result.kv() != null) {
+                        modifyIndexes.put(result.kv().key(), result.kv().modifyIndex());
+                    }
+                }
+            }
+            return Optional.of(modifyIndexes);
+        } catch (HttpClientResponseException e) {
+            if (e.getStatus() == HttpStatus.CONFLICT) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    private HttpResponse<Boolean> put(URI uri, String value) {
+        return httpClient.toBlocking().exchange(
+                HttpRequest.PUT(uri, value).contentType(MediaType.TEXT_PLAIN_TYPE), Boolean.class);
+    }
+
+    private static UriBuilder kvUri(String key) {
+        return UriBuilder.of("/v1/kv").path(key);
+    }
+
+    private static long consulIndex(HttpResponse<?> response) {
+        String index = response.getHeaders().get(INDEX_HEADER);
+        if (index == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(index.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.krickert.search.pipeline.consul;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * One entry of a Consul {@code /v1/kv} listing. Consul returns values base64 encoded.
+ */
+@Serdeable
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ConsulKvEntry(@JsonProperty("Key") String key,
+                            @JsonProperty("Value") @Nullable String value,
+                            @JsonProperty("ModifyIndex") long modifyIndex) {
+
+    public String decodedValue() {
+        return value == null ? null : new String(Base64.getDecoder().decode(value), StandardCharsets.UTF_8);
+    }
+}
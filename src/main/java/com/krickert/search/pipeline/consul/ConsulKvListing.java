@@ -0,0 +1,12 @@
+package com.krickert.search.pipeline.consul;
+
+import java.util.List;
+
+/**
+ * Result of a (possibly blocking) recursive KV read.
+ *
+ * @param entries the keys under the prefix; empty if there are none
+ * @param index   the {@code X-Consul-Index} to pass to the next blocking query
+ */
+public record ConsulKvListing(List<ConsulKvEntry> entries, long index) {
+}
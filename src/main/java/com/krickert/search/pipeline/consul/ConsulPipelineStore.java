@@ -0,0 +1,194 @@
+package com.krickert.search.pipeline.consul;
+
+import com.krickert.search.pipeline.PipelineChange;
+import com.krickert.search.pipeline.PipelineConfigService;
+import com.krickert.search.pipeline.PipelineExecution;
+import com.krickert.search.pipeline.PipelineSnapshot;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.runtime.event.annotation.EventListener;
+import io.micronaut.serde.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps pipelines in Consul KV, one JSON document per pipeline under {@code consul.pipeline.prefix}.
+ * <p>
+ * Reads never go to Consul: {@link PipelineConfigService} is the local cache. Local changes go
+ * through the {@link ConsulWriteBehindQueue}, and a watch thread keeps the cache fresh
+ * with Consul blocking queries on {@code X-Consul-Index}, so remote edits arrive as soon as they
+ * happen without polling.
+ */
+@Slf4j
+@Singleton
+@Requires(property = "consul.enabled", value = "true")
+public class ConsulPipelineStore {
+
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+
+    private final ConsulKeyValueClient consulClient;
+    private final ConsulWriteBehindQueue writeBehind;
+    private final PipelineConfigService configService;
+    private final ObjectMapper objectMapper;
+    private final String prefix;
+    private final Duration watchWait;
+
+    // Echoes of our own writes are dropped by ModifyIndex: anything at or below the index our
+    // last committed write to a key got is that write or older than it.
+    private final Map<String, Long> writtenIndexes = new ConcurrentHashMap<>();
+    // Documents sent whose index is not known yet: the watch can see a transaction before its
+    // response arrives, and a seed write reports no index at all.
+    private final Map<String, String> unconfirmedDocuments = new ConcurrentHashMap<>();
+    private final Map<String, Long> modifyIndexes = new ConcurrentHashMap<>();
+    private final AtomicBoolean watching = new AtomicBoolean();
+    private final ExecutorService watcher;
+
+    public ConsulPipelineStore(ConsulKeyValueClient consulClient,
+                               ConsulWriteBehindQueue writeBehind,
+                               PipelineConfigService configService,
+                               ObjectMapper objectMapper,
+                               PipelineExecution execution,
+                               @Value("${consul.pipeline.prefix:pipeline/configs}") String prefix,
+                               @Value("${consul.watch.wait:5m}") Duration watchWait) {
+        this.consulClient = consulClient;
+        this.writeBehind = writeBehind;
+        this.configService = configService;
+        this.objectMapper = objectMapper;
+        this.prefix = prefix.endsWith("/") ? prefix.substring(0, prefix.length() - 1) : prefix;
+        this.watchWait = watchWait;
+        this.watcher = Executors.newSingleThreadExecutor(execution.threadFactory("consul-pipeline-watch"));
+        writeBehind.addCommitListener(this::committed);
+    }
+
+    public String keyFor(String pipelineName) {
+        return prefix + "/" + pipelineName;
+    }
+
+    public String serialize(PipelineSnapshot snapshot) throws IOException {
+        return objectMapper.writeValueAsString(StoredPipeline.of(snapshot));
+    }
+
+    @EventListener
+    public void onPipelineChange(PipelineChange change) {
+        if (change.remote()) {
+            return;
+        }
+        PipelineSnapshot snapshot = change.current();
+        String key = keyFor(snapshot.name());
+        // Later changes to the same pipeline replace this one while it is still queued. Room in
+        // the queue was reserved by ConsulPipelineWriteGate before the change was made, so this
+        // never blocks the publisher.
+        writeBehind.enqueue(key, () -> document(key, snapshot));
+    }
+
+    /**
+     * Writes the pipeline under {@code pipelineName} unless Consul already has a value for it.
+     *
+     * @return true if the value was written
+     */
+    public boolean seed(String pipelineName, PipelineSnapshot snapshot) throws IOException {
+        String key = keyFor(pipelineName);
+        String document = serialize(snapshot);
+        boolean written = consulClient.putValueIfAbsent(key, document).getBody().orElse(false);
+        if (written) {
+            unconfirmedDocuments.put(key, document);
+        }
+        return written;
+    }
+
+    /**
+     * Starts the blocking-query watch. Calling it again while the watch is running does nothing.
+     */
+    public void startWatching() {
+        if (watching.compareAndSet(false, true)) {
+            watcher.execute(this::watchLoop);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        watching.set(false);
+        watcher.shutdownNow();
+    }
+
+    private String document(String key, PipelineSnapshot snapshot) {
+        try {
+            String document = serialize(snapshot);
+            unconfirmedDocuments.put(key, document);
+            return document;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize pipeline " + snapshot.name(), e);
+        }
+    }
+
+    private void committed(String key, String document, long modifyIndex) {
+        writtenIndexes.merge(key, modifyIndex, Math::max);
+        unconfirmedDocuments.remove(key, document);
+    }
+
+    private void watchLoop() {
+        long index = 0;
+        Duration backoff = Duration.ofSeconds(1);
+        while (watching.get()) {
+            try {
+                ConsulKvListing listing = consulClient.listValues(prefix + "/", index, watchWait);
+                // Per the Consul docs, an index that goes backwards means the data was reset, and
+                // the indexes of our earlier writes no longer mean anything.
+                if (listing.index() < index) {
+                    writtenIndexes.clear();
+                    index = 0;
+                } else {
+                    index = listing.index();
+                }
+                listing.entries().forEach(this::applyEntry);
+                backoff = Duration.ofSeconds(1);
+            } catch (Exception e) {
+                if (!watching.get()) {
+                    return;
+                }
+                log.warn("Consul watch on {} failed, retrying in {}: {}", prefix, backoff, e.getMessage());
+                try {
+                    Thread.sleep(backoff.toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = backoff.multipliedBy(2).compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff.multipliedBy(2);
+                index = 0;
+            }
+        }
+    }
+
+    private void applyEntry(ConsulKvEntry entry) {
+        Long seen = modifyIndexes.put(entry.key(), entry.modifyIndex());
+        if (seen != null && seen == entry.modifyIndex()) {
+            return;
+        }
+        if (entry.modifyIndex() <= writtenIndexes.getOrDefault(entry.key(), 0L)) {
+            return;
+        }
+        String document = entry.decodedValue();
+        if (document == null || document.equals(unconfirmedDocuments.get(entry.key()))) {
+            return;
+        }
+        String pipelineName = entry.key().substring(entry.key().lastIndexOf('/') + 1);
+        try {
+            StoredPipeline stored = objectMapper.readValue(document, StoredPipeline.class);
+            configService.getOrCreatePipelineConfig(pipelineName)
+                    .applyRemote(stored.service() == null ? Map.of() : stored.service());
+            log.debug("Applied pipeline {} from Consul (modify index {})", pipelineName, entry.modifyIndex());
+        } catch (Exception e) {
+            log.error("Ignoring unreadable pipeline document at {}", entry.key(), e);
+        }
+    }
+}
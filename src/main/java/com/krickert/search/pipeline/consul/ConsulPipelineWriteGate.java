@@ -0,0 +1,31 @@
+package com.krickert.search.pipeline.consul;
+
+import com.krickert.search.pipeline.PipelineWriteGate;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Singleton;
+
+/**
+ * Admits a pipeline write only while the {@link ConsulWriteBehindQueue} has room for its key, so
+ * a full queue turns the request away instead of publishing a version Consul never receives.
+ */
+@Singleton
+@Requires(property = "consul.enabled", value = "true")
+public class ConsulPipelineWriteGate implements PipelineWriteGate {
+
+    private final ConsulWriteBehindQueue writeBehind;
+    private final String prefix;
+
+    public ConsulPipelineWriteGate(ConsulWriteBehindQueue writeBehind,
+                                   @Value("${consul.pipeline.prefix:pipeline/configs}") String prefix) {
+        this.writeBehind = writeBehind;
+        this.prefix = prefix.endsWith("/") ? prefix.substring(0, prefix.length() - 1) : prefix;
+    }
+
+    @Override
+    public void admit(String pipeline) {
+        // Same key as ConsulPipelineStore#keyFor, which can't be injected here: it depends on
+        // PipelineConfigService, which depends on this gate.
+        writeBehind.awaitCapacity(prefix + "/" + pipeline);
+    }
+}
@@ -0,0 +1,30 @@
+package com.krickert.search.pipeline.consul;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * One operation of a Consul {@code /v1/txn} request. Only KV operations are used.
+ */
+@Serdeable
+public record ConsulTxnOperation(@JsonProperty("KV") Kv kv) {
+
+    public static ConsulTxnOperation set(String key, String value) {
+        return new ConsulTxnOperation(new Kv("set", key,
+                Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    public static ConsulTxnOperation delete(String key) {
+        return new ConsulTxnOperation(new Kv("delete", key, null));
+    }
+
+    @Serdeable
+    public record Kv(@JsonProperty("Verb") String verb,
+                     @JsonProperty("Key") String key,
+                     @JsonProperty("Value") @Nullable String value) {
+    }
+}
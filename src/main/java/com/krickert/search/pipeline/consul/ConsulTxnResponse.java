@@ -0,0 +1,22 @@
+package com.krickert.search.pipeline.consul;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.util.List;
+
+/**
+ * Body of a committed Consul {@code /v1/txn} response. Each {@code set} operation has a result
+ * carrying the key's new {@code ModifyIndex}; its value is left out.
+ */
+@Serdeable
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ConsulTxnResponse(@JsonProperty("Results") @Nullable List<Result> results) {
+
+    @Serdeable
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Result(@JsonProperty("KV") @Nullable ConsulKvEntry kv) {
+    }
+}
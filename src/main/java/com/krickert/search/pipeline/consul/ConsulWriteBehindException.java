@@ -0,0 +1,17 @@
+package com.krickert.search.pipeline.consul;
+
+import java.io.Serial;
+
+/**
+ * Thrown when a write cannot be queued for Consul, because the write-behind queue is full or
+ * already shut down.
+ */
+public class ConsulWriteBehindException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public ConsulWriteBehindException(String message) {
+        super(message);
+    }
+}
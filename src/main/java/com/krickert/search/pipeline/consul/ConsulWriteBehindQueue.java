@@ -0,0 +1,330 @@
+package com.krickert.search.pipeline.consul;
+
+import com.krickert.search.pipeline.PipelineExecution;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind stage in front of Consul KV. Writes are queued per key; a write to a key that is
+ * still pending replaces the queued value, so a burst of edits to one pipeline becomes a single
+ * PUT. After the coalescing window the queue is flushed in {@code /v1/txn} batches.
+ * <p>
+ * The number of distinct pending keys is bounded, and the bound is applied before a change is
+ * made rather than when it is queued: {@link #awaitCapacity} blocks for up to
+ * {@code consul.write-behind.enqueue-timeout} and then throws a {@link ConsulWriteBehindException},
+ * while {@link #enqueue}, called from the change listener, never blocks or throws. Whatever is
+ * still queued is flushed on shutdown. The flusher thread starts once the bean is constructed,
+ * in {@link #start}.
+ */
+@Slf4j
+@Singleton
+@Requires(property = "consul.enabled", value = "true")
+public class ConsulWriteBehindQueue {
+
+    // Consul rejects transactions with more than 64 operations.
+    static final int MAX_TXN_OPERATIONS = 64;
+
+    private final ConsulKeyValueClient consulClient;
+    private final MeterRegistry meterRegistry;
+    private final PipelineExecution execution;
+    private final Duration window;
+    private final int maxPending;
+    private final int maxBatch;
+    private final Duration enqueueTimeout;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    // Value suppliers are resolved at flush time, so only the latest value is ever serialized.
+    private final LinkedHashMap<String, Supplier<String>> pending = new LinkedHashMap<>();
+    private boolean closed;
+    private final List<CommitListener> commitListeners = new CopyOnWriteArrayList<>();
+
+    private final Timer flushTimer;
+    private final DistributionSummary batchSize;
+    private final Counter coalesced;
+    private final Counter failures;
+    private Thread flusher;
+
+    public ConsulWriteBehindQueue(ConsulKeyValueClient consulClient,
+                                  MeterRegistry meterRegistry,
+                                  PipelineExecution execution,
+                                  @Value("${consul.write-behind.window:200ms}") Duration window,
+                                  @Value("${consul.write-behind.max-pending:1000}") int maxPending,
+                                  @Value("${consul.write-behind.max-batch:64}") int maxBatch,
+                                  @Value("${consul.write-behind.enqueue-timeout:5s}") Duration enqueueTimeout) {
+        this.consulClient = consulClient;
+        this.meterRegistry = meterRegistry;
+        this.execution = execution;
+        this.window = window;
+        this.maxPending = maxPending;
+        this.maxBatch = Math.min(Math.max(1, maxBatch), MAX_TXN_OPERATIONS);
+        this.enqueueTimeout = enqueueTimeout;
+        this.flushTimer = Timer.builder("consul.write-behind.flush")
+                .description("Time to commit one Consul transaction")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("consul.write-behind.batch.size")
+                .description("Keys written per Consul transaction")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("consul.write-behind.coalesced")
+                .description("Writes replaced by a newer write to the same key before flushing")
+                .register(meterRegistry);
+        this.failures = Counter.builder("consul.write-behind.failures")
+                .description("Failed Consul transactions")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registers the pending-keys gauge and starts the flusher.
+     */
+    @PostConstruct
+    public void start() {
+        meterRegistry.gauge("consul.write-behind.pending", this, ConsulWriteBehindQueue::pendingCount);
+        flusher = execution.threadFactory("consul-write-behind").newThread(this::flushLoop);
+        flusher.start();
+    }
+
+    /**
+     * Returns once a write of {@code key} would fit in the queue: the key is already pending, or
+     * fewer than {@code max-pending} keys are.
+     *
+     * @throws ConsulWriteBehindException if the queue is closed or stayed full for the whole
+     *                                    enqueue timeout
+     */
+    public void awaitCapacity(String key) {
+        lock.lock();
+        try {
+            long remaining = enqueueTimeout.toNanos();
+            while (!closed && pending.size() >= maxPending && !pending.containsKey(key)) {
+                if (remaining <= 0) {
+                    throw new ConsulWriteBehindException("Write-behind queue full (" + maxPending
+                            + " keys), rejecting write of " + key);
+                }
+                remaining = notFull.awaitNanos(remaining);
+            }
+            if (closed) {
+                throw new ConsulWriteBehindException("Write-behind queue is closed, rejecting write of " + key);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConsulWriteBehindException("Interrupted while waiting to write " + key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues a write of {@code key}. If the key is already queued its value is replaced. Writes
+     * admitted by {@link #awaitCapacity} at the same time may take the queue briefly past
+     * {@code max-pending}; a write arriving after {@link #close} is logged and dropped.
+     */
+    public void enqueue(String key, Supplier<String> value) {
+        lock.lock();
+        try {
+            if (closed) {
+                log.warn("Write-behind queue is closed, dropping write of {}", key);
+                return;
+            }
+            if (pending.put(key, value) != null) {
+                coalesced.increment();
+            }
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Told about every write Consul committed, with the key's new {@code ModifyIndex}.
+     */
+    @FunctionalInterface
+    public interface CommitListener {
+
+        /**
+         * @param document    the value written
+         * @param modifyIndex the key's {@code ModifyIndex} after the transaction
+         */
+        void committed(String key, String document, long modifyIndex);
+    }
+
+    public void addCommitListener(CommitListener listener) {
+        commitListeners.add(listener);
+    }
+
+    public int pendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting writes and flushes everything still queued.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (flusher != null) {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        if (pendingCount() > 0) {
+            log.warn("{} pipeline writes were not flushed to Consul before shutdown", pendingCount());
+        }
+    }
+
+    private void flushLoop() {
+        Duration backoff = window;
+        while (true) {
+            try {
+                if (!awaitWork()) {
+                    return;
+                }
+                Map<String, Supplier<String>> batch = drain();
+                if (flush(batch)) {
+                    backoff = window;
+                } else {
+                    requeue(batch);
+                    if (isClosed()) {
+                        return;
+                    }
+                    Thread.sleep(backoff.toMillis());
+                    backoff = backoff.multipliedBy(2).compareTo(Duration.ofSeconds(30)) > 0
+                            ? Duration.ofSeconds(30) : backoff.multipliedBy(2);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Waits for the first pending write, then lets the coalescing window elapse. Returns false
+    // once the queue is closed and fully drained.
+    private boolean awaitWork() throws InterruptedException {
+        lock.lock();
+        try {
+            while (pending.isEmpty()) {
+                if (closed) {
+                    return false;
+                }
+                notEmpty.await();
+            }
+            if (!closed) {
+                long remaining = window.toNanos();
+                while (remaining > 0 && !closed) {
+                    remaining = notEmpty.awaitNanos(remaining);
+                }
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Map<String, Supplier<String>> drain() {
+        lock.lock();
+        try {
+            Map<String, Supplier<String>> batch = new LinkedHashMap<>();
+            Iterator<Map.Entry<String, Supplier<String>>> it = pending.entrySet().iterator();
+            while (it.hasNext() && batch.size() < maxBatch) {
+                Map.Entry<String, Supplier<String>> entry = it.next();
+                batch.put(entry.getKey(), entry.getValue());
+                it.remove();
+            }
+            notFull.signalAll();
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void requeue(Map<String, Supplier<String>> batch) {
+        lock.lock();
+        try {
+            // A newer write queued while the batch was in flight wins over the failed one.
+            batch.forEach(pending::putIfAbsent);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean flush(Map<String, Supplier<String>> batch) {
+        List<ConsulTxnOperation> operations = new ArrayList<>(batch.size());
+        Map<String, String> documents = new LinkedHashMap<>();
+        batch.forEach((key, value) -> {
+            try {
+                String document = value.get();
+                operations.add(document == null ? ConsulTxnOperation.delete(key) : ConsulTxnOperation.set(key, document));
+                if (document != null) {
+                    documents.put(key, document);
+                }
+            } catch (RuntimeException e) {
+                // Retrying would fail the same way; drop just this key.
+                log.error("Dropping write of {}: the value could not be produced", key, e);
+            }
+        });
+        if (operations.isEmpty()) {
+            return true;
+        }
+        long start = System.nanoTime();
+        try {
+            Optional<Map<String, Long>> committed = consulClient.transaction(operations);
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (committed.isPresent()) {
+                batchSize.record(operations.size());
+                committed.get().forEach((key, modifyIndex) -> {
+                    String document = documents.get(key);
+                    if (document != null) {
+                        commitListeners.forEach(listener -> listener.committed(key, document, modifyIndex));
+                    }
+                });
+                return true;
+            }
+            log.warn("Consul rolled back a transaction of {} pipeline writes", operations.size());
+        } catch (Exception e) {
+            log.warn("Failed to flush {} pipeline writes to Consul: {}", operations.size(), e.getMessage());
+        }
+        failures.increment();
+        return false;
+    }
+}
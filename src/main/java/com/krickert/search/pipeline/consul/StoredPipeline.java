@@ -0,0 +1,19 @@
+package com.krickert.search.pipeline.consul;
+
+import com.krickert.search.pipeline.PipelineSnapshot;
+import com.krickert.search.pipeline.ServiceConfiguration;
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.util.Map;
+
+/**
+ * The JSON document stored for each pipeline. It has the same shape as a serialized
+ * {@link com.krickert.search.pipeline.PipelineConfig}, so either type can read it back.
+ */
+@Serdeable
+public record StoredPipeline(String name, long version, Map<String, ServiceConfiguration> service) {
+
+    public static StoredPipeline of(PipelineSnapshot snapshot) {
+        return new StoredPipeline(snapshot.name(), snapshot.version(), snapshot.services());
+    }
+}
@@ -0,0 +1,51 @@
+package com.krickert.search.pipeline.events;
+
+import com.krickert.search.pipeline.PipelineChange;
+import com.krickert.search.pipeline.PipelineEdge;
+import com.krickert.search.pipeline.ServiceConfiguration;
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A versioned delta pushed to editors over the change feed. Applying the deltas of every event
+ * after {@code previousVersion} to a copy of the pipeline at that version yields {@code version}.
+ *
+ * @param pipeline        the pipeline name
+ * @param previousVersion the version the deltas apply to
+ * @param version         the version after applying the deltas
+ * @param reset           true when the client cannot patch and must reload the full pipeline
+ * @param deltas          per-service changes; empty when {@code reset} is set
+ */
+@Serdeable
+public record PipelineChangeEvent(String pipeline, long previousVersion, long version, boolean reset,
+                                  List<ServiceDelta> deltas) {
+
+    public static PipelineChangeEvent reset(String pipeline, long version) {
+        return new PipelineChangeEvent(pipeline, version, version, true, List.of());
+    }
+
+    public static PipelineChangeEvent from(PipelineChange change) {
+        if (change.reset()) {
+            return new PipelineChangeEvent(change.pipeline(), change.previous().version(),
+                    change.current().version(), true, List.of());
+        }
+        Map<String, ServiceConfiguration> before = change.previous().services();
+        Map<String, ServiceConfiguration> after = change.current().services();
+        List<ServiceDelta> deltas = new ArrayList<>(change.changedServices().size());
+        for (String name : change.changedServices()) {
+            ServiceConfiguration old = before.get(name);
+            ServiceConfiguration current = after.get(name);
+            if (current != null) {
+                ServiceDelta.Type type = old == null ? ServiceDelta.Type.ADDED : ServiceDelta.Type.UPDATED;
+                deltas.add(new ServiceDelta(type, name, current, PipelineEdge.of(current)));
+            } else if (old != null) {
+                deltas.add(new ServiceDelta(ServiceDelta.Type.REMOVED, name, null, PipelineEdge.of(old)));
+            }
+        }
+        return new PipelineChangeEvent(change.pipeline(), change.previous().version(),
+                change.current().version(), false, deltas);
+    }
+}
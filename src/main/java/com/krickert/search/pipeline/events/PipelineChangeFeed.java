@@ -0,0 +1,120 @@
+package com.krickert.search.pipeline.events;
+
+import com.krickert.search.pipeline.InstanceEpoch;
+import com.krickert.search.pipeline.PipelineChange;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.runtime.event.annotation.EventListener;
+import jakarta.inject.Singleton;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fans pipeline changes out to change-feed subscribers. The most recent events of each pipeline
+ * are retained so a reconnecting client can resume from the last version it saw; a client that
+ * fell further behind than the retained window, or whose last event came from another run of
+ * the process, gets a reset event and reloads.
+ * <p>
+ * Event ids are {@code <epoch>:<version>}, with the {@link InstanceEpoch} of this process,
+ * because versions start over when the process restarts.
+ */
+@Singleton
+public class PipelineChangeFeed {
+
+    /**
+     * The resume version of an event id from another run of the process. It is ahead of any
+     * current version, so {@link #events} answers it with a reset.
+     */
+    public static final long OTHER_EPOCH = Long.MAX_VALUE;
+
+    private final int historySize;
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+
+    public PipelineChangeFeed(@Value("${pipeline.events.history-size:1000}") int historySize) {
+        this.historySize = historySize;
+    }
+
+    @EventListener
+    public void onPipelineChange(PipelineChange change) {
+        channel(change.pipeline()).emit(PipelineChangeEvent.from(change));
+    }
+
+    /**
+     * Events for a pipeline with a version greater than {@code sinceVersion}, followed by live
+     * events. Pass a negative {@code sinceVersion} to receive live events only.
+     */
+    public Flux<PipelineChangeEvent> events(String pipeline, long sinceVersion, long currentVersion) {
+        Channel channel = channel(pipeline);
+        if (sinceVersion < 0) {
+            return channel.sink.asFlux().filter(event -> event.version() > currentVersion);
+        }
+        Flux<PipelineChangeEvent> replayed = channel.sink.asFlux().filter(event -> event.version() > sinceVersion);
+        // Either some of the versions the client missed are no longer retained, or the client
+        // saw versions this process never published (from before a restart, or another epoch).
+        if (sinceVersion < channel.oldestResumableVersion || sinceVersion > currentVersion) {
+            return Flux.concat(Flux.just(PipelineChangeEvent.reset(pipeline, currentVersion)),
+                    replayed.filter(event -> event.version() > currentVersion));
+        }
+        return replayed;
+    }
+
+    /**
+     * The {@code Last-Event-ID} of an event.
+     */
+    public static String eventId(PipelineChangeEvent event) {
+        return InstanceEpoch.current() + ':' + event.version();
+    }
+
+    /**
+     * The version to resume from after {@code eventId}: its version if it was issued by this
+     * process, {@link #OTHER_EPOCH} if it came from another run or is a bare version from an
+     * older release.
+     *
+     * @throws IllegalArgumentException if {@code eventId} is not an event id
+     */
+    public static long resumeVersion(String eventId) {
+        int separator = eventId.indexOf(':');
+        String version = separator < 0 ? eventId : eventId.substring(separator + 1);
+        long parsed;
+        try {
+            parsed = Long.parseLong(version);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid event id: " + eventId, e);
+        }
+        if (parsed < 0) {
+            throw new IllegalArgumentException("Invalid event id: " + eventId);
+        }
+        return separator >= 0 && eventId.substring(0, separator).equals(InstanceEpoch.current())
+                ? parsed : OTHER_EPOCH;
+    }
+
+    private Channel channel(String pipeline) {
+        return channels.computeIfAbsent(pipeline, name -> new Channel(historySize));
+    }
+
+    private static final class Channel {
+
+        private final Sinks.Many<PipelineChangeEvent> sink;
+        private final long[] previousVersions;
+        private int emitted;
+        private volatile long oldestResumableVersion;
+
+        private Channel(int historySize) {
+            this.sink = Sinks.many().replay().limit(historySize);
+            this.previousVersions = new long[historySize];
+        }
+
+        // Called in version order, one change at a time per pipeline.
+        private synchronized void emit(PipelineChangeEvent event) {
+            int slot = emitted % previousVersions.length;
+            previousVersions[slot] = event.previousVersion();
+            emitted++;
+            oldestResumableVersion = emitted < previousVersions.length
+                    ? previousVersions[0]
+                    : previousVersions[emitted % previousVersions.length];
+            sink.tryEmitNext(event);
+        }
+    }
+}
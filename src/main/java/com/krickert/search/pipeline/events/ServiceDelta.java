@@ -0,0 +1,28 @@
+package com.krickert.search.pipeline.events;
+
+import com.krickert.search.pipeline.PipelineEdge;
+import com.krickert.search.pipeline.ServiceConfiguration;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.util.List;
+
+/**
+ * The change to one service within a {@link PipelineChangeEvent}.
+ *
+ * @param type    what happened to the service
+ * @param name    the service name
+ * @param service the new configuration, {@code null} when removed
+ * @param edges   for added and updated services the service's edges after the change,
+ *                for removed services the edges that disappeared with it
+ */
+@Serdeable
+public record ServiceDelta(Type type, String name, @Nullable ServiceConfiguration service,
+                           List<PipelineEdge> edges) {
+
+    public enum Type {
+        ADDED,
+        UPDATED,
+        REMOVED
+    }
+}
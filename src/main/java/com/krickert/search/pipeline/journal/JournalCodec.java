@@ -0,0 +1,243 @@
+package com.krickert.search.pipeline.journal;
+
+import com.krickert.search.pipeline.ServiceConfiguration;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary framing of {@link JournalRecord}s in a journal segment.
+ * <p>
+ * Each frame is the body length and the CRC32C of the body, both as big-endian ints, followed
+ * by the body: record type, pipeline version, pipeline name, the services put (key, name and
+ * the three lists) and the names removed. Strings are a varint byte length and UTF-8; a list or
+ * nullable string stores its length plus one, with {@code 0} for null. A frame that is cut short
+ * or fails its checksum marks the end of the valid journal, which is where a crash mid-write
+ * leaves it.
+ */
+final class JournalCodec {
+
+    static final int HEADER_BYTES = 2 * Integer.BYTES;
+    // Far above any real record; a larger length can only come from a torn or corrupt header.
+    static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+
+    private final CRC32C crc = new CRC32C();
+
+    /**
+     * Appends the frame of {@code record} to {@code out}, growing it if needed.
+     *
+     * @return {@code out}, or the larger buffer that replaced it
+     */
+    ByteBuffer write(JournalRecord record, ByteBuffer out) {
+        int start = out.position();
+        out = ensure(out, HEADER_BYTES + estimate(record));
+        out.position(start + HEADER_BYTES);
+        out.put((byte) record.type().ordinal());
+        out.putLong(record.version());
+        writeString(out, record.pipeline());
+        writeVarInt(out, record.puts().size());
+        for (Map.Entry<String, ServiceConfiguration> put : record.puts().entrySet()) {
+            ServiceConfiguration config = put.getValue();
+            writeString(out, put.getKey());
+            writeNullableString(out, put.getKey().equals(config.getName()) ? null : config.getName());
+            writeList(out, config.getKafkaListenTopics());
+            writeList(out, config.getKafkaPublishTopics());
+            writeList(out, config.getGrpcForwardTo());
+        }
+        writeVarInt(out, record.removes().size());
+        for (String name : record.removes()) {
+            writeString(out, name);
+        }
+        int end = out.position();
+        int length = end - start - HEADER_BYTES;
+        crc.reset();
+        crc.update(out.slice(start + HEADER_BYTES, length));
+        out.putInt(start, length);
+        out.putInt(start + Integer.BYTES, (int) crc.getValue());
+        return out;
+    }
+
+    /**
+     * Reads the frame at the position of {@code in} and advances past it.
+     *
+     * @return the record, or null if the frame is incomplete or fails its checksum, in which
+     * case the position is left at the start of the frame
+     */
+    JournalRecord read(ByteBuffer in) {
+        int start = in.position();
+        if (in.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int length = in.getInt(start);
+        int checksum = in.getInt(start + Integer.BYTES);
+        if (length <= 0 || length > MAX_RECORD_BYTES || length > in.remaining() - HEADER_BYTES) {
+            return null;
+        }
+        ByteBuffer body = in.slice(start + HEADER_BYTES, length);
+        crc.reset();
+        crc.update(body.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        try {
+            JournalRecord record = readBody(body);
+            if (record != null && !body.hasRemaining()) {
+                in.position(start + HEADER_BYTES + length);
+                return record;
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            // A body that passed its checksum but does not parse is corrupt all the same.
+        }
+        return null;
+    }
+
+    private static JournalRecord readBody(ByteBuffer in) {
+        JournalRecord.Type type = JournalRecord.Type.of(in.get());
+        if (type == null) {
+            return null;
+        }
+        long version = in.getLong();
+        String pipeline = readString(in);
+        int putCount = readVarInt(in);
+        Map<String, ServiceConfiguration> puts = new LinkedHashMap<>(Math.min(putCount, 1 << 16) * 2);
+        for (int i = 0; i < putCount; i++) {
+            String key = readString(in);
+            String name = readNullableString(in);
+            puts.put(key, ServiceConfiguration.of(name == null ? key : name,
+                    readList(in), readList(in), readList(in)));
+        }
+        int removeCount = readVarInt(in);
+        List<String> removes = new ArrayList<>(Math.min(removeCount, 1 << 16));
+        for (int i = 0; i < removeCount; i++) {
+            removes.add(readString(in));
+        }
+        return new JournalRecord(type, pipeline, version, puts, removes, null);
+    }
+
+    // Upper bound on the body size, so a record is encoded without growing the buffer midway.
+    private static int estimate(JournalRecord record) {
+        int size = 1 + Long.BYTES + 5 + 3 * record.pipeline().length() + 10;
+        for (Map.Entry<String, ServiceConfiguration> put : record.puts().entrySet()) {
+            ServiceConfiguration config = put.getValue();
+            size += 10 + 3 * put.getKey().length() + 3 * length(config.getName());
+            size += estimate(config.getKafkaListenTopics());
+            size += estimate(config.getKafkaPublishTopics());
+            size += estimate(config.getGrpcForwardTo());
+        }
+        for (String name : record.removes()) {
+            size += 5 + 3 * name.length();
+        }
+        return size;
+    }
+
+    private static int estimate(List<String> values) {
+        int size = 5;
+        if (values != null) {
+            for (String value : values) {
+                size += 5 + 3 * value.length();
+            }
+        }
+        return size;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static ByteBuffer ensure(ByteBuffer out, int needed) {
+        if (out.remaining() >= needed) {
+            return out;
+        }
+        int capacity = Math.max(out.capacity() * 2, out.position() + needed);
+        ByteBuffer larger = out.isDirect() ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        out.flip();
+        larger.put(out);
+        return larger;
+    }
+
+    private static void writeString(ByteBuffer out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.put(bytes);
+    }
+
+    private static void writeNullableString(ByteBuffer out, String value) {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.put(bytes);
+    }
+
+    private static void writeList(ByteBuffer out, List<String> values) {
+        if (values == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, values.size() + 1);
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        return readUtf8(in, readVarInt(in));
+    }
+
+    private static String readNullableString(ByteBuffer in) {
+        int length = readVarInt(in);
+        return length == 0 ? null : readUtf8(in, length - 1);
+    }
+
+    private static List<String> readList(ByteBuffer in) {
+        int size = readVarInt(in);
+        if (size == 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(Math.min(size - 1, 1 << 16));
+        for (int i = 1; i < size; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    private static String readUtf8(ByteBuffer in, int length) {
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.get() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IllegalArgumentException("Negative length in journal record");
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in journal record");
+    }
+}
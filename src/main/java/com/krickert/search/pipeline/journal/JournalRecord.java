@@ -0,0 +1,68 @@
+package com.krickert.search.pipeline.journal;
+
+import com.krickert.search.pipeline.PipelineChange;
+import com.krickert.search.pipeline.ServiceConfiguration;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One journaled version of a pipeline. A {@link Type#RESET} record holds the whole service map;
+ * a {@link Type#CHANGE} record holds only the services the version put or removed, and is
+ * replayed on top of the records before it.
+ *
+ * @param state the full service map after the change; kept in memory for the next compacted
+ *              snapshot and never written to the journal
+ */
+record JournalRecord(Type type, String pipeline, long version,
+                     Map<String, ServiceConfiguration> puts, List<String> removes,
+                     Map<String, ServiceConfiguration> state) {
+
+    enum Type {
+        RESET, CHANGE;
+
+        static Type of(int ordinal) {
+            Type[] types = values();
+            return ordinal >= 0 && ordinal < types.length ? types[ordinal] : null;
+        }
+    }
+
+    /**
+     * The record for a published change: the whole map when {@code full}, otherwise the changed
+     * services only. A removal that cascaded into forward lists shows up as puts of the sources.
+     */
+    static JournalRecord of(PipelineChange change, boolean full) {
+        Map<String, ServiceConfiguration> services = change.current().services();
+        if (full) {
+            return new JournalRecord(Type.RESET, change.pipeline(), change.current().version(),
+                    services, List.of(), services);
+        }
+        Map<String, ServiceConfiguration> puts = new LinkedHashMap<>();
+        List<String> removes = new ArrayList<>(0);
+        for (String name : change.changedServices()) {
+            ServiceConfiguration config = services.get(name);
+            if (config == null) {
+                removes.add(name);
+            } else {
+                puts.put(name, config);
+            }
+        }
+        return new JournalRecord(Type.CHANGE, change.pipeline(), change.current().version(),
+                puts, removes, services);
+    }
+
+    /**
+     * Replays this record onto {@code pipelines}, the recovered service maps by pipeline name.
+     */
+    void applyTo(Map<String, Map<String, ServiceConfiguration>> pipelines) {
+        if (type == Type.RESET) {
+            pipelines.put(pipeline, new LinkedHashMap<>(puts));
+            return;
+        }
+        Map<String, ServiceConfiguration> services = pipelines.computeIfAbsent(pipeline, name -> new LinkedHashMap<>());
+        services.putAll(puts);
+        removes.forEach(services::remove);
+    }
+}
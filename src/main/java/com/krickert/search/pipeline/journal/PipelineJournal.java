@@ -0,0 +1,599 @@
+package com.krickert.search.pipeline.journal;
+
+import com.krickert.search.pipeline.DurablePipelineStore;
+import com.krickert.search.pipeline.PipelineChange;
+import com.krickert.search.pipeline.PipelineExecution;
+import com.krickert.search.pipeline.PipelineSnapshotCodec;
+import com.krickert.search.pipeline.ServiceConfiguration;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.runtime.event.annotation.EventListener;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Local append-only journal of pipeline changes, for restarting with the last state without
+ * Consul.
+ * <p>
+ * Every published version is appended to the current segment file as one checksummed
+ * {@link JournalCodec} frame: the full service map the first time a pipeline is seen, the
+ * changed services after that. A single writer thread drains whatever has queued up while the
+ * previous write was in flight, writes it with one {@link FileChannel#write} and makes it durable
+ * with one {@link FileChannel#force}, so concurrent writers share an fsync (group commit).
+ * Writes made through {@link com.krickert.search.pipeline.PipelineConfigService} wait in
+ * {@link #awaitDurable} until their version is on disk.
+ * <p>
+ * Every {@code pipeline.journal.snapshot-every} records the writer rolls to a new segment and a
+ * background thread writes a compacted snapshot of all pipelines as of that boundary: a header
+ * naming the segment it precedes, the pipelines in the {@link PipelineSnapshotCodec} format and
+ * a CRC32C. Recovery memory-maps the newest
+ * readable snapshot and the segments after it, and replays them up to the first incomplete or
+ * corrupt frame, which is cut off. One older snapshot and its segments are kept as a fallback.
+ */
+@Slf4j
+@Singleton
+@Requires(property = "pipeline.journal.enabled", value = "true")
+public class PipelineJournal implements DurablePipelineStore {
+
+    static final String SEGMENT_PREFIX = "journal-";
+    static final String SEGMENT_SUFFIX = ".log";
+    static final String SNAPSHOT_PREFIX = "snapshot-";
+    static final String SNAPSHOT_SUFFIX = ".snap";
+    static final int SNAPSHOT_MAGIC = 0x504A534E; // "PJSN"
+
+    private final Path directory;
+    private final boolean fsync;
+    private final long snapshotEvery;
+    private final int maxBatch;
+    private final Duration commitTimeout;
+    private final ThreadFactory writerThreads;
+    private final ThreadFactory snapshotThreads;
+    private final BlockingQueue<JournalRecord> queue;
+
+    // Pipelines whose full service map is already in the snapshot or segments recovery reads, so
+    // their changes can be journaled as deltas.
+    private final Set<String> based = ConcurrentHashMap.newKeySet();
+    // Latest service map per pipeline, including changes still queued for the writer.
+    private final Map<String, Map<String, ServiceConfiguration>> latest = new ConcurrentHashMap<>();
+
+    // Owned by the writer thread once it starts.
+    private final JournalCodec codec = new JournalCodec();
+    private final Map<String, Map<String, ServiceConfiguration>> written = new HashMap<>();
+    private ByteBuffer batchBuffer = ByteBuffer.allocateDirect(256 * 1024);
+    private FileChannel segment;
+    private long segmentId;
+    private long recordsSinceSnapshot;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition committed = lock.newCondition();
+    // Version of the last durable record per pipeline. Records of one pipeline commit in version
+    // order, and taking the last rather than the highest follows a refreshed PipelineConfigService,
+    // whose pipelines start counting again.
+    private final Map<String, Long> durableVersions = new HashMap<>();
+    // Versions that never reached the writer, so awaitDurable fails them instead of timing out.
+    // Pruned as later versions of the pipeline commit.
+    private final Map<String, NavigableSet<Long>> droppedVersions = new HashMap<>();
+    private volatile Exception failure;
+    private volatile boolean closed;
+    private final AtomicBoolean snapshotting = new AtomicBoolean();
+
+    private final MeterRegistry meterRegistry;
+    private final Timer commitTimer;
+    private final DistributionSummary batchSize;
+    private final Timer snapshotTimer;
+    private Thread writer;
+
+    public PipelineJournal(PipelineExecution execution,
+                           MeterRegistry meterRegistry,
+                           @Value("${pipeline.journal.directory:data/journal}") String directory,
+                           @Value("${pipeline.journal.fsync:true}") boolean fsync,
+                           @Value("${pipeline.journal.snapshot-every:100000}") long snapshotEvery,
+                           @Value("${pipeline.journal.max-batch:1024}") int maxBatch,
+                           @Value("${pipeline.journal.max-pending:10000}") int maxPending,
+                           @Value("${pipeline.journal.commit-timeout:5s}") Duration commitTimeout) {
+        this.directory = Path.of(directory);
+        this.fsync = fsync;
+        this.snapshotEvery = Math.max(1, snapshotEvery);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.commitTimeout = commitTimeout;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, maxPending));
+        this.writerThreads = execution.threadFactory("pipeline-journal");
+        this.snapshotThreads = execution.threadFactory("pipeline-journal-snapshot");
+        this.meterRegistry = meterRegistry;
+        this.commitTimer = Timer.builder("pipeline.journal.commit")
+                .description("Time to write and fsync one group of journal records")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("pipeline.journal.batch.size")
+                .description("Journal records made durable per fsync")
+                .register(meterRegistry);
+        this.snapshotTimer = Timer.builder("pipeline.journal.snapshot")
+                .description("Time to write a compacted journal snapshot")
+                .register(meterRegistry);
+        meterRegistry.gauge("pipeline.journal.pending", queue, BlockingQueue::size);
+    }
+
+    /**
+     * Recovers the journaled pipelines and starts the writer.
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+        long replayed = recover();
+        long elapsed = System.nanoTime() - start;
+        Timer.builder("pipeline.journal.recovery")
+                .description("Time to load the latest journal snapshot and replay the segments after it")
+                .register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Recovered {} pipelines from {} ({} journal records replayed) in {} ms",
+                written.size(), directory, replayed, elapsed / 1_000_000);
+        writer = writerThreads.newThread(this::writeLoop);
+        writer.start();
+    }
+
+    @Override
+    public Map<String, Map<String, ServiceConfiguration>> pipelines() {
+        return Collections.unmodifiableMap(latest);
+    }
+
+    /**
+     * Queues the change for the writer. A change that cannot be queued is not thrown back at the
+     * publisher, which would stop delivery to the other listeners; {@link #awaitDurable} fails it
+     * instead, and the pipeline's next record carries its whole map again.
+     */
+    @EventListener
+    public void onPipelineChange(PipelineChange change) {
+        String pipeline = change.pipeline();
+        // The first change seen for a pipeline carries its whole map, so replay has a base.
+        boolean full = based.add(pipeline) | change.reset();
+        latest.put(pipeline, change.current().services());
+        if (change.reset()) {
+            lock.lock();
+            try {
+                droppedVersions.remove(pipeline);
+            } finally {
+                lock.unlock();
+            }
+        }
+        JournalRecord record = JournalRecord.of(change, full);
+        String reason = enqueue(record);
+        if (reason != null) {
+            // A delta after a gap would replay onto the wrong base.
+            based.remove(pipeline);
+            log.error("{}, dropping {} version {}", reason, pipeline, record.version());
+            lock.lock();
+            try {
+                droppedVersions.computeIfAbsent(pipeline, name -> new TreeSet<>()).add(record.version());
+                committed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void awaitDurable(String pipeline, long version) {
+        lock.lock();
+        try {
+            long remaining = commitTimeout.toNanos();
+            while (durableVersions.getOrDefault(pipeline, -1L) < version) {
+                NavigableSet<Long> dropped = droppedVersions.get(pipeline);
+                if (dropped != null && dropped.contains(version)) {
+                    throw new PipelineJournalException("Pipeline journal dropped " + pipeline + " version "
+                            + version + " before it was written");
+                }
+                if (failure != null) {
+                    throw new PipelineJournalException("Pipeline journal failed, " + pipeline + " version "
+                            + version + " is not durable", failure);
+                }
+                if (remaining <= 0) {
+                    throw new PipelineJournalException("Timed out waiting for " + pipeline + " version "
+                            + version + " to be journaled");
+                }
+                remaining = committed.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PipelineJournalException("Interrupted waiting for " + pipeline + " version " + version
+                    + " to be journaled");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting changes, writes everything still queued and closes the segment.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException, IOException {
+        closed = true;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        if (!queue.isEmpty()) {
+            log.warn("{} pipeline changes were not journaled before shutdown", queue.size());
+        }
+        if (segment != null) {
+            segment.close();
+        }
+    }
+
+    // Returns why the record could not be queued, or null once it is.
+    private String enqueue(JournalRecord record) {
+        if (closed || failure != null) {
+            return "Pipeline journal is " + (closed ? "closed" : "failed");
+        }
+        try {
+            return queue.offer(record, commitTimeout.toNanos(), TimeUnit.NANOSECONDS)
+                    ? null : "Pipeline journal queue full";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Interrupted queueing for the pipeline journal";
+        }
+    }
+
+    // ---- Writer ----
+
+    private void writeLoop() {
+        List<JournalRecord> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            try {
+                JournalRecord first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                commit(batch);
+                batch.clear();
+                if (recordsSinceSnapshot >= snapshotEvery && snapshotting.compareAndSet(false, true)) {
+                    roll();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                // Anything that stops the writer fails the waiters rather than leaving them to time out.
+                log.error("Pipeline journal write to {} failed, no further changes will be journaled", directory, e);
+                lock.lock();
+                try {
+                    failure = e;
+                    committed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+        }
+    }
+
+    private void commit(List<JournalRecord> batch) throws IOException {
+        long start = System.nanoTime();
+        ByteBuffer buffer = batchBuffer;
+        buffer.clear();
+        for (JournalRecord record : batch) {
+            buffer = codec.write(record, buffer);
+        }
+        batchBuffer = buffer;
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+        if (fsync) {
+            segment.force(false);
+        }
+        commitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        batchSize.record(batch.size());
+        recordsSinceSnapshot += batch.size();
+        for (JournalRecord record : batch) {
+            written.put(record.pipeline(), record.state());
+        }
+        lock.lock();
+        try {
+            for (JournalRecord record : batch) {
+                durableVersions.put(record.pipeline(), record.version());
+                NavigableSet<Long> dropped = droppedVersions.get(record.pipeline());
+                if (dropped != null) {
+                    dropped.headSet(record.version(), true).clear();
+                }
+            }
+            committed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts a new segment and snapshots the state at the boundary in the background. Writes go
+     * on to the new segment while the snapshot is written.
+     */
+    private void roll() throws IOException {
+        long next = segmentId + 1;
+        FileChannel previous = segment;
+        segment = FileChannel.open(segmentPath(next), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        syncDirectory();
+        previous.close();
+        segmentId = next;
+        recordsSinceSnapshot = 0;
+        // The maps are immutable snapshots, so a shallow copy pins the state at this boundary.
+        Map<String, Map<String, ServiceConfiguration>> state = new HashMap<>(written);
+        snapshotThreads.newThread(() -> {
+            try {
+                writeSnapshot(next, state);
+            } catch (IOException e) {
+                log.warn("Failed to write pipeline journal snapshot {}, segments are kept: {}", next, e.getMessage());
+            } finally {
+                snapshotting.set(false);
+            }
+        }).start();
+    }
+
+    private void writeSnapshot(long id, Map<String, Map<String, ServiceConfiguration>> state) throws IOException {
+        long start = System.nanoTime();
+        Path target = snapshotPath(id);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            BufferedOutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+            CRC32C crc = new CRC32C();
+            CheckedOutputStream checked = new CheckedOutputStream(out, crc);
+            DataOutputStream header = new DataOutputStream(checked);
+            header.writeInt(SNAPSHOT_MAGIC);
+            header.writeLong(id);
+            // Journal state has no source file, so the codec's source checksum is left at 0.
+            PipelineSnapshotCodec.writeServices(state, 0L, checked);
+            new DataOutputStream(out).writeLong(crc.getValue());
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+        deleteBefore(previousSnapshot(id));
+        snapshotTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("Wrote pipeline journal snapshot {} of {} pipelines", id, state.size());
+    }
+
+    // ---- Recovery ----
+
+    /**
+     * Loads the newest readable snapshot, replays the segments after it and opens the last one
+     * for appending.
+     *
+     * @return the number of records replayed
+     */
+    private long recover() throws IOException {
+        Map<String, Map<String, ServiceConfiguration>> state = new HashMap<>();
+        long baseId = 0;
+        List<Long> snapshots = ids(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            try {
+                state = readSnapshot(snapshots.get(i));
+                baseId = snapshots.get(i);
+                break;
+            } catch (IOException e) {
+                log.warn("Ignoring unreadable pipeline journal snapshot {}: {}", snapshots.get(i), e.getMessage());
+            }
+        }
+
+        long replayed = 0;
+        long lastId = baseId;
+        List<Long> segments = ids(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        for (int i = 0; i < segments.size(); i++) {
+            long id = segments.get(i);
+            if (id < baseId) {
+                continue;
+            }
+            lastId = id;
+            Path path = segmentPath(id);
+            long size = Files.size(path);
+            long[] result = replay(path, size, state);
+            replayed += result[0];
+            if (result[1] < size) {
+                log.warn("Pipeline journal segment {} ends in an incomplete or corrupt record at byte {} of {}, "
+                        + "truncating it", path, result[1], size);
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(result[1]);
+                    channel.force(true);
+                }
+                for (int later = i + 1; later < segments.size(); later++) {
+                    log.warn("Discarding pipeline journal segment {} written after the corrupt record",
+                            segmentPath(segments.get(later)));
+                    Files.delete(segmentPath(segments.get(later)));
+                }
+                break;
+            }
+        }
+
+        written.putAll(state);
+        latest.putAll(state);
+        based.addAll(state.keySet());
+        segmentId = lastId;
+        recordsSinceSnapshot = replayed;
+        segment = FileChannel.open(segmentPath(lastId), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        segment.position(segment.size());
+        syncDirectory();
+        return replayed;
+    }
+
+    /**
+     * Replays the valid records of one segment onto {@code state}.
+     *
+     * @return the number of records replayed and the length of the valid prefix
+     */
+    private long[] replay(Path path, long size, Map<String, Map<String, ServiceConfiguration>> state)
+            throws IOException {
+        if (size == 0) {
+            return new long[] {0, 0};
+        }
+        if (size > Integer.MAX_VALUE) {
+            // Segments are rolled every snapshot-every records and never get near this.
+            throw new IOException("Pipeline journal segment " + path + " is too large to map: " + size);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            long records = 0;
+            JournalRecord record;
+            while ((record = codec.read(buffer)) != null) {
+                record.applyTo(state);
+                records++;
+            }
+            return new long[] {records, buffer.position()};
+        }
+    }
+
+    private Map<String, Map<String, ServiceConfiguration>> readSnapshot(long id) throws IOException {
+        Path path = snapshotPath(id);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < Long.BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("unexpected size " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int length = (int) size - Long.BYTES;
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(0, length));
+            if (crc.getValue() != buffer.getLong(length)) {
+                throw new IOException("checksum mismatch");
+            }
+            DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer.slice(0, length)));
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("not a pipeline journal snapshot");
+            }
+            if (in.readLong() != id) {
+                throw new IOException("snapshot does not belong to segment " + id);
+            }
+            PipelineSnapshotCodec.readChecksum(in);
+            return PipelineSnapshotCodec.readServices(in);
+        }
+    }
+
+    // ---- Files ----
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private Path snapshotPath(long id) {
+        return directory.resolve(String.format("%s%016d%s", SNAPSHOT_PREFIX, id, SNAPSHOT_SUFFIX));
+    }
+
+    private List<Long> ids(String prefix, String suffix) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                    .forEach(name -> {
+                        try {
+                            ids.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                        } catch (NumberFormatException e) {
+                            log.debug("Ignoring {} in the pipeline journal directory", name);
+                        }
+                    });
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private long previousSnapshot(long id) throws IOException {
+        long previous = 0;
+        for (long snapshot : ids(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (snapshot < id) {
+                previous = snapshot;
+            }
+        }
+        return previous;
+    }
+
+    // Everything before the fallback snapshot is covered by two newer snapshots.
+    private void deleteBefore(long id) throws IOException {
+        for (long snapshot : ids(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (snapshot < id) {
+                Files.deleteIfExists(snapshotPath(snapshot));
+            }
+        }
+        for (long segmentFile : ids(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (segmentFile < id) {
+                Files.deleteIfExists(segmentPath(segmentFile));
+            }
+        }
+    }
+
+    // Makes file creations and renames durable; not every platform can open a directory.
+    private void syncDirectory() {
+        if (!fsync) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Cannot fsync directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
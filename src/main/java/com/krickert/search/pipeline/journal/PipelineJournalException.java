@@ -0,0 +1,21 @@
+package com.krickert.search.pipeline.journal;
+
+import java.io.Serial;
+
+/**
+ * Thrown when a change cannot be made durable in the journal: the journal failed, was shut
+ * down, or did not commit the change within {@code pipeline.journal.commit-timeout}.
+ */
+public class PipelineJournalException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public PipelineJournalException(String message) {
+        super(message);
+    }
+
+    public PipelineJournalException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,74 @@
+package com.krickert.search.pipeline.render;
+
+import com.krickert.search.pipeline.ServiceConfiguration;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a diagram one fragment at a time: a header, one fragment per service, then trailer
+ * fragments until {@link #trailer} reports there are none left. Callers pull as much as they
+ * want to buffer, so a diagram never has to be held in memory as a whole.
+ * <p>
+ * A cursor is single-use and not thread-safe.
+ */
+abstract class DiagramCursor {
+
+    private enum Phase { HEADER, SERVICES, TRAILER, DONE }
+
+    private final Iterator<Map.Entry<String, ServiceConfiguration>> services;
+    private Phase phase = Phase.HEADER;
+
+    DiagramCursor(Map<String, ServiceConfiguration> services) {
+        this.services = services.entrySet().iterator();
+    }
+
+    /**
+     * Appends the next fragment to {@code out}.
+     *
+     * @return false once the diagram is complete
+     */
+    final boolean next(StringBuilder out) {
+        switch (phase) {
+            case HEADER -> {
+                header(out);
+                phase = Phase.SERVICES;
+            }
+            case SERVICES -> {
+                if (!services.hasNext()) {
+                    phase = Phase.TRAILER;
+                } else {
+                    Map.Entry<String, ServiceConfiguration> entry = services.next();
+                    // Blank and "null" names are skipped, as they are in the editor.
+                    if (!MermaidDslGenerator.isBlank(entry.getKey())) {
+                        service(entry.getKey(), entry.getValue(), out);
+                    }
+                }
+            }
+            case TRAILER -> {
+                if (!trailer(out)) {
+                    phase = Phase.DONE;
+                }
+            }
+            case DONE -> {
+            }
+        }
+        return phase != Phase.DONE;
+    }
+
+    abstract void header(StringBuilder out);
+
+    abstract void service(String service, ServiceConfiguration config, StringBuilder out);
+
+    /**
+     * Appends the next trailer fragment, if any.
+     *
+     * @return true while more trailer fragments follow
+     */
+    abstract boolean trailer(StringBuilder out);
+
+    static List<String> nullSafe(List<String> values) {
+        return values == null ? List.of() : values;
+    }
+}
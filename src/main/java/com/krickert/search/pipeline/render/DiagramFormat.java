@@ -0,0 +1,46 @@
+package com.krickert.search.pipeline.render;
+
+import io.micronaut.http.MediaType;
+
+import java.util.Locale;
+
+/**
+ * Diagram formats served by {@code /pipeline/export}.
+ */
+public enum DiagramFormat {
+
+    SVG("image/svg+xml", "svg"),
+    DOT("text/vnd.graphviz", "gv"),
+    MERMAID(MediaType.TEXT_PLAIN, "mmd");
+
+    public static final String SVG_TYPE = "image/svg+xml";
+    public static final String DOT_TYPE = "text/vnd.graphviz";
+
+    private final MediaType mediaType;
+    private final String extension;
+
+    DiagramFormat(String mediaType, String extension) {
+        this.mediaType = MediaType.of(mediaType + ";charset=utf-8");
+        this.extension = extension;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    /**
+     * The format named by a {@code format} query value, or null when it is not one of ours.
+     */
+    public static DiagramFormat of(String name) {
+        for (DiagramFormat format : values()) {
+            if (format.name().equals(name.trim().toUpperCase(Locale.ROOT))) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
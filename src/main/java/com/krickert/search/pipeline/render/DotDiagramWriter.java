@@ -0,0 +1,89 @@
+package com.krickert.search.pipeline.render;
+
+import com.krickert.search.pipeline.ServiceConfiguration;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Graphviz DOT for a pipeline, with the same nodes, ids and colours as the Mermaid diagram.
+ * Each node is declared with its label the first time it is used, so edges can be written as
+ * soon as their service is reached.
+ */
+final class DotDiagramWriter extends DiagramCursor {
+
+    private final String pipeline;
+    private final Set<String> nodes = new HashSet<>();
+    private boolean closed;
+
+    DotDiagramWriter(String pipeline, Map<String, ServiceConfiguration> services) {
+        super(services);
+        this.pipeline = pipeline;
+    }
+
+    @Override
+    void header(StringBuilder dot) {
+        dot.append("digraph ");
+        quote(dot, pipeline);
+        dot.append(" {\n")
+                .append("  rankdir=TB;\n")
+                .append("  node [shape=box, style=filled, color=\"#333333\", fontname=\"Helvetica\"];\n");
+    }
+
+    @Override
+    void service(String service, ServiceConfiguration config, StringBuilder dot) {
+        String serviceNode = node(dot, "grpc", service);
+        for (String topic : nullSafe(config.getKafkaListenTopics())) {
+            if (!MermaidDslGenerator.isBlank(topic)) {
+                edge(dot, node(dot, "kafka", topic), serviceNode);
+            }
+        }
+        for (String topic : nullSafe(config.getKafkaPublishTopics())) {
+            if (!MermaidDslGenerator.isBlank(topic)) {
+                edge(dot, serviceNode, node(dot, "kafka", topic));
+            }
+        }
+        for (String target : nullSafe(config.getGrpcForwardTo())) {
+            if (!MermaidDslGenerator.isBlank(target)) {
+                edge(dot, serviceNode, node(dot, "grpc", target));
+            }
+        }
+    }
+
+    @Override
+    boolean trailer(StringBuilder dot) {
+        if (!closed) {
+            dot.append("}\n");
+            closed = true;
+        }
+        return false;
+    }
+
+    private String node(StringBuilder dot, String type, String name) {
+        String id = MermaidDslGenerator.nodeId(type, name);
+        if (nodes.add(id)) {
+            boolean service = "grpc".equals(type);
+            dot.append("  ").append(id).append(" [label=");
+            quote(dot, name);
+            dot.append(service ? ", style=\"rounded,filled\", fillcolor=\"#ADD8E6\"];\n" : ", fillcolor=\"#FFA500\"];\n");
+        }
+        return id;
+    }
+
+    private static void edge(StringBuilder dot, String from, String to) {
+        dot.append("  ").append(from).append(" -> ").append(to).append(";\n");
+    }
+
+    private static void quote(StringBuilder dot, String value) {
+        dot.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                dot.append('\\');
+            }
+            dot.append(c == '\n' || c == '\r' ? ' ' : c);
+        }
+        dot.append('"');
+    }
+}
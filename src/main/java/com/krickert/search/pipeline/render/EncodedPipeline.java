@@ -0,0 +1,14 @@
+package com.krickert.search.pipeline.render;
+
+/**
+ * One pipeline version in a binary encoding. The array is shared by every response for that
+ * version and must never be modified.
+ *
+ * @param pipeline the pipeline name
+ * @param version  the pipeline version the payload was encoded from
+ * @param encoding the binary encoding
+ * @param content  the encoded bytes
+ * @param etag     strong entity tag of the encoded bytes
+ */
+public record EncodedPipeline(String pipeline, long version, PipelineEncoding encoding, byte[] content, String etag) {
+}
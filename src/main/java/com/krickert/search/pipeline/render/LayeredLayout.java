@@ -0,0 +1,316 @@
+package com.krickert.search.pipeline.render;
+
+import com.krickert.search.pipeline.ServiceConfiguration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sugiyama-style layered layout of the editor graph: Kafka topics and gRPC services as nodes,
+ * with listen (topic to service), publish (service to topic) and forward (service to service)
+ * edges, so data flows top to bottom.
+ * <p>
+ * The phases are the classic ones: back edges found by an iterative DFS are reversed to break
+ * cycles, nodes are layered by longest path from the sources, a few barycenter sweeps reduce
+ * crossings, and each layer is packed left to right and centred. Long edges are not split
+ * into dummy nodes, which keeps memory linear in the graph for very large pipelines.
+ */
+public final class LayeredLayout {
+
+    static final double LAYER_SPACING = 140;
+    static final double NODE_SPACING = 40;
+    // Node widths used by the editor's Cytoscape styles.
+    static final double SERVICE_WIDTH = 80;
+    static final double TOPIC_WIDTH = 100;
+
+    private static final int SWEEPS = 4;
+
+    private LayeredLayout() {
+    }
+
+    public static PipelineLayout compute(String pipeline, long version, Map<String, ServiceConfiguration> services) {
+        Graph graph = new Graph(new TreeMap<>(services));
+        return graph.layout(pipeline, version);
+    }
+
+    private static final class Graph {
+
+        private final List<String> ids = new ArrayList<>();
+        private final List<String> labels = new ArrayList<>();
+        private final List<Boolean> topics = new ArrayList<>();
+        private final Map<String, Integer> nodeIds = new HashMap<>();
+        private int[] edgeFrom = new int[64];
+        private int[] edgeTo = new int[64];
+        private int edgeCount;
+
+        Graph(Map<String, ServiceConfiguration> services) {
+            // Mirrors renderCytoscape(): blank and "null" names are skipped.
+            services.forEach((service, config) -> {
+                if (MermaidDslGenerator.isBlank(service)) {
+                    return;
+                }
+                int serviceNode = node("grpc", service, false);
+                for (String topic : nullSafe(config.getKafkaListenTopics())) {
+                    if (!MermaidDslGenerator.isBlank(topic)) {
+                        addEdge(node("kafka", topic, true), serviceNode);
+                    }
+                }
+                for (String topic : nullSafe(config.getKafkaPublishTopics())) {
+                    if (!MermaidDslGenerator.isBlank(topic)) {
+                        addEdge(serviceNode, node("kafka", topic, true));
+                    }
+                }
+                for (String target : nullSafe(config.getGrpcForwardTo())) {
+                    if (!MermaidDslGenerator.isBlank(target)) {
+                        addEdge(serviceNode, node("grpc", target, false));
+                    }
+                }
+            });
+        }
+
+        PipelineLayout layout(String pipeline, long version) {
+            int n = ids.size();
+            int[][] out = rows(n, Arrays.copyOf(edgeFrom, edgeCount), null);
+            boolean[] reversed = backEdges(n, out);
+
+            // Acyclic edges, self loops dropped.
+            int[] from = new int[edgeCount];
+            int[] to = new int[edgeCount];
+            int m = 0;
+            for (int e = 0; e < edgeCount; e++) {
+                if (edgeFrom[e] == edgeTo[e]) {
+                    continue;
+                }
+                from[m] = reversed[e] ? edgeTo[e] : edgeFrom[e];
+                to[m] = reversed[e] ? edgeFrom[e] : edgeTo[e];
+                m++;
+            }
+            from = Arrays.copyOf(from, m);
+            to = Arrays.copyOf(to, m);
+            int[][] successors = rows(n, from, to);
+            int[][] predecessors = rows(n, to, from);
+
+            int[] layer = longestPathLayers(n, successors);
+            int layerCount = 0;
+            for (int v = 0; v < n; v++) {
+                layerCount = Math.max(layerCount, layer[v] + 1);
+            }
+            int[][] order = initialOrder(n, layer, layerCount);
+            double[] position = new double[n];
+            for (int[] nodes : order) {
+                for (int i = 0; i < nodes.length; i++) {
+                    position[nodes[i]] = i;
+                }
+            }
+            for (int sweep = 0; sweep < SWEEPS; sweep++) {
+                for (int l = 1; l < layerCount; l++) {
+                    reorder(order[l], predecessors, position);
+                }
+                for (int l = layerCount - 2; l >= 0; l--) {
+                    reorder(order[l], successors, position);
+                }
+            }
+            return place(pipeline, version, order, layer);
+        }
+
+        /**
+         * Marks the edges that close a cycle in a depth-first traversal. Reversing exactly
+         * those makes the graph acyclic.
+         */
+        private boolean[] backEdges(int n, int[][] out) {
+            int[] offsets = out[0];
+            int[] edges = out[1];
+            boolean[] reversed = new boolean[edgeCount];
+            byte[] state = new byte[n]; // 0 unvisited, 1 on the DFS stack, 2 done
+            int[] stack = new int[n];
+            int[] next = new int[n];
+            for (int root = 0; root < n; root++) {
+                if (state[root] != 0) {
+                    continue;
+                }
+                int depth = 0;
+                stack[0] = root;
+                next[root] = offsets[root];
+                state[root] = 1;
+                while (depth >= 0) {
+                    int v = stack[depth];
+                    if (next[v] < offsets[v + 1]) {
+                        int edge = edges[next[v]++];
+                        int w = edgeTo[edge];
+                        if (state[w] == 0) {
+                            state[w] = 1;
+                            next[w] = offsets[w];
+                            stack[++depth] = w;
+                        } else if (state[w] == 1) {
+                            reversed[edge] = true;
+                        }
+                    } else {
+                        state[v] = 2;
+                        depth--;
+                    }
+                }
+            }
+            return reversed;
+        }
+
+        private static int[] longestPathLayers(int n, int[][] successors) {
+            int[] offsets = successors[0];
+            int[] targets = successors[1];
+            int[] inDegree = new int[n];
+            for (int target : targets) {
+                inDegree[target]++;
+            }
+            int[] queue = new int[n];
+            int tail = 0;
+            for (int v = 0; v < n; v++) {
+                if (inDegree[v] == 0) {
+                    queue[tail++] = v;
+                }
+            }
+            int[] layer = new int[n];
+            for (int head = 0; head < tail; head++) {
+                int v = queue[head];
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int w = targets[e];
+                    layer[w] = Math.max(layer[w], layer[v] + 1);
+                    if (--inDegree[w] == 0) {
+                        queue[tail++] = w;
+                    }
+                }
+            }
+            return layer;
+        }
+
+        private static int[][] initialOrder(int n, int[] layer, int layerCount) {
+            int[] sizes = new int[layerCount];
+            for (int v = 0; v < n; v++) {
+                sizes[layer[v]]++;
+            }
+            int[][] order = new int[layerCount][];
+            for (int l = 0; l < layerCount; l++) {
+                order[l] = new int[sizes[l]];
+            }
+            int[] fill = new int[layerCount];
+            for (int v = 0; v < n; v++) {
+                order[layer[v]][fill[layer[v]]++] = v;
+            }
+            return order;
+        }
+
+        /**
+         * Sorts one layer by the mean position of each node's neighbours in the adjacent layer;
+         * nodes without neighbours keep their place.
+         */
+        private static void reorder(int[] nodes, int[][] neighbours, double[] position) {
+            int[] offsets = neighbours[0];
+            int[] targets = neighbours[1];
+            double[] barycenter = new double[nodes.length];
+            Integer[] indexes = new Integer[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                int v = nodes[i];
+                int degree = offsets[v + 1] - offsets[v];
+                if (degree == 0) {
+                    barycenter[i] = position[v];
+                } else {
+                    double sum = 0;
+                    for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                        sum += position[targets[e]];
+                    }
+                    barycenter[i] = sum / degree;
+                }
+                indexes[i] = i;
+            }
+            Arrays.sort(indexes, (a, b) -> Double.compare(barycenter[a], barycenter[b]));
+            int[] sorted = new int[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                sorted[i] = nodes[indexes[i]];
+            }
+            System.arraycopy(sorted, 0, nodes, 0, nodes.length);
+            for (int i = 0; i < nodes.length; i++) {
+                position[nodes[i]] = i;
+            }
+        }
+
+        private PipelineLayout place(String pipeline, long version, int[][] order, int[] layer) {
+            List<PipelineLayout.Node> nodes = new ArrayList<>(ids.size());
+            double[] widths = new double[order.length];
+            double maxWidth = 0;
+            for (int l = 0; l < order.length; l++) {
+                double width = 0;
+                for (int v : order[l]) {
+                    width += width(v);
+                }
+                widths[l] = width + NODE_SPACING * Math.max(0, order[l].length - 1);
+                maxWidth = Math.max(maxWidth, widths[l]);
+            }
+            for (int l = 0; l < order.length; l++) {
+                double x = (maxWidth - widths[l]) / 2;
+                for (int v : order[l]) {
+                    double width = width(v);
+                    nodes.add(new PipelineLayout.Node(ids.get(v), labels.get(v), topics.get(v), layer[v],
+                            x + width / 2, l * LAYER_SPACING));
+                    x += width + NODE_SPACING;
+                }
+            }
+            return new PipelineLayout(pipeline, version, order.length, maxWidth,
+                    Math.max(0, order.length - 1) * LAYER_SPACING, nodes);
+        }
+
+        private double width(int node) {
+            return topics.get(node) ? TOPIC_WIDTH : SERVICE_WIDTH;
+        }
+
+        private int node(String type, String name, boolean topic) {
+            String id = MermaidDslGenerator.nodeId(type, name);
+            Integer node = nodeIds.get(id);
+            if (node == null) {
+                node = ids.size();
+                nodeIds.put(id, node);
+                ids.add(id);
+                labels.add(name);
+                topics.add(topic);
+            }
+            return node;
+        }
+
+        private void addEdge(int from, int to) {
+            if (edgeCount == edgeFrom.length) {
+                edgeFrom = Arrays.copyOf(edgeFrom, edgeCount * 2);
+                edgeTo = Arrays.copyOf(edgeTo, edgeCount * 2);
+            }
+            edgeFrom[edgeCount] = from;
+            edgeTo[edgeCount] = to;
+            edgeCount++;
+        }
+
+        /**
+         * Compressed sparse rows: {@code [offsets, values]}, where the values of node v are
+         * {@code values[offsets[v]..offsets[v + 1])}. With null values the rows hold edge
+         * indexes instead of neighbour nodes.
+         */
+        private static int[][] rows(int n, int[] keys, int[] values) {
+            int count = keys.length;
+            int[] offsets = new int[n + 1];
+            for (int i = 0; i < count; i++) {
+                offsets[keys[i] + 1]++;
+            }
+            for (int v = 0; v < n; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] rowValues = new int[count];
+            int[] fill = Arrays.copyOf(offsets, n);
+            for (int i = 0; i < count; i++) {
+                rowValues[fill[keys[i]]++] = values == null ? i : values[i];
+            }
+            return new int[][]{offsets, rowValues};
+        }
+    }
+
+    private static List<String> nullSafe(List<String> values) {
+        return values == null ? List.of() : values;
+    }
+}
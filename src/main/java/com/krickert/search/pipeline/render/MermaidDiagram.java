@@ -0,0 +1,12 @@
+package com.krickert.search.pipeline.render;
+
+/**
+ * A rendered Mermaid diagram for one version of a pipeline.
+ *
+ * @param pipeline the pipeline name
+ * @param version  the pipeline version the DSL was generated from
+ * @param dsl      the Mermaid DSL
+ * @param etag     strong entity tag derived from the DSL content
+ */
+public record MermaidDiagram(String pipeline, long version, String dsl, String etag) {
+}
@@ -0,0 +1,123 @@
+package com.krickert.search.pipeline.render;
+
+import com.krickert.search.pipeline.ServiceConfiguration;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the Mermaid flowchart DSL for a pipeline: gRPC services are drawn as stadium nodes,
+ * Kafka topics as rectangles, with edges following listen -> service -> publish/forward.
+ */
+public final class MermaidDslGenerator {
+
+    private MermaidDslGenerator() {
+    }
+
+    public static String generate(Map<String, ServiceConfiguration> services) {
+        StringBuilder graph = new StringBuilder(64 + services.size() * 128);
+        DiagramCursor cursor = cursor(services);
+        while (cursor.next(graph)) {
+            // Drain the whole diagram into one string.
+        }
+        return graph.toString();
+    }
+
+    static DiagramCursor cursor(Map<String, ServiceConfiguration> services) {
+        return new Cursor(services);
+    }
+
+    /**
+     * Same node id scheme as the editor's Cytoscape graph: type prefix plus the name with
+     * every non-word character replaced by an underscore.
+     */
+    public static String nodeId(String type, String name) {
+        StringBuilder id = new StringBuilder(type.length() + 1 + name.length());
+        id.append(type).append('_');
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean word = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+            id.append(word ? c : '_');
+        }
+        return id.toString();
+    }
+
+    static boolean isBlank(String value) {
+        if (value == null) {
+            return true;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() || "null".equalsIgnoreCase(trimmed);
+    }
+
+    private static final class Cursor extends DiagramCursor {
+
+        private final Set<String> grpcNodes = new LinkedHashSet<>();
+        private final Set<String> kafkaNodes = new LinkedHashSet<>();
+        private Iterator<String> grpcStyles;
+        private Iterator<String> kafkaStyles;
+
+        Cursor(Map<String, ServiceConfiguration> services) {
+            super(services);
+        }
+
+        @Override
+        void header(StringBuilder graph) {
+            graph.append("graph TD\n");
+        }
+
+        @Override
+        void service(String service, ServiceConfiguration config, StringBuilder graph) {
+            String grpcNode = nodeId("grpc", service);
+            if (grpcNodes.add(grpcNode)) {
+                graph.append(grpcNode).append("([").append(service).append("])\n");
+            }
+            for (String topic : nullSafe(config.getKafkaListenTopics())) {
+                if (isBlank(topic)) {
+                    continue;
+                }
+                String kafkaNode = nodeId("kafka", topic);
+                if (kafkaNodes.add(kafkaNode)) {
+                    graph.append(kafkaNode).append('[').append(topic).append("]\n");
+                }
+                graph.append(kafkaNode).append(" --> ").append(grpcNode).append('\n');
+            }
+            for (String topic : nullSafe(config.getKafkaPublishTopics())) {
+                if (isBlank(topic)) {
+                    continue;
+                }
+                String kafkaNode = nodeId("kafka", topic);
+                if (kafkaNodes.add(kafkaNode)) {
+                    graph.append(kafkaNode).append('[').append(topic).append("]\n");
+                }
+                graph.append(grpcNode).append(" --> ").append(kafkaNode).append('\n');
+            }
+            for (String target : nullSafe(config.getGrpcForwardTo())) {
+                if (isBlank(target)) {
+                    continue;
+                }
+                String targetNode = nodeId("grpc", target);
+                if (grpcNodes.add(targetNode)) {
+                    graph.append(targetNode).append("([").append(target).append("])\n");
+                }
+                graph.append(grpcNode).append(" --> ").append(targetNode).append('\n');
+            }
+        }
+
+        @Override
+        boolean trailer(StringBuilder graph) {
+            if (grpcStyles == null) {
+                grpcStyles = grpcNodes.iterator();
+                kafkaStyles = kafkaNodes.iterator();
+            }
+            if (grpcStyles.hasNext()) {
+                graph.append("style ").append(grpcStyles.next()).append(" fill:#ADD8E6,stroke:#333,color:#000\n");
+            } else if (kafkaStyles.hasNext()) {
+                graph.append("style ").append(kafkaStyles.next()).append(" fill:#FFA500,stroke:#333,color:#000\n");
+            }
+            return grpcStyles.hasNext() || kafkaStyles.hasNext();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.krickert.search.pipeline.render;
+
+import com.krickert.search.EntityTags;
+import com.krickert.search.pipeline.PipelineConfig;
+import com.krickert.search.pipeline.PipelineSnapshot;
+import com.krickert.search.pipeline.PipelineVersionCache;
+import jakarta.inject.Singleton;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves the Mermaid DSL for a pipeline, building it at most once per pipeline version.
+ */
+@Singleton
+public class MermaidDslService {
+
+    private final PipelineVersionCache<MermaidDiagram> cache = new PipelineVersionCache<>();
+
+    public MermaidDiagram render(PipelineConfig pipelineConfig) {
+        PipelineSnapshot snapshot = pipelineConfig.snapshot();
+        return cache.get(snapshot.name(), snapshot.version(), () -> {
+            String dsl = MermaidDslGenerator.generate(snapshot.services());
+            return new MermaidDiagram(snapshot.name(), snapshot.version(), dsl,
+                    EntityTags.strong(dsl.getBytes(StandardCharsets.UTF_8)));
+        });
+    }
+}
@@ -0,0 +1,42 @@
+package com.krickert.search.pipeline.render;
+
+import com.krickert.search.EntityTags;
+import com.krickert.search.pipeline.PipelineSnapshot;
+import com.krickert.search.pipeline.PipelineVersionCache;
+import io.micronaut.serde.ObjectMapper;
+import jakarta.inject.Singleton;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Serves CBOR and Smile encodings of a pipeline, encoding each at most once per version.
+ */
+@Singleton
+public class PipelineBinaryService {
+
+    private final ObjectMapper objectMapper;
+    private final Map<PipelineEncoding, PipelineVersionCache<EncodedPipeline>> caches =
+            new EnumMap<>(PipelineEncoding.class);
+
+    public PipelineBinaryService(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        for (PipelineEncoding encoding : PipelineEncoding.values()) {
+            caches.put(encoding, new PipelineVersionCache<>());
+        }
+    }
+
+    public EncodedPipeline render(PipelineSnapshot snapshot, PipelineEncoding encoding) {
+        return caches.get(encoding).get(snapshot.name(), snapshot.version(), () -> {
+            try {
+                byte[] content = encoding.encode(objectMapper, snapshot.services());
+                return new EncodedPipeline(snapshot.name(), snapshot.version(), encoding, content,
+                        EntityTags.strong(content));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to encode pipeline " + snapshot.name() + " as " + encoding, e);
+            }
+        });
+    }
+}
@@ -0,0 +1,205 @@
+package com.krickert.search.pipeline.render;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.krickert.search.pipeline.ServiceConfiguration;
+import io.micronaut.core.type.Argument;
+import io.micronaut.http.MediaType;
+import io.micronaut.json.tree.JsonNode;
+import io.micronaut.serde.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Binary encodings of a pipeline's service map. Values still go through Micronaut Serde: the
+ * map is serialized to a {@link JsonNode} tree with the application's {@link ObjectMapper}, and
+ * only the tree is written with the binary Jackson generator, so every {@code @Serdeable} rule
+ * applies unchanged.
+ */
+public enum PipelineEncoding {
+
+    CBOR(PipelineEncoding.CBOR_TYPE, new CBORFactory()),
+    SMILE(PipelineEncoding.SMILE_TYPE, new SmileFactory());
+
+    public static final String CBOR_TYPE = "application/cbor";
+    public static final String SMILE_TYPE = "application/x-jackson-smile";
+
+    private static final Argument<Map<String, ServiceConfiguration>> SERVICES =
+            Argument.mapOf(String.class, ServiceConfiguration.class);
+
+    private final MediaType mediaType;
+    private final JsonFactory factory;
+
+    PipelineEncoding(String mediaType, JsonFactory factory) {
+        this.mediaType = MediaType.of(mediaType);
+        this.factory = factory;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    public byte[] encode(ObjectMapper objectMapper, Map<String, ServiceConfiguration> services) throws IOException {
+        JsonNode tree = objectMapper.writeValueToTree(SERVICES, services);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = factory.createGenerator(out)) {
+            write(tree, generator);
+        }
+        return out.toByteArray();
+    }
+
+    public Map<String, ServiceConfiguration> decode(ObjectMapper objectMapper, byte[] content) throws IOException {
+        try (JsonParser parser = factory.createParser(content)) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                throw new IOException("Empty " + mediaType + " payload");
+            }
+            return objectMapper.readValueFromTree(read(parser, token), SERVICES);
+        }
+    }
+
+    /**
+     * Picks the encoding the {@code Accept} header prefers over JSON, or null when JSON (or a
+     * wildcard) ranks at least as high. Equal qualities go to the type listed first.
+     */
+    public static PipelineEncoding negotiate(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return null;
+        }
+        String[] candidates = accept.split(",");
+        double[] quality = new double[values().length];
+        int[] position = new int[values().length];
+        double jsonQuality = 0;
+        int jsonPosition = Integer.MAX_VALUE;
+        for (int i = 0; i < candidates.length; i++) {
+            String[] parts = candidates[i].split(";");
+            String type = parts[0].trim().toLowerCase(Locale.ROOT);
+            double q = quality(parts);
+            PipelineEncoding encoding = switch (type) {
+                case CBOR_TYPE -> CBOR;
+                case SMILE_TYPE -> SMILE;
+                default -> null;
+            };
+            if (encoding != null) {
+                if (q > quality[encoding.ordinal()]) {
+                    quality[encoding.ordinal()] = q;
+                    position[encoding.ordinal()] = i;
+                }
+            } else if ((type.equals(MediaType.APPLICATION_JSON) || type.equals("*/*") || type.equals("application/*"))
+                    && q > jsonQuality) {
+                jsonQuality = q;
+                jsonPosition = i;
+            }
+        }
+        PipelineEncoding best = null;
+        double bestQuality = jsonQuality;
+        int bestPosition = jsonPosition;
+        for (PipelineEncoding encoding : values()) {
+            double q = quality[encoding.ordinal()];
+            int p = position[encoding.ordinal()];
+            if (q > 0 && (q > bestQuality || (q == bestQuality && p < bestPosition))) {
+                best = encoding;
+                bestQuality = q;
+                bestPosition = p;
+            }
+        }
+        return best;
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String param = parts[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static void write(JsonNode node, JsonGenerator generator) throws IOException {
+        if (node.isObject()) {
+            generator.writeStartObject();
+            for (Map.Entry<String, JsonNode> entry : node.entries()) {
+                generator.writeFieldName(entry.getKey());
+                write(entry.getValue(), generator);
+            }
+            generator.writeEndObject();
+        } else if (node.isArray()) {
+            generator.writeStartArray();
+            for (JsonNode value : node.values()) {
+                write(value, generator);
+            }
+            generator.writeEndArray();
+        } else if (node.isString()) {
+            generator.writeString(node.getStringValue());
+        } else if (node.isBoolean()) {
+            generator.writeBoolean(node.getBooleanValue());
+        } else if (node.isNumber()) {
+            Number number = node.getNumberValue();
+            if (number instanceof BigDecimal decimal) {
+                generator.writeNumber(decimal);
+            } else if (number instanceof BigInteger integer) {
+                generator.writeNumber(integer);
+            } else if (number instanceof Double || number instanceof Float) {
+                generator.writeNumber(number.doubleValue());
+            } else {
+                generator.writeNumber(number.longValue());
+            }
+        } else {
+            generator.writeNull();
+        }
+    }
+
+    private static JsonNode read(JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+            case START_OBJECT -> {
+                Map<String, JsonNode> fields = new LinkedHashMap<>();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    fields.put(name, read(parser, parser.nextToken()));
+                }
+                return JsonNode.createObjectNode(fields);
+            }
+            case START_ARRAY -> {
+                List<JsonNode> values = new ArrayList<>();
+                JsonToken next;
+                while ((next = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    values.add(read(parser, next));
+                }
+                return JsonNode.createArrayNode(values);
+            }
+            case VALUE_STRING -> {
+                return JsonNode.createStringNode(parser.getText());
+            }
+            case VALUE_NUMBER_INT -> {
+                return JsonNode.createNumberNode(parser.getLongValue());
+            }
+            case VALUE_NUMBER_FLOAT -> {
+                return JsonNode.createNumberNode(parser.getDecimalValue());
+            }
+            case VALUE_TRUE, VALUE_FALSE -> {
+                return JsonNode.createBooleanNode(token == JsonToken.VALUE_TRUE);
+            }
+            case VALUE_NULL -> {
+                return JsonNode.nullNode();
+            }
+            default -> throw new IOException("Unexpected token " + token);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.krickert.search.pipeline.render;
+
+import com.krickert.search.pipeline.PipelineSnapshot;
+import jakarta.inject.Singleton;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.TreeMap;
+
+/**
+ * Streams a pipeline diagram as SVG, Graphviz DOT or Mermaid. Nothing is rendered up front:
+ * each chunk is written when the response asks for it, so the memory held per export is one
+ * chunk plus the node bookkeeping of the diagram, however large the pipeline is.
+ */
+@Singleton
+public class PipelineExportService {
+
+    // Chunks are flushed once they reach this many characters.
+    static final int CHUNK_CHARS = 16 * 1024;
+
+    private final PipelineLayoutService layoutService;
+
+    public PipelineExportService(PipelineLayoutService layoutService) {
+        this.layoutService = layoutService;
+    }
+
+    public Flux<byte[]> export(PipelineSnapshot snapshot, DiagramFormat format) {
+        return Flux.defer(() -> stream(cursor(snapshot, format)));
+    }
+
+    private DiagramCursor cursor(PipelineSnapshot snapshot, DiagramFormat format) {
+        return switch (format) {
+            // The same text as /pipeline/mermaid, so it keeps the snapshot's service order.
+            case MERMAID -> MermaidDslGenerator.cursor(snapshot.services());
+            case DOT -> new DotDiagramWriter(snapshot.name(), new TreeMap<>(snapshot.services()));
+            case SVG -> new SvgDiagramWriter(layoutService.layout(snapshot), new TreeMap<>(snapshot.services()));
+        };
+    }
+
+    /**
+     * Pulls fragments from the cursor only on demand, one chunk per request from the subscriber.
+     */
+    static Flux<byte[]> stream(DiagramCursor cursor) {
+        return Flux.generate(() -> new StringBuilder(CHUNK_CHARS + 1024), (buffer, sink) -> {
+            boolean more = true;
+            while (buffer.length() < CHUNK_CHARS && (more = cursor.next(buffer))) {
+                // Keep filling the current chunk.
+            }
+            if (!buffer.isEmpty()) {
+                sink.next(buffer.toString().getBytes(StandardCharsets.UTF_8));
+                buffer.setLength(0);
+            }
+            if (!more) {
+                sink.complete();
+            }
+            return buffer;
+        });
+    }
+}
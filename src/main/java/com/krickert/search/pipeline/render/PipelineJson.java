@@ -0,0 +1,23 @@
+package com.krickert.search.pipeline.render;
+
+import com.krickert.search.EntityTags;
+
+/**
+ * The serialized JSON of one pipeline version, plain and gzip-encoded. The arrays are shared
+ * by every response for that version and must never be modified.
+ *
+ * @param pipeline the pipeline name
+ * @param version  the pipeline version the JSON was serialized from
+ * @param identity the JSON bytes
+ * @param gzip     the JSON bytes gzip-encoded
+ * @param etag     strong entity tag of the plain JSON
+ * @param gzipEtag strong entity tag of the gzip encoding
+ */
+public record PipelineJson(String pipeline, long version, byte[] identity, byte[] gzip,
+                           String etag, String gzipEtag) {
+
+    public boolean matches(String ifNoneMatch) {
+        return EntityTags.matches(ifNoneMatch, etag)
+                || EntityTags.matches(ifNoneMatch, gzipEtag);
+    }
+}
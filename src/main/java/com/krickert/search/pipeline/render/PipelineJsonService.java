@@ -0,0 +1,92 @@
+package com.krickert.search.pipeline.render;
+
+import com.krickert.search.EntityTags;
+import com.krickert.search.pipeline.PipelineSnapshot;
+import com.krickert.search.pipeline.PipelineVersionCache;
+import com.krickert.search.pipeline.ServiceConfiguration;
+import io.micronaut.core.type.Argument;
+import io.micronaut.serde.ObjectMapper;
+import jakarta.inject.Singleton;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves the JSON of a pipeline, serializing and compressing it at most once per pipeline
+ * version. Concurrent requests for a version that isn't cached yet wait for a single build.
+ */
+@Singleton
+public class PipelineJsonService {
+
+    private static final Argument<Map<String, ServiceConfiguration>> SERVICES =
+            Argument.mapOf(String.class, ServiceConfiguration.class);
+
+    private final ObjectMapper objectMapper;
+    private final PipelineVersionCache<PipelineJson> cache = new PipelineVersionCache<>();
+
+    public PipelineJsonService(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public PipelineJson render(PipelineSnapshot snapshot) {
+        return cache.get(snapshot.name(), snapshot.version(), () -> build(snapshot));
+    }
+
+    /**
+     * Returns true when an {@code Accept-Encoding} header allows gzip, i.e. lists {@code gzip}
+     * or {@code *} without {@code q=0}.
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String candidate : acceptEncoding.split(",")) {
+            String[] parts = candidate.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (!coding.equals("gzip") && !coding.equals("*")) {
+                continue;
+            }
+            boolean refused = false;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim().replace(" ", "");
+                if (param.startsWith("q=") && param.substring(2).matches("0(\\.0*)?")) {
+                    refused = true;
+                }
+            }
+            if (!refused) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private PipelineJson build(PipelineSnapshot snapshot) {
+        try {
+            byte[] identity = objectMapper.writeValueAsBytes(SERVICES, snapshot.services());
+            byte[] gzip = gzip(identity);
+            String etag = EntityTags.strong(identity);
+            return new PipelineJson(snapshot.name(), snapshot.version(), identity, gzip,
+                    etag, EntityTags.variant(etag, "gzip"));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to serialize pipeline " + snapshot.name(), e);
+        }
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, content.length / 4));
+        // Built once per version, so spend the CPU on the best ratio.
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,34 @@
+package com.krickert.search.pipeline.render;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.util.List;
+
+/**
+ * Precomputed node coordinates for one pipeline version, for a Cytoscape preset layout.
+ *
+ * @param pipeline the pipeline name
+ * @param version  the pipeline version the layout was computed from
+ * @param layers   number of layers, top to bottom
+ * @param width    width of the widest layer
+ * @param height   distance from the first layer to the last
+ * @param nodes    the position of every node, by editor node id
+ */
+@Serdeable
+public record PipelineLayout(String pipeline, long version, int layers, double width, double height,
+                             List<Node> nodes) {
+
+    /**
+     * Centre of one node.
+     *
+     * @param id    the editor node id, e.g. {@code grpc_chunker} or {@code kafka_chunker_results}
+     * @param label the service or topic name
+     * @param topic whether the node is a Kafka topic rather than a gRPC service
+     * @param layer the layer the node was placed in
+     * @param x     horizontal centre
+     * @param y     vertical centre
+     */
+    @Serdeable
+    public record Node(String id, String label, boolean topic, int layer, double x, double y) {
+    }
+}
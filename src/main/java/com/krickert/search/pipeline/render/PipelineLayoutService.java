@@ -0,0 +1,24 @@
+package com.krickert.search.pipeline.render;
+
+import com.krickert.search.pipeline.PipelineConfig;
+import com.krickert.search.pipeline.PipelineSnapshot;
+import com.krickert.search.pipeline.PipelineVersionCache;
+import jakarta.inject.Singleton;
+
+/**
+ * Serves the layered layout of a pipeline, computing it at most once per pipeline version.
+ */
+@Singleton
+public class PipelineLayoutService {
+
+    private final PipelineVersionCache<PipelineLayout> cache = new PipelineVersionCache<>();
+
+    public PipelineLayout layout(PipelineConfig pipelineConfig) {
+        return layout(pipelineConfig.snapshot());
+    }
+
+    public PipelineLayout layout(PipelineSnapshot snapshot) {
+        return cache.get(snapshot.name(), snapshot.version(),
+                () -> LayeredLayout.compute(snapshot.name(), snapshot.version(), snapshot.services()));
+    }
+}
@@ -0,0 +1,132 @@
+package com.krickert.search.pipeline.render;
+
+import com.krickert.search.pipeline.ServiceConfiguration;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Standalone SVG for a pipeline, positioned by the server-side {@link LayeredLayout}. Edges are
+ * written service by service, then the nodes on top of them, in the editor's colours.
+ */
+final class SvgDiagramWriter extends DiagramCursor {
+
+    static final double MARGIN = 60;
+    static final double NODE_HEIGHT = 30;
+
+    private final PipelineLayout layout;
+    private final Map<String, PipelineLayout.Node> positions;
+    private Iterator<PipelineLayout.Node> nodes;
+
+    SvgDiagramWriter(PipelineLayout layout, Map<String, ServiceConfiguration> services) {
+        super(services);
+        this.layout = layout;
+        this.positions = new HashMap<>(layout.nodes().size() * 2);
+        for (PipelineLayout.Node node : layout.nodes()) {
+            positions.put(node.id(), node);
+        }
+    }
+
+    @Override
+    void header(StringBuilder svg) {
+        String width = number(layout.width() + 2 * MARGIN);
+        String height = number(layout.height() + 2 * MARGIN);
+        svg.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(width)
+                .append("\" height=\"").append(height)
+                .append("\" viewBox=\"0 0 ").append(width).append(' ').append(height)
+                .append("\" font-family=\"Helvetica, Arial, sans-serif\" font-size=\"11\">\n")
+                .append("<title>");
+        escape(svg, layout.pipeline());
+        svg.append("</title>\n")
+                .append("<defs><marker id=\"arrow\" viewBox=\"0 0 10 10\" refX=\"10\" refY=\"5\" markerWidth=\"8\"")
+                .append(" markerHeight=\"8\" orient=\"auto-start-reverse\"><path d=\"M0,0 L10,5 L0,10 z\" fill=\"#666\"/>")
+                .append("</marker></defs>\n")
+                .append("<g stroke=\"#666\" stroke-width=\"1.5\" marker-end=\"url(#arrow)\">\n");
+    }
+
+    @Override
+    void service(String service, ServiceConfiguration config, StringBuilder svg) {
+        String serviceNode = MermaidDslGenerator.nodeId("grpc", service);
+        for (String topic : nullSafe(config.getKafkaListenTopics())) {
+            if (!MermaidDslGenerator.isBlank(topic)) {
+                edge(svg, MermaidDslGenerator.nodeId("kafka", topic), serviceNode);
+            }
+        }
+        for (String topic : nullSafe(config.getKafkaPublishTopics())) {
+            if (!MermaidDslGenerator.isBlank(topic)) {
+                edge(svg, serviceNode, MermaidDslGenerator.nodeId("kafka", topic));
+            }
+        }
+        for (String target : nullSafe(config.getGrpcForwardTo())) {
+            if (!MermaidDslGenerator.isBlank(target)) {
+                edge(svg, serviceNode, MermaidDslGenerator.nodeId("grpc", target));
+            }
+        }
+    }
+
+    @Override
+    boolean trailer(StringBuilder svg) {
+        if (nodes == null) {
+            svg.append("</g>\n<g stroke=\"#333\" text-anchor=\"middle\" dominant-baseline=\"central\">\n");
+            nodes = layout.nodes().iterator();
+            return true;
+        }
+        if (nodes.hasNext()) {
+            node(svg, nodes.next());
+            return true;
+        }
+        svg.append("</g>\n</svg>\n");
+        return false;
+    }
+
+    private void edge(StringBuilder svg, String fromId, String toId) {
+        PipelineLayout.Node from = positions.get(fromId);
+        PipelineLayout.Node to = positions.get(toId);
+        if (from == null || to == null || from == to) {
+            return;
+        }
+        // Leave and enter through the top or bottom edge of the boxes.
+        double offset = Math.signum(to.y() - from.y()) * NODE_HEIGHT / 2;
+        svg.append("<line x1=\"").append(number(MARGIN + from.x()))
+                .append("\" y1=\"").append(number(MARGIN + from.y() + offset))
+                .append("\" x2=\"").append(number(MARGIN + to.x()))
+                .append("\" y2=\"").append(number(MARGIN + to.y() - offset))
+                .append("\"/>\n");
+    }
+
+    private static void node(StringBuilder svg, PipelineLayout.Node node) {
+        double width = node.topic() ? LayeredLayout.TOPIC_WIDTH : LayeredLayout.SERVICE_WIDTH;
+        svg.append("<g id=\"").append(node.id()).append("\"><title>");
+        escape(svg, node.label());
+        svg.append("</title><rect x=\"").append(number(MARGIN + node.x() - width / 2))
+                .append("\" y=\"").append(number(MARGIN + node.y() - NODE_HEIGHT / 2))
+                .append("\" width=\"").append(number(width))
+                .append("\" height=\"").append(number(NODE_HEIGHT))
+                .append(node.topic() ? "\" fill=\"#FFA500\"/>" : "\" rx=\"15\" fill=\"#ADD8E6\"/>")
+                .append("<text x=\"").append(number(MARGIN + node.x()))
+                .append("\" y=\"").append(number(MARGIN + node.y()))
+                .append("\" stroke=\"none\" fill=\"#000\">");
+        escape(svg, node.label());
+        svg.append("</text></g>\n");
+    }
+
+    private static String number(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    private static void escape(StringBuilder svg, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> svg.append("&amp;");
+                case '<' -> svg.append("&lt;");
+                case '>' -> svg.append("&gt;");
+                case '"' -> svg.append("&quot;");
+                default -> svg.append(c);
+            }
+        }
+    }
+}
@@ -129,10 +129,8 @@ public class ConsulConfigurationInitializerTest implements TestPropertyProvider
         PipelineConfig testConfig = new PipelineConfig("default");
         Map<String, ServiceConfiguration> services = new HashMap<>();
 
-        ServiceConfiguration serviceConfig = new ServiceConfiguration("testService");
-        serviceConfig.setKafkaListenTopics(List.of("input-topic"));
-        serviceConfig.setKafkaPublishTopics(List.of("output-topic"));
-        serviceConfig.setGrpcForwardTo(List.of("downstream-service"));
+        ServiceConfiguration serviceConfig = ServiceConfiguration.of("testService", List.of("input-topic"),
+                List.of("output-topic"), List.of("downstream-service"));
 
         services.put("testService", serviceConfig);
         testConfig.setService(services);
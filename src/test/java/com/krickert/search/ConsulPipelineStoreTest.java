@@ -0,0 +1,126 @@
+package com.krickert.search;
+
+import com.krickert.search.pipeline.PipelineChange;
+import com.krickert.search.pipeline.PipelineConfig;
+import com.krickert.search.pipeline.PipelineConfigService;
+import com.krickert.search.pipeline.ServiceConfigurationDto;
+import com.krickert.search.pipeline.consul.ConsulPipelineStore;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import io.micronaut.test.support.TestPropertyProvider;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.testcontainers.shaded.org.awaitility.Awaitility;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@MicronautTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ConsulPipelineStoreTest implements TestPropertyProvider {
+
+    private FakeConsulServer consul;
+
+    @Inject
+    PipelineConfigService configService;
+
+    @Inject
+    ConsulPipelineStore pipelineStore;
+
+    @Override
+    public Map<String, String> getProperties() {
+        try {
+            consul = new FakeConsulServer();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return consul.getProperties();
+    }
+
+    @AfterAll
+    void cleanup() {
+        consul.close();
+    }
+
+    @Test
+    void defaultPipelinesAreSeededAtStartup() {
+        Awaitility.await().atMost(10, TimeUnit.SECONDS)
+                .until(() -> consul.get("pipeline/configs/pipeline1") != null);
+        assertTrue(consul.get("pipeline/configs/pipeline1").contains("chunker"));
+    }
+
+    @Test
+    void localEditsAreWrittenToConsul() {
+        ServiceConfigurationDto dto = new ServiceConfigurationDto();
+        dto.setName("consul-written");
+        dto.setKafkaListenTopics(List.of("enhanced-documents"));
+        configService.addOrUpdateService(dto);
+
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> {
+            String stored = consul.get("pipeline/configs/pipeline1");
+            return stored != null && stored.contains("consul-written");
+        });
+    }
+
+    @Test
+    void remoteEditsReachTheLocalCacheThroughTheWatch() throws IOException {
+        Awaitility.await().atMost(10, TimeUnit.SECONDS)
+                .until(() -> consul.get("pipeline/configs/pipeline1") != null);
+
+        consul.put("pipeline/configs/remote-pipeline",
+                "{\"name\":\"remote-pipeline\",\"service\":{\"remote-svc\":{\"name\":\"remote-svc\","
+                        + "\"kafkaListenTopics\":[\"in\"],\"kafkaPublishTopics\":[\"out\"]}}}");
+
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() ->
+                configService.getPipelineConfig("remote-pipeline") != null
+                        && configService.getPipelineConfig("remote-pipeline").containsService("remote-svc"));
+        assertEquals("pipeline/configs/remote-pipeline", pipelineStore.keyFor("remote-pipeline"));
+    }
+
+    @Test
+    void lateEchoOfAnOlderWriteDoesNotRevertLocalState() throws InterruptedException {
+        PipelineConfig pipeline = configService.getOrCreatePipelineConfig("echo-pipeline");
+        List<PipelineChange> applied = new CopyOnWriteArrayList<>();
+        pipeline.addChangeListener(change -> {
+            if (change.remote()) {
+                applied.add(change);
+            }
+        });
+        consul.holdWatches();
+        try {
+            pipeline.addOrUpdateService(dto("first"));
+            Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> {
+                String stored = consul.get("pipeline/configs/echo-pipeline");
+                return stored != null && stored.contains("first");
+            });
+            // The second write is serialized and in flight when the watcher sees the first one.
+            consul.setTransactionLatency(Duration.ofSeconds(1));
+            pipeline.addOrUpdateService(dto("second"));
+            Thread.sleep(500);
+            consul.releaseWatches();
+
+            Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() ->
+                    consul.get("pipeline/configs/echo-pipeline").contains("second"));
+            Awaitility.await().during(1, TimeUnit.SECONDS).atMost(5, TimeUnit.SECONDS).until(applied::isEmpty);
+            assertTrue(pipeline.containsService("second"));
+        } finally {
+            consul.setTransactionLatency(Duration.ZERO);
+            consul.releaseWatches();
+        }
+    }
+
+    private static ServiceConfigurationDto dto(String name) {
+        ServiceConfigurationDto dto = new ServiceConfigurationDto();
+        dto.setName(name);
+        dto.setKafkaListenTopics(List.of("enhanced-documents"));
+        return dto;
+    }
+}
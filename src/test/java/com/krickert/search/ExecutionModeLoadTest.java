@@ -0,0 +1,127 @@
+package com.krickert.search;
+
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.runtime.server.EmbeddedServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares platform and virtual thread execution under concurrent editors whose writes block
+ * on Consul: the write-behind queue is kept small and every transaction takes 25 ms, so
+ * handlers wait on backpressure the way they would against a slow store.
+ * <p>
+ * Opt-in, as it takes about a minute: {@code ./gradlew test --tests '*ExecutionModeLoadTest'
+ * -Dpipeline.loadtest=true}.
+ */
+@EnabledIfSystemProperty(named = "pipeline.loadtest", matches = "true")
+class ExecutionModeLoadTest {
+
+    private static final int PIPELINES = 64;
+    private static final int EDITORS = 256;
+    private static final Duration DURATION = Duration.ofSeconds(20);
+
+    @Test
+    void compareVirtualAndPlatformThreads() throws Exception {
+        Result platform = run("platform");
+        Result virtual = run("virtual");
+        System.out.printf("%n%-9s %10s %10s %10s %8s%n", "mode", "req/s", "p50 ms", "p99 ms", "errors");
+        for (Result result : List.of(platform, virtual)) {
+            System.out.printf("%-9s %10.0f %10.1f %10.1f %8d%n", result.mode, result.throughput,
+                    result.p50Millis, result.p99Millis, result.errors);
+        }
+        assertTrue(platform.requests > 0 && virtual.requests > 0);
+    }
+
+    private Result run(String mode) throws Exception {
+        try (FakeConsulServer consul = new FakeConsulServer()) {
+            consul.setTransactionLatency(Duration.ofMillis(25));
+            Map<String, Object> properties = new HashMap<>(consul.getProperties());
+            properties.put("pipeline.execution.mode", mode);
+            properties.put("pipeline.execution.platform-threads", "32");
+            properties.put("consul.write-behind.window", "0ms");
+            properties.put("consul.write-behind.max-pending", "8");
+            properties.put("consul.write-behind.max-batch", "8");
+            properties.put("consul.write-behind.enqueue-timeout", "30s");
+            for (int p = 0; p < PIPELINES; p++) {
+                properties.put("pipeline.configs.load-" + p + ".service.importer.kafka-publish-topics", "input");
+            }
+            try (EmbeddedServer server = ApplicationContext.run(EmbeddedServer.class, properties);
+                 ExecutorService editors = Executors.newVirtualThreadPerTaskExecutor()) {
+                HttpClient http = HttpClient.newBuilder().executor(editors).build();
+                String base = server.getURL().toString();
+                long deadline = System.nanoTime() + DURATION.toNanos();
+                AtomicInteger errors = new AtomicInteger();
+                List<Future<long[]>> futures = new ArrayList<>();
+                for (int e = 0; e < EDITORS; e++) {
+                    int editor = e;
+                    futures.add(editors.submit(() -> edit(http, base, editor, deadline, errors)));
+                }
+                List<long[]> samples = new ArrayList<>();
+                for (Future<long[]> future : futures) {
+                    samples.add(future.get());
+                }
+                long[] latencies = samples.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+                return new Result(mode, latencies.length, latencies.length / (double) DURATION.toSeconds(),
+                        percentile(latencies, 0.50), percentile(latencies, 0.99), errors.get());
+            }
+        }
+    }
+
+    private static long[] edit(HttpClient http, String base, int editor, long deadline, AtomicInteger errors) {
+        long[] latencies = new long[1024];
+        int count = 0;
+        String pipeline = "load-" + (editor % PIPELINES);
+        for (int i = 0; System.nanoTime() < deadline; i++) {
+            HttpRequest request = i % 4 == 3
+                    ? HttpRequest.newBuilder(URI.create(base + "/pipelines/" + pipeline)).GET().build()
+                    : HttpRequest.newBuilder(URI.create(base + "/pipeline/batch?pipeline=" + pipeline))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"operations\":[{\"op\":\"ADD\",\"service\":"
+                            + "{\"name\":\"editor-" + editor + "\",\"kafkaListenTopics\":[\"input\"],"
+                            + "\"kafkaPublishTopics\":[\"out-" + i + "\"]}}]}"))
+                    .build();
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() >= 400) {
+                    errors.incrementAndGet();
+                }
+            } catch (Exception e) {
+                errors.incrementAndGet();
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - start;
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)] / 1_000_000.0;
+    }
+
+    private record Result(String mode, long requests, double throughput, double p50Millis, double p99Millis,
+                          int errors) {
+    }
+}
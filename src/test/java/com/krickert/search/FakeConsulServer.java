@@ -0,0 +1,222 @@
+package com.krickert.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+
+/**
+ * Minimal in-process stand-in for the Consul KV HTTP API: raw get, put (with {@code cas=0}),
+ * delete, recursive listing with blocking queries on {@code X-Consul-Index}, and KV
+ * set/delete operations through {@code /v1/txn}.
+ */
+public class FakeConsulServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final TreeMap<String, Entry> store = new TreeMap<>();
+    private long index = 1;
+    private int transactions;
+    private volatile long transactionLatencyMillis;
+    private boolean watchesHeld;
+
+    private record Entry(String value, long modifyIndex) {
+    }
+
+    public FakeConsulServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/v1/kv/", this::handleKv);
+        server.createContext("/v1/txn", this::handleTxn);
+        server.createContext("/v1/status/leader", exchange -> respond(exchange, 200, "\"127.0.0.1:8300\""));
+        server.start();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public Map<String, String> getProperties() {
+        return Map.of("consul.url", getUrl(), "consul.enabled", "true", "consul.watch.wait", "2s");
+    }
+
+    public synchronized String get(String key) {
+        Entry entry = store.get(key);
+        return entry == null ? null : entry.value();
+    }
+
+    public synchronized void put(String key, String value) {
+        store.put(key, new Entry(value, ++index));
+        notifyAll();
+    }
+
+    /**
+     * Delays every {@code /v1/txn} response, to stand in for a slow or remote Consul.
+     */
+    public void setTransactionLatency(Duration latency) {
+        transactionLatencyMillis = latency.toMillis();
+    }
+
+    /**
+     * Keeps blocking queries from returning until {@link #releaseWatches()}, so changes pile up
+     * and reach the watcher late, as they would behind a slow network.
+     */
+    public synchronized void holdWatches() {
+        watchesHeld = true;
+    }
+
+    public synchronized void releaseWatches() {
+        watchesHeld = false;
+        notifyAll();
+    }
+
+    public synchronized int getTransactionCount() {
+        return transactions;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handleKv(HttpExchange exchange) throws IOException {
+        String key = exchange.getRequestURI().getPath().substring("/v1/kv/".length());
+        Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+        switch (exchange.getRequestMethod()) {
+            case "PUT" -> {
+                String value = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                boolean written;
+                synchronized (this) {
+                    written = !"0".equals(query.get("cas")) || !store.containsKey(key);
+                    if (written) {
+                        put(key, value);
+                    }
+                }
+                respond(exchange, 200, Boolean.toString(written));
+            }
+            case "DELETE" -> {
+                synchronized (this) {
+                    if (store.remove(key) != null) {
+                        index++;
+                        notifyAll();
+                    }
+                }
+                respond(exchange, 200, "true");
+            }
+            default -> {
+                if (query.containsKey("recurse")) {
+                    list(exchange, key, query);
+                } else {
+                    String value = get(key);
+                    respond(exchange, value == null ? 404 : 200, value == null ? "" : value);
+                }
+            }
+        }
+    }
+
+    private void handleTxn(HttpExchange exchange) throws IOException {
+        JsonNode operations = new ObjectMapper().readTree(exchange.getRequestBody());
+        if (transactionLatencyMillis > 0) {
+            try {
+                Thread.sleep(transactionLatencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        StringBuilder results = new StringBuilder();
+        synchronized (this) {
+            transactions++;
+            for (JsonNode operation : operations) {
+                JsonNode kv = operation.get("KV");
+                String key = kv.get("Key").asText();
+                if ("delete".equals(kv.get("Verb").asText())) {
+                    store.remove(key);
+                    index++;
+                } else {
+                    String value = new String(Base64.getDecoder().decode(kv.get("Value").asText()), StandardCharsets.UTF_8);
+                    store.put(key, new Entry(value, ++index));
+                    // Like Consul, a set reports the key's new indexes but not its value.
+                    results.append(results.isEmpty() ? "" : ",")
+                            .append("{\"KV\":{\"Key\":\"").append(key)
+                            .append("\",\"Value\":null,\"ModifyIndex\":").append(index).append("}}");
+                }
+            }
+            notifyAll();
+        }
+        respond(exchange, 200, "{\"Results\":[" + results + "],\"Errors\":null}");
+    }
+
+    private void list(HttpExchange exchange, String prefix, Map<String, String> query) throws IOException {
+        long requested = Long.parseLong(query.getOrDefault("index", "0"));
+        StringBuilder body = new StringBuilder("[");
+        long currentIndex;
+        synchronized (this) {
+            while (requested > 0 && watchesHeld) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            long deadline = System.currentTimeMillis() + 2_000;
+            while (requested > 0 && index <= requested && System.currentTimeMillis() < deadline) {
+                try {
+                    wait(Math.max(1, deadline - System.currentTimeMillis()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            currentIndex = index;
+            store.subMap(prefix, prefix + Character.MAX_VALUE).forEach((key, entry) -> {
+                if (body.length() > 1) {
+                    body.append(',');
+                }
+                body.append("{\"Key\":\"").append(key).append("\",\"Value\":\"")
+                        .append(Base64.getEncoder().encodeToString(entry.value().getBytes(StandardCharsets.UTF_8)))
+                        .append("\",\"ModifyIndex\":").append(entry.modifyIndex()).append('}');
+            });
+        }
+        body.append(']');
+        exchange.getResponseHeaders().add("X-Consul-Index", Long.toString(currentIndex));
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        respond(exchange, body.length() == 2 ? 404 : 200, body.length() == 2 ? "" : body.toString());
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(name, value);
+        }
+        return params;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        if (!exchange.getResponseHeaders().containsKey("Content-Type")) {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+        }
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
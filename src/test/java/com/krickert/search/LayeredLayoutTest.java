@@ -0,0 +1,62 @@
+package com.krickert.search;
+
+import com.krickert.search.pipeline.ServiceConfiguration;
+import com.krickert.search.pipeline.render.LayeredLayout;
+import com.krickert.search.pipeline.render.PipelineLayout;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LayeredLayoutTest {
+
+    @Test
+    void layersFollowListenServicePublishFlow() {
+        Map<String, ServiceConfiguration> services = new LinkedHashMap<>();
+        services.put("importer", ServiceConfiguration.of("importer", null, List.of("input-documents"), null));
+        services.put("chunker", ServiceConfiguration.of("chunker", List.of("input-documents"), List.of("chunks"), null));
+        services.put("embedder", ServiceConfiguration.of("embedder", List.of("chunks"), null, List.of("solr-indexer")));
+        services.put("solr-indexer", ServiceConfiguration.of("solr-indexer", null, null, null));
+
+        PipelineLayout layout = LayeredLayout.compute("p", 3, services);
+
+        Map<String, PipelineLayout.Node> nodes = layout.nodes().stream()
+                .collect(Collectors.toMap(PipelineLayout.Node::id, node -> node));
+        assertEquals(6, nodes.size());
+        assertEquals(0, nodes.get("grpc_importer").layer());
+        assertEquals(1, nodes.get("kafka_input_documents").layer());
+        assertEquals(2, nodes.get("grpc_chunker").layer());
+        assertEquals(3, nodes.get("kafka_chunks").layer());
+        assertEquals(4, nodes.get("grpc_embedder").layer());
+        assertEquals(5, nodes.get("grpc_solr_indexer").layer());
+        assertTrue(nodes.get("grpc_chunker").y() > nodes.get("grpc_importer").y());
+        assertEquals(3, layout.version());
+    }
+
+    @Test
+    void cyclesAreBrokenAndNodesInALayerDoNotOverlap() {
+        Map<String, ServiceConfiguration> services = new LinkedHashMap<>();
+        for (int i = 0; i < 500; i++) {
+            services.put("svc-" + i, ServiceConfiguration.of("svc-" + i,
+                    List.of("topic-" + (i % 50)), List.of("topic-" + ((i + 1) % 50)), List.of("svc-" + ((i + 7) % 500))));
+        }
+
+        PipelineLayout layout = LayeredLayout.compute("p", 1, services);
+
+        assertEquals(550, layout.nodes().size());
+        Map<Integer, List<PipelineLayout.Node>> byLayer = new HashMap<>();
+        layout.nodes().forEach(node -> byLayer.computeIfAbsent(node.layer(), l -> new ArrayList<>()).add(node));
+        byLayer.values().forEach(layer -> {
+            List<Double> xs = layer.stream().map(PipelineLayout.Node::x).sorted().toList();
+            for (int i = 1; i < xs.size(); i++) {
+                assertTrue(xs.get(i) - xs.get(i - 1) >= 80, "nodes overlap");
+            }
+        });
+    }
+}
@@ -0,0 +1,204 @@
+package com.krickert.search;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.Array;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+/**
+ * Open-loop HTTP load generator. Requests are started on a fixed schedule of {@code rate} per
+ * second whether or not earlier ones have completed, and each latency is measured from the time
+ * the request was <em>scheduled</em> to start, so a stalled server shows up as queueing delay
+ * in the histograms instead of silently lowering the offered load (coordinated omission).
+ * <p>
+ * Each request kind gets its own HdrHistogram. Requests scheduled during the warmup are not
+ * recorded. At most {@code maxInFlight} requests are outstanding; a request scheduled beyond
+ * that is counted as dropped rather than delaying the schedule.
+ */
+final class LoadGenerator<K extends Enum<K>> {
+
+    // Highest latency tracked; anything slower is clamped to it.
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final HttpClient http;
+    private final Class<K> kinds;
+    private final K[] schedule;
+    private final Map<K, LongFunction<HttpRequest>> requests;
+    private final Map<K, Recorder> recorders;
+    private final Map<K, AtomicLong> errors;
+    private final AtomicLong dropped = new AtomicLong();
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+
+    /**
+     * @param mix      relative weight of each request kind; kinds are interleaved in that ratio
+     * @param requests builds the request of each kind from its sequence number
+     */
+    LoadGenerator(HttpClient http, Class<K> kinds, Map<K, Integer> mix,
+                  Map<K, LongFunction<HttpRequest>> requests, int maxInFlight) {
+        this.http = http;
+        this.kinds = kinds;
+        this.schedule = interleave(kinds, mix);
+        this.requests = requests;
+        this.recorders = new EnumMap<>(kinds);
+        this.errors = new EnumMap<>(kinds);
+        for (K kind : kinds.getEnumConstants()) {
+            recorders.put(kind, new Recorder(MAX_LATENCY_NANOS, 3));
+            errors.put(kind, new AtomicLong());
+        }
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Offers {@code rate} requests per second for {@code warmup} plus {@code duration}, then
+     * waits for the outstanding ones and returns the histograms of the measured part.
+     */
+    Report<K> run(double rate, Duration warmup, Duration duration) throws InterruptedException {
+        long interval = Math.max(1, Math.round(TimeUnit.SECONDS.toNanos(1) / rate));
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        for (long sequence = 0; ; sequence++) {
+            long intended = start + sequence * interval;
+            if (intended >= end) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            K kind = schedule[(int) (sequence % schedule.length)];
+            boolean measured = intended >= measureFrom;
+            if (!inFlight.tryAcquire()) {
+                if (measured) {
+                    dropped.incrementAndGet();
+                }
+                continue;
+            }
+            send(kind, sequence, intended, measured);
+        }
+        // Every permit is back once the outstanding requests have completed.
+        if (!inFlight.tryAcquire(maxInFlight, 30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Requests still outstanding 30 s after the run ended");
+        }
+        inFlight.release(maxInFlight);
+        Map<K, Histogram> histograms = new EnumMap<>(kinds);
+        Map<K, Long> errorCounts = new EnumMap<>(kinds);
+        for (K kind : kinds.getEnumConstants()) {
+            histograms.put(kind, recorders.get(kind).getIntervalHistogram());
+            errorCounts.put(kind, errors.get(kind).get());
+        }
+        return new Report<>(histograms, errorCounts, dropped.get(), duration);
+    }
+
+    private void send(K kind, long sequence, long intended, boolean measured) {
+        HttpRequest request;
+        try {
+            request = requests.get(kind).apply(sequence);
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+        http.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+            try {
+                if (!measured) {
+                    return;
+                }
+                if (failure != null || response.statusCode() >= 400) {
+                    errors.get(kind).incrementAndGet();
+                }
+                recorders.get(kind).recordValue(Math.min(System.nanoTime() - intended, MAX_LATENCY_NANOS));
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    // Spreads each kind evenly over one cycle of the schedule, e.g. 3:1 as A A B A.
+    private static <K extends Enum<K>> K[] interleave(Class<K> kinds, Map<K, Integer> mix) {
+        int total = mix.values().stream().mapToInt(weight -> Math.max(0, weight)).sum();
+        if (total <= 0) {
+            throw new IllegalArgumentException("Request mix is empty: " + mix);
+        }
+        List<K> cycle = new ArrayList<>(total);
+        double[] credit = new double[kinds.getEnumConstants().length];
+        for (int slot = 0; slot < total; slot++) {
+            K next = null;
+            for (K kind : kinds.getEnumConstants()) {
+                int weight = mix.getOrDefault(kind, 0);
+                if (weight <= 0) {
+                    continue;
+                }
+                credit[kind.ordinal()] += weight / (double) total;
+                if (next == null || credit[kind.ordinal()] > credit[next.ordinal()]) {
+                    next = kind;
+                }
+            }
+            credit[next.ordinal()] -= 1;
+            cycle.add(next);
+        }
+        @SuppressWarnings("unchecked")
+        K[] schedule = cycle.toArray((K[]) Array.newInstance(kinds, 0));
+        return schedule;
+    }
+
+    record Report<K extends Enum<K>>(Map<K, Histogram> histograms, Map<K, Long> errors, long dropped,
+                                     Duration duration) {
+
+        long requests() {
+            return histograms.values().stream().mapToLong(Histogram::getTotalCount).sum();
+        }
+
+        /**
+         * Prints one line of percentiles, in milliseconds, per request kind.
+         */
+        void printSummary(PrintStream out, double offeredRate) {
+            out.printf(Locale.ROOT, "%noffered %.0f req/s for %ds, %d completed, %d dropped%n",
+                    offeredRate, duration.toSeconds(), requests(), dropped);
+            out.printf(Locale.ROOT, "%-10s %9s %7s %9s %9s %9s %9s %9s%n",
+                    "request", "count", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+            histograms.forEach((kind, histogram) -> out.printf(Locale.ROOT,
+                    "%-10s %9d %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    kind.name().toLowerCase(Locale.ROOT), histogram.getTotalCount(), errors.get(kind),
+                    millis(histogram, 50), millis(histogram, 90), millis(histogram, 99), millis(histogram, 99.9),
+                    histogram.getMaxValue() / 1_000_000.0));
+        }
+
+        /**
+         * Writes the full percentile distribution of each request kind, in milliseconds, as
+         * {@code <kind>.hgrm} in {@code directory}. The files load into the HdrHistogram plotter.
+         */
+        void writeHistograms(Path directory) throws IOException {
+            Files.createDirectories(directory);
+            for (Map.Entry<K, Histogram> entry : histograms.entrySet()) {
+                Path file = directory.resolve(entry.getKey().name().toLowerCase(Locale.ROOT) + ".hgrm");
+                try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+                    entry.getValue().outputPercentileDistribution(out, 1_000_000.0);
+                }
+            }
+        }
+
+        private static double millis(Histogram histogram, double percentile) {
+            return histogram.getValueAtPercentile(percentile) / 1_000_000.0;
+        }
+    }
+}
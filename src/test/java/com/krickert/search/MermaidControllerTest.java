@@ -0,0 +1,173 @@
+package com.krickert.search;
+
+import com.krickert.search.pipeline.PipelinePage;
+import com.krickert.search.pipeline.ServiceConfigurationDto;
+import io.micronaut.http.HttpHeaders;
+import io.micronaut.http.HttpRequest;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.client.HttpClient;
+import io.micronaut.http.client.annotation.Client;
+import io.micronaut.http.client.exceptions.HttpClientResponseException;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@MicronautTest
+class MermaidControllerTest {
+
+    @Inject
+    @Client("/")
+    HttpClient client;
+
+    @Test
+    void mermaidEndpointReturnsDslWithStrongEtag() {
+        HttpResponse<String> response = client.toBlocking()
+                .exchange(HttpRequest.GET("/pipeline/mermaid?pipeline=pipeline1"), String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatus());
+        String body = response.body();
+        assertNotNull(body);
+        assertTrue(body.startsWith("graph TD\n"));
+        assertTrue(body.contains("kafka_chunker_results --> grpc_embedder"));
+        String etag = response.header(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        assertFalse(etag.startsWith("W/"), "ETag should be strong");
+    }
+
+    @Test
+    void mermaidEndpointHonoursIfNoneMatchAndInvalidatesOnChange() {
+        String etag = client.toBlocking()
+                .exchange(HttpRequest.GET("/pipeline/mermaid?pipeline=pipeline1"), String.class)
+                .header(HttpHeaders.ETAG);
+
+        HttpResponse<String> notModified = client.toBlocking().exchange(
+                HttpRequest.GET("/pipeline/mermaid?pipeline=pipeline1").header(HttpHeaders.IF_NONE_MATCH, etag),
+                String.class);
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatus());
+
+        ServiceConfigurationDto dto = new ServiceConfigurationDto();
+        dto.setName("etag-probe");
+        dto.setKafkaListenTopics(List.of("enhanced-documents"));
+        dto.setKafkaPublishTopics(List.of());
+        dto.setGrpcForwardTo(List.of());
+        client.toBlocking().exchange(HttpRequest.POST("/pipeline/add", dto));
+
+        HttpResponse<String> changed = client.toBlocking().exchange(
+                HttpRequest.GET("/pipeline/mermaid?pipeline=pipeline1").header(HttpHeaders.IF_NONE_MATCH, etag),
+                String.class);
+        assertEquals(HttpStatus.OK, changed.getStatus());
+        assertNotEquals(etag, changed.header(HttpHeaders.ETAG));
+        assertTrue(changed.body().contains("grpc_etag_probe"));
+
+        client.toBlocking().exchange(HttpRequest.POST("/pipeline/delete", dto));
+    }
+
+    @Test
+    void pipelinesArePagedAndFetchedByName() {
+        PipelinePage page = client.toBlocking().retrieve(HttpRequest.GET("/pipelines?limit=1"), PipelinePage.class);
+        assertEquals(0, page.offset());
+        assertEquals(1, page.pipelines().size());
+        assertTrue(page.total() >= 1);
+
+        HttpResponse<Map> pipeline = client.toBlocking()
+                .exchange(HttpRequest.GET("/pipelines/pipeline1"), Map.class);
+        assertEquals(HttpStatus.OK, pipeline.getStatus());
+        assertTrue(pipeline.body().containsKey("chunker"));
+        assertNotNull(pipeline.header(MermaidController.PIPELINE_VERSION_HEADER));
+
+        HttpClientResponseException missing = assertThrows(HttpClientResponseException.class,
+                () -> client.toBlocking().exchange(HttpRequest.GET("/pipelines/no-such-pipeline")));
+        assertEquals(HttpStatus.NOT_FOUND, missing.getStatus());
+    }
+
+    @Test
+    void editorPageDoesNotInlineOtherPipelines() {
+        String html = client.toBlocking().retrieve("/");
+        assertFalse(html.contains("allPipelines"));
+        assertTrue(html.contains("fetchPipeline"));
+    }
+
+    @Test
+    void exportsStreamSvgDotAndMermaid() {
+        HttpResponse<String> svg = client.toBlocking()
+                .exchange(HttpRequest.GET("/pipeline/export?pipeline=pipeline1&format=svg"), String.class);
+        assertEquals(HttpStatus.OK, svg.getStatus());
+        assertTrue(svg.getContentType().orElseThrow().toString().startsWith("image/svg+xml"));
+        assertTrue(svg.body().contains("<g id=\"grpc_chunker\">"));
+        assertTrue(svg.body().trim().endsWith("</svg>"));
+        assertNotNull(svg.header(MermaidController.PIPELINE_VERSION_HEADER));
+
+        String dot = client.toBlocking().retrieve("/pipeline/export?pipeline=pipeline1&format=dot");
+        assertTrue(dot.startsWith("digraph \"pipeline1\" {"));
+        assertTrue(dot.contains("kafka_chunker_results -> grpc_embedder;"));
+
+        String mermaid = client.toBlocking().retrieve("/pipeline/export?pipeline=pipeline1&format=mermaid");
+        assertEquals(client.toBlocking().retrieve("/pipeline/mermaid?pipeline=pipeline1"), mermaid);
+
+        HttpClientResponseException badFormat = assertThrows(HttpClientResponseException.class,
+                () -> client.toBlocking().exchange(HttpRequest.GET("/pipeline/export?format=png")));
+        assertEquals(HttpStatus.BAD_REQUEST, badFormat.getStatus());
+    }
+
+    @Test
+    void subgraphReturnsOnlyTheRequestedSlice() {
+        Map subgraph = client.toBlocking().retrieve(
+                HttpRequest.GET("/pipeline/subgraph?pipeline=pipeline1&service=embedder&depth=1&direction=up"), Map.class);
+        Map services = (Map) subgraph.get("services");
+        assertTrue(services.containsKey("embedder"));
+        assertTrue(services.containsKey("chunker"));
+        assertFalse(services.containsKey("solr-indexer"));
+
+        String mermaid = client.toBlocking().retrieve(
+                "/pipeline/subgraph?pipeline=pipeline1&service=embedder&depth=1&direction=up&format=mermaid");
+        assertTrue(mermaid.contains("kafka_chunker_results --> grpc_embedder"));
+
+        HttpClientResponseException missing = assertThrows(HttpClientResponseException.class,
+                () -> client.toBlocking().exchange(HttpRequest.GET("/pipeline/subgraph?service=no-such-service")));
+        assertEquals(HttpStatus.NOT_FOUND, missing.getStatus());
+    }
+
+    @Test
+    void staleIfMatchIsRejectedWith412() {
+        ServiceConfigurationDto dto = new ServiceConfigurationDto();
+        dto.setName("occ-probe");
+        dto.setKafkaListenTopics(List.of("enhanced-documents"));
+        HttpResponse<?> created = client.toBlocking().exchange(HttpRequest.POST("/pipeline/add", dto));
+        String etag = created.header(HttpHeaders.ETAG);
+        assertEquals(etag, client.toBlocking().exchange(HttpRequest.GET("/pipeline/service?name=occ-probe"),
+                Map.class).header(HttpHeaders.ETAG));
+
+        dto.setKafkaPublishTopics(List.of("occ-out"));
+        HttpResponse<?> updated = client.toBlocking().exchange(
+                HttpRequest.POST("/pipeline/add", dto).header(HttpHeaders.IF_MATCH, etag));
+        assertNotEquals(etag, updated.header(HttpHeaders.ETAG));
+
+        HttpClientResponseException stale = assertThrows(HttpClientResponseException.class,
+                () -> client.toBlocking().exchange(HttpRequest.POST("/pipeline/delete", dto).header(HttpHeaders.IF_MATCH, etag)));
+        assertEquals(HttpStatus.PRECONDITION_FAILED, stale.getStatus());
+        assertEquals(updated.header(HttpHeaders.ETAG), stale.getResponse().header(HttpHeaders.ETAG));
+
+        client.toBlocking().exchange(HttpRequest.POST("/pipeline/delete", dto)
+                .header(HttpHeaders.IF_MATCH, updated.header(HttpHeaders.ETAG)));
+    }
+
+    @Test
+    void serviceWithoutNameIsRejectedWith400() {
+        for (String name : Arrays.asList(null, " ", "null")) {
+            ServiceConfigurationDto dto = new ServiceConfigurationDto();
+            dto.setName(name);
+            for (String path : List.of("/pipeline/add", "/pipeline/delete")) {
+                HttpClientResponseException rejected = assertThrows(HttpClientResponseException.class,
+                        () -> client.toBlocking().exchange(HttpRequest.POST(path, dto)));
+                assertEquals(HttpStatus.BAD_REQUEST, rejected.getStatus(), path + " " + name);
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.krickert.search;
+
+import com.krickert.search.pipeline.PipelineConfig;
+import com.krickert.search.pipeline.PipelineOperation;
+import com.krickert.search.pipeline.PipelineSnapshot;
+import com.krickert.search.pipeline.PreconditionFailedException;
+import com.krickert.search.pipeline.ServiceConfiguration;
+import com.krickert.search.pipeline.ServiceConfigurationDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptimisticConcurrencyTest {
+
+    private static final int WRITERS = 8;
+    private static final int INCREMENTS_PER_WRITER = 250;
+
+    @Test
+    void conditionalReadModifyWriteLosesNoUpdates() throws Exception {
+        PipelineConfig config = new PipelineConfig("occ");
+        config.setService(Map.of("counter", ServiceConfiguration.of("counter", List.of("0"), null, null),
+                "other", ServiceConfiguration.of("other", null, null, null)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int w = 0; w < WRITERS; w++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < INCREMENTS_PER_WRITER; i++) {
+                        while (true) {
+                            PipelineSnapshot read = config.snapshot();
+                            int count = Integer.parseInt(read.services().get("counter").getKafkaListenTopics().get(0));
+                            String etag = EntityTags.version("occ", "counter", read.serviceVersion("counter"));
+                            try {
+                                config.addOrUpdateService(dto("counter", String.valueOf(count + 1)), etag);
+                                break;
+                            } catch (PreconditionFailedException e) {
+                                // Someone else incremented first; re-read and retry.
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            // Unconditional edits of another service must not conflict with the counter.
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < INCREMENTS_PER_WRITER; i++) {
+                    config.addOrUpdateService(dto("other", "x" + i));
+                }
+                return null;
+            }));
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int expected = WRITERS * INCREMENTS_PER_WRITER;
+        assertEquals(String.valueOf(expected), config.getService().get("counter").getKafkaListenTopics().get(0));
+        // One version per successful write: nothing failed with 412 was published.
+        assertEquals(1 + expected + INCREMENTS_PER_WRITER, config.getVersion());
+        long counterVersion = config.snapshot().serviceVersion("counter");
+        assertTrue(counterVersion > expected && counterVersion <= config.getVersion());
+    }
+
+    @Test
+    void preconditionsAreCheckedPerServiceAndPerPipeline() {
+        PipelineConfig config = new PipelineConfig("occ");
+        config.setService(Map.of("a", ServiceConfiguration.of("a", null, null, null),
+                "b", ServiceConfiguration.of("b", null, null, null)));
+        String aTag = EntityTags.version("occ", "a", config.snapshot().serviceVersion("a"));
+        String pipelineTag = EntityTags.version("occ", config.getVersion());
+
+        config.addOrUpdateService(dto("b", "t"));
+        // If-Match uses strong comparison, so a weak copy of a good tag does not match.
+        assertThrows(PreconditionFailedException.class, () -> config.addOrUpdateService(dto("a", "t"), "W/" + aTag));
+        // b changed, a did not: a's tag is still good, the pipeline's is not.
+        config.addOrUpdateService(dto("a", "t"), aTag);
+        assertThrows(PreconditionFailedException.class, () -> config.addOrUpdateService(dto("a", "u"), aTag));
+        assertThrows(PreconditionFailedException.class, () -> config.deleteService("missing", "*"));
+        assertThrows(PreconditionFailedException.class, () -> config.applyBatch(List.of(delete("a")), pipelineTag));
+
+        long version = config.getVersion();
+        assertTrue(config.applyBatch(List.of(delete("a")), EntityTags.version("occ", version)).applied());
+        assertFalse(config.containsService("a"));
+    }
+
+    @Test
+    void tagsOfAnotherPipelineOrServiceDoNotMatch() {
+        PipelineConfig config = new PipelineConfig("occ");
+        config.setService(Map.of("a", ServiceConfiguration.of("a", null, null, null),
+                "b", ServiceConfiguration.of("b", null, null, null)));
+        long aVersion = config.snapshot().serviceVersion("a");
+        // Same version numbers, different scope.
+        assertThrows(PreconditionFailedException.class,
+                () -> config.addOrUpdateService(dto("a", "t"), EntityTags.version("other", "a", aVersion)));
+        assertThrows(PreconditionFailedException.class,
+                () -> config.addOrUpdateService(dto("b", "t"), EntityTags.version("occ", "a", aVersion)));
+        assertThrows(PreconditionFailedException.class,
+                () -> config.applyBatch(List.of(delete("a")), EntityTags.version("other", config.getVersion())));
+        // The bare version tags of earlier releases are not accepted either.
+        assertThrows(PreconditionFailedException.class,
+                () -> config.addOrUpdateService(dto("a", "t"), "\"v" + aVersion + '"'));
+
+        config.addOrUpdateService(dto("a", "t"), EntityTags.version("occ", "a", aVersion));
+    }
+
+    private static ServiceConfigurationDto dto(String name, String listen) {
+        ServiceConfigurationDto dto = new ServiceConfigurationDto();
+        dto.setName(name);
+        dto.setKafkaListenTopics(List.of(listen));
+        return dto;
+    }
+
+    private static PipelineOperation delete(String name) {
+        PipelineOperation operation = new PipelineOperation();
+        operation.setOp(PipelineOperation.Type.DELETE);
+        operation.setName(name);
+        return operation;
+    }
+}
@@ -0,0 +1,70 @@
+package com.krickert.search;
+
+import com.krickert.search.pipeline.PersistentServiceMap;
+import com.krickert.search.pipeline.ServiceConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentServiceMapTest {
+
+    @Test
+    void behavesLikeAHashMapUnderRandomEdits() {
+        Random random = new Random(42);
+        Map<String, ServiceConfiguration> expected = new HashMap<>();
+        PersistentServiceMap map = PersistentServiceMap.empty();
+        for (int i = 0; i < 20_000; i++) {
+            String name = "service-" + random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(name);
+                map = map.minus(name);
+            } else {
+                ServiceConfiguration config = new ServiceConfiguration(name);
+                expected.put(name, config);
+                map = map.plus(name, config, i);
+            }
+        }
+        assertEquals(expected, map);
+        assertEquals(expected.size(), map.size());
+        map.forEach((name, config) -> assertSame(expected.get(name), config));
+    }
+
+    @Test
+    void keepsCollidingNamesApart() {
+        // "Aa" and "BB" have the same String hash code.
+        ServiceConfiguration aa = new ServiceConfiguration("Aa");
+        ServiceConfiguration bb = new ServiceConfiguration("BB");
+        PersistentServiceMap map = PersistentServiceMap.empty().plus("Aa", aa, 1).plus("BB", bb, 2);
+        assertSame(aa, map.get("Aa"));
+        assertSame(bb, map.get("BB"));
+        assertEquals(1, map.minus("Aa").size());
+        assertSame(bb, map.minus("Aa").get("BB"));
+    }
+
+    @Test
+    void editsLeaveEarlierVersionsIntactAndDiffOnlyTheChanges() {
+        PersistentServiceMap base = PersistentServiceMap.empty();
+        for (int i = 0; i < 10_000; i++) {
+            base = base.plus("s" + i, new ServiceConfiguration("s" + i), 1);
+        }
+        ServiceConfiguration replaced = new ServiceConfiguration("s7");
+        PersistentServiceMap next = base.minus("s3").plus("s7", replaced, 2).plus("new", new ServiceConfiguration("new"), 2);
+
+        assertTrue(base.containsKey("s3"));
+        assertFalse(base.containsKey("new"));
+        assertNotSame(replaced, base.get("s7"));
+        assertSame(base, base.plus("s1", base.get("s1"), 3));
+        assertEquals(1, next.versionOf("s1"));
+        assertEquals(2, next.versionOf("s7"));
+        assertEquals(-1, next.versionOf("s3"));
+
+        Map<String, String> changes = new HashMap<>();
+        PersistentServiceMap.diff(base, next, (name, before, after) ->
+                changes.put(name, before == null ? "added" : after == null ? "removed" : "updated"));
+        assertEquals(Map.of("s3", "removed", "s7", "updated", "new", "added"), changes);
+    }
+}
@@ -0,0 +1,80 @@
+package com.krickert.search;
+
+import com.krickert.search.pipeline.PipelineConfig;
+import com.krickert.search.pipeline.ServiceConfiguration;
+import com.krickert.search.pipeline.analysis.PipelineAnalysis;
+import com.krickert.search.pipeline.analysis.PipelineAnalyzer;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineAnalyzerTest {
+
+    @Test
+    void findsCyclesUnreachableServicesAndDanglingTopics() {
+        Map<String, ServiceConfiguration> services = new LinkedHashMap<>();
+        services.put("importer", ServiceConfiguration.of("importer", null, List.of("input"), null));
+        services.put("chunker", ServiceConfiguration.of("chunker", List.of("input", "external"), List.of("chunks"), null));
+        services.put("embedder", ServiceConfiguration.of("embedder", List.of("chunks"), List.of("unused"), List.of("ghost")));
+        // loop-a and loop-b forward to each other and nothing reaches them.
+        services.put("loop-a", ServiceConfiguration.of("loop-a", null, null, List.of("loop-b")));
+        services.put("loop-b", ServiceConfiguration.of("loop-b", null, null, List.of("LOOP-A")));
+        services.put("lonely", ServiceConfiguration.of("lonely", null, null, null));
+        PipelineConfig config = new PipelineConfig("analysis");
+        config.setService(services);
+
+        PipelineAnalysis analysis = PipelineAnalyzer.analyze(config.snapshot());
+
+        assertEquals(1, analysis.cycles().size());
+        assertEquals(List.of("loop-a", "loop-b"), analysis.cycles().get(0).services());
+        assertEquals(List.of("importer", "lonely"), analysis.entryServices());
+        assertEquals(List.of("lonely"), analysis.isolatedServices());
+        assertEquals(List.of("loop-a", "loop-b"), analysis.unreachableServices());
+        assertEquals(List.of("unused"), analysis.deadTopics());
+        assertEquals(List.of("external"), analysis.orphanTopics());
+        assertEquals(List.of(new PipelineAnalysis.Forward("embedder", "ghost")), analysis.danglingForwards());
+        assertFalse(analysis.healthy());
+    }
+
+    @Test
+    void servicesFedByExternalTopicsAreReachable() {
+        Map<String, ServiceConfiguration> services = new LinkedHashMap<>();
+        // raw-feed is published by something outside the pipeline.
+        services.put("ingest", ServiceConfiguration.of("ingest", List.of("raw-feed"), List.of("parsed"), null));
+        services.put("indexer", ServiceConfiguration.of("indexer", List.of("parsed"), null, List.of("notifier")));
+        services.put("notifier", ServiceConfiguration.of("notifier", null, null, null));
+        PipelineConfig config = new PipelineConfig("external");
+        config.setService(services);
+
+        PipelineAnalysis analysis = PipelineAnalyzer.analyze(config.snapshot());
+
+        assertEquals(List.of("ingest"), analysis.entryServices());
+        assertTrue(analysis.unreachableServices().isEmpty(), () -> "unreachable: " + analysis.unreachableServices());
+        assertTrue(analysis.isolatedServices().isEmpty());
+        assertEquals(List.of("raw-feed"), analysis.orphanTopics());
+    }
+
+    @Test
+    void detectsKafkaLoopsAndHandlesLongChainsWithoutRecursion() {
+        Map<String, ServiceConfiguration> services = new LinkedHashMap<>();
+        int length = 200_000;
+        for (int i = 0; i < length; i++) {
+            services.put("svc-" + i, ServiceConfiguration.of("svc-" + i,
+                    List.of("topic-" + i), List.of("topic-" + ((i + 1) % length)), null));
+        }
+        PipelineConfig config = new PipelineConfig("ring");
+        config.setService(services);
+
+        PipelineAnalysis analysis = PipelineAnalyzer.analyze(config.snapshot());
+
+        assertEquals(1, analysis.cycles().size());
+        assertEquals(length, analysis.cycles().get(0).services().size());
+        assertEquals(length, analysis.cycles().get(0).topics().size());
+        assertTrue(analysis.entryServices().isEmpty());
+        assertEquals(length, analysis.unreachableServices().size());
+    }
+}
@@ -0,0 +1,81 @@
+package com.krickert.search;
+
+import com.krickert.search.pipeline.PipelineBatchResult;
+import com.krickert.search.pipeline.PipelineConfig;
+import com.krickert.search.pipeline.PipelineOperation;
+import com.krickert.search.pipeline.PipelineOperationResult;
+import com.krickert.search.pipeline.ServiceConfigurationDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineBatchTest {
+
+    private PipelineConfig config;
+
+    @BeforeEach
+    void setUp() {
+        config = new PipelineConfig("pipeline1");
+        config.setService(Map.of());
+    }
+
+    @Test
+    void batchIsPublishedAsSingleVersion() {
+        long before = config.getVersion();
+        PipelineBatchResult result = config.applyBatch(List.of(
+                op(PipelineOperation.Type.ADD, service("chunker", List.of("input"), List.of("chunks"), List.of("embedder"))),
+                op(PipelineOperation.Type.UPDATE, service("embedder", List.of("chunks"), List.of("vectors"), List.of())),
+                op(PipelineOperation.Type.ADD, service("tmp", List.of(), List.of(), List.of())),
+                delete("tmp")));
+
+        assertTrue(result.applied());
+        assertEquals(before + 1, result.version());
+        assertEquals(before + 1, config.getVersion());
+        assertTrue(result.results().stream().allMatch(r -> r.status() == PipelineOperationResult.Status.APPLIED));
+        assertEquals(List.of("vectors"), config.getService().get("embedder").getKafkaPublishTopics());
+        assertFalse(config.containsService("tmp"));
+    }
+
+    @Test
+    void failingOperationRejectsWholeBatch() {
+        long before = config.getVersion();
+        PipelineBatchResult result = config.applyBatch(List.of(
+                op(PipelineOperation.Type.ADD, service("chunker", List.of(), List.of(), List.of())),
+                delete("missing")));
+
+        assertFalse(result.applied());
+        assertEquals(before, config.getVersion());
+        assertFalse(config.containsService("chunker"));
+        assertEquals(PipelineOperationResult.Status.NOT_APPLIED, result.results().get(0).status());
+        assertEquals(PipelineOperationResult.Status.FAILED, result.results().get(1).status());
+        assertNotNull(result.results().get(1).message());
+    }
+
+    private static PipelineOperation op(PipelineOperation.Type type, ServiceConfigurationDto dto) {
+        PipelineOperation operation = new PipelineOperation();
+        operation.setOp(type);
+        operation.setService(dto);
+        return operation;
+    }
+
+    private static PipelineOperation delete(String name) {
+        PipelineOperation operation = new PipelineOperation();
+        operation.setOp(PipelineOperation.Type.DELETE);
+        operation.setName(name);
+        return operation;
+    }
+
+    private static ServiceConfigurationDto service(String name, List<String> listen, List<String> publish,
+                                                   List<String> forward) {
+        ServiceConfigurationDto dto = new ServiceConfigurationDto();
+        dto.setName(name);
+        dto.setKafkaListenTopics(listen);
+        dto.setKafkaPublishTopics(publish);
+        dto.setGrpcForwardTo(forward);
+        return dto;
+    }
+}
@@ -0,0 +1,120 @@
+package com.krickert.search;
+
+import com.krickert.search.pipeline.PipelineConfig;
+import com.krickert.search.pipeline.ServiceConfigurationDto;
+import com.krickert.search.pipeline.events.PipelineChangeEvent;
+import com.krickert.search.pipeline.events.PipelineChangeFeed;
+import com.krickert.search.pipeline.events.ServiceDelta;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineChangeFeedTest {
+
+    @Test
+    void feedReplaysDeltasAfterLastSeenVersion() {
+        PipelineChangeFeed feed = new PipelineChangeFeed(100);
+        PipelineConfig config = new PipelineConfig("pipeline1");
+        config.setService(Map.of());
+        config.addChangeListener(feed::onPipelineChange);
+        long seen = config.getVersion();
+
+        config.addOrUpdateService(dto("chunker", List.of("embedder")));
+        config.deleteService("embedder");
+
+        List<PipelineChangeEvent> events = feed.events("pipeline1", seen, config.getVersion())
+                .take(2)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertNotNull(events);
+        assertEquals(seen + 1, events.get(0).version());
+        assertEquals(seen, events.get(0).previousVersion());
+        assertEquals(2, events.get(0).deltas().size(), "chunker plus its forward-to placeholder");
+        assertTrue(events.get(0).deltas().stream().allMatch(d -> d.type() == ServiceDelta.Type.ADDED));
+
+        PipelineChangeEvent delete = events.get(1);
+        assertEquals(seen + 2, delete.version());
+        ServiceDelta updated = delete.deltas().stream()
+                .filter(d -> d.name().equals("chunker")).findFirst().orElseThrow();
+        assertEquals(ServiceDelta.Type.UPDATED, updated.type());
+        assertTrue(updated.service().getGrpcForwardTo().isEmpty());
+        assertTrue(delete.deltas().stream()
+                .anyMatch(d -> d.name().equals("embedder") && d.type() == ServiceDelta.Type.REMOVED));
+    }
+
+    @Test
+    void clientBehindRetainedHistoryGetsReset() {
+        PipelineChangeFeed feed = new PipelineChangeFeed(2);
+        PipelineConfig config = new PipelineConfig("pipeline1");
+        config.addChangeListener(feed::onPipelineChange);
+        for (int i = 0; i < 5; i++) {
+            config.addOrUpdateService(dto("svc-" + i, List.of()));
+        }
+
+        PipelineChangeEvent first = feed.events("pipeline1", 0, config.getVersion())
+                .blockFirst(Duration.ofSeconds(5));
+
+        assertNotNull(first);
+        assertTrue(first.reset());
+        assertEquals(config.getVersion(), first.version());
+    }
+
+    @Test
+    void clientAheadOfCurrentVersionGetsReset() {
+        // After a restart versions count from the start again, so a reconnecting client's
+        // ?since= can be ahead of anything this feed has published.
+        PipelineChangeFeed feed = new PipelineChangeFeed(100);
+        PipelineConfig config = new PipelineConfig("pipeline1");
+        config.addChangeListener(feed::onPipelineChange);
+        config.addOrUpdateService(dto("svc-0", List.of()));
+
+        PipelineChangeEvent first = feed.events("pipeline1", 42, config.getVersion())
+                .blockFirst(Duration.ofSeconds(5));
+
+        assertNotNull(first);
+        assertTrue(first.reset());
+        assertEquals(config.getVersion(), first.version());
+    }
+
+    @Test
+    void eventIdFromAnotherEpochGetsReset() {
+        PipelineChangeFeed feed = new PipelineChangeFeed(100);
+        PipelineConfig config = new PipelineConfig("pipeline1");
+        config.addChangeListener(feed::onPipelineChange);
+        long seen = config.getVersion();
+        config.addOrUpdateService(dto("svc-0", List.of()));
+        config.addOrUpdateService(dto("svc-1", List.of()));
+
+        PipelineChangeEvent next = feed.events("pipeline1", seen, config.getVersion())
+                .blockFirst(Duration.ofSeconds(5));
+        assertNotNull(next);
+        // An id issued by this process resumes right after its version.
+        assertEquals(next.version(), PipelineChangeFeed.resumeVersion(PipelineChangeFeed.eventId(next)));
+
+        // The same version from another run, or a bare version from an older release, is not
+        // a resume point: versions start over on restart.
+        for (String id : List.of("other:" + seen, Long.toString(seen))) {
+            PipelineChangeEvent first = feed.events("pipeline1", PipelineChangeFeed.resumeVersion(id), config.getVersion())
+                    .blockFirst(Duration.ofSeconds(5));
+            assertNotNull(first);
+            assertTrue(first.reset(), id);
+            assertEquals(config.getVersion(), first.version());
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> PipelineChangeFeed.resumeVersion("abc"));
+        assertThrows(IllegalArgumentException.class, () -> PipelineChangeFeed.resumeVersion("abc:x"));
+        assertThrows(IllegalArgumentException.class, () -> PipelineChangeFeed.resumeVersion("abc:-1"));
+    }
+
+    private static ServiceConfigurationDto dto(String name, List<String> forward) {
+        ServiceConfigurationDto dto = new ServiceConfigurationDto();
+        dto.setName(name);
+        dto.setGrpcForwardTo(forward);
+        return dto;
+    }
+}
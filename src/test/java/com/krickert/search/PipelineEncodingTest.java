@@ -0,0 +1,83 @@
+package com.krickert.search;
+
+import com.krickert.search.pipeline.ServiceConfiguration;
+import com.krickert.search.pipeline.render.PipelineEncoding;
+import io.micronaut.core.type.Argument;
+import io.micronaut.http.HttpHeaders;
+import io.micronaut.http.HttpRequest;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.client.HttpClient;
+import io.micronaut.http.client.annotation.Client;
+import io.micronaut.serde.ObjectMapper;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@MicronautTest
+class PipelineEncodingTest {
+
+    private static final Argument<Map<String, ServiceConfiguration>> SERVICES =
+            Argument.mapOf(String.class, ServiceConfiguration.class);
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    @Client("/")
+    HttpClient client;
+
+    @Test
+    void binaryEncodingsRoundTripAndBeatJsonOnSize() throws Exception {
+        Map<String, ServiceConfiguration> services = new LinkedHashMap<>();
+        for (int i = 0; i < 2_000; i++) {
+            services.put("document-enrichment-service-" + i, ServiceConfiguration.of("document-enrichment-service-" + i,
+                    List.of("enriched-documents-topic-" + i, "shared-input-documents-topic"),
+                    List.of("enriched-documents-topic-" + (i + 1)),
+                    i % 3 == 0 ? null : List.of("document-enrichment-service-" + (i + 1))));
+        }
+        byte[] json = objectMapper.writeValueAsBytes(SERVICES, services);
+        Map<String, ServiceConfiguration> fromJson = objectMapper.readValue(json, SERVICES);
+
+        for (PipelineEncoding encoding : PipelineEncoding.values()) {
+            byte[] encoded = encoding.encode(objectMapper, services);
+            Map<String, ServiceConfiguration> decoded = encoding.decode(objectMapper, encoded);
+
+            assertEquals(fromJson.keySet(), decoded.keySet(), encoding.name());
+            fromJson.forEach((name, expected) -> {
+                ServiceConfiguration actual = decoded.get(name);
+                assertEquals(expected.getKafkaListenTopics(), actual.getKafkaListenTopics());
+                assertEquals(expected.getKafkaPublishTopics(), actual.getKafkaPublishTopics());
+                assertEquals(expected.getGrpcForwardTo(), actual.getGrpcForwardTo());
+            });
+            assertTrue(encoded.length < json.length,
+                    encoding + " (" + encoded.length + " bytes) should be smaller than JSON (" + json.length + " bytes)");
+        }
+    }
+
+    @Test
+    void pipelineEndpointNegotiatesCbor() throws Exception {
+        HttpResponse<byte[]> response = client.toBlocking().exchange(
+                HttpRequest.GET("/pipelines/pipeline1").header(HttpHeaders.ACCEPT, PipelineEncoding.CBOR_TYPE),
+                byte[].class);
+
+        assertEquals(PipelineEncoding.CBOR_TYPE, response.getContentType().orElseThrow().toString());
+        Map<String, ServiceConfiguration> decoded = PipelineEncoding.CBOR.decode(objectMapper, response.body());
+        assertTrue(decoded.containsKey("chunker"));
+    }
+
+    @Test
+    void acceptHeaderPrefersJsonUnlessBinaryRanksHigher() {
+        assertNull(PipelineEncoding.negotiate(null));
+        assertNull(PipelineEncoding.negotiate("application/json, application/cbor"));
+        assertNull(PipelineEncoding.negotiate("*/*"));
+        assertEquals(PipelineEncoding.CBOR, PipelineEncoding.negotiate("application/cbor, */*"));
+        assertEquals(PipelineEncoding.SMILE, PipelineEncoding.negotiate("application/json;q=0.5, application/x-jackson-smile"));
+        assertNull(PipelineEncoding.negotiate("application/cbor;q=0, application/json"));
+    }
+}
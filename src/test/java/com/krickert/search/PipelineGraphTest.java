@@ -0,0 +1,78 @@
+package com.krickert.search;
+
+import com.krickert.search.pipeline.PipelineGraph;
+import com.krickert.search.pipeline.PipelineSnapshot;
+import com.krickert.search.pipeline.ServiceConfiguration;
+import com.krickert.search.pipeline.SymbolTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineGraphTest {
+
+    @Test
+    void graphRoundTripsServicesAndInternsNames() {
+        Map<String, ServiceConfiguration> services = new LinkedHashMap<>();
+        services.put("chunker", ServiceConfiguration.of("chunker", List.of("input", "tika"), List.of("chunks"), null));
+        services.put("embedder", ServiceConfiguration.of("embedder", List.of("chunks"), List.of(), List.of("indexer")));
+        services.put("indexer", ServiceConfiguration.of("indexer", List.of("chunks"), null, List.of()));
+
+        PipelineGraph graph = PipelineGraph.of(services);
+
+        // chunker, input, tika, chunks, embedder, indexer
+        assertEquals(6, graph.symbols().size());
+        assertEquals(4, graph.edgeCount(PipelineGraph.Relation.LISTEN));
+        assertEquals(1, graph.serviceIndex("embedder"));
+        assertEquals(-1, graph.serviceIndex("chunks"));
+
+        Map<String, ServiceConfiguration> view = graph.services();
+        assertEquals(services.keySet(), view.keySet());
+        services.forEach((name, expected) -> {
+            ServiceConfiguration actual = view.get(name);
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getKafkaListenTopics(), actual.getKafkaListenTopics());
+            assertEquals(expected.getKafkaPublishTopics(), actual.getKafkaPublishTopics());
+            assertEquals(expected.getGrpcForwardTo(), actual.getGrpcForwardTo());
+        });
+        assertNull(view.get("indexer").getKafkaPublishTopics());
+        assertEquals(List.of(), view.get("indexer").getGrpcForwardTo());
+        assertSame(graph.names(PipelineGraph.Relation.LISTEN, 1).get(0),
+                graph.names(PipelineGraph.Relation.LISTEN, 2).get(0));
+    }
+
+    @Test
+    void snapshotLineageSharesOneInstancePerName() {
+        // Distinct instances, as two JSON requests or property values would produce.
+        Map<String, ServiceConfiguration> services = new LinkedHashMap<>();
+        services.put("embedder", ServiceConfiguration.of(new String("embedder"),
+                List.of(new String("chunks")), null, null));
+        PipelineSnapshot first = PipelineSnapshot.of("pipeline1", 1, services);
+
+        PipelineSnapshot.Builder builder = first.toBuilder();
+        builder.put(ServiceConfiguration.of("indexer", List.of(new String("chunks")), null,
+                List.of(new String("embedder"))));
+        PipelineSnapshot second = builder.build();
+
+        ServiceConfiguration embedder = second.services().get("embedder");
+        ServiceConfiguration indexer = second.services().get("indexer");
+        assertSame(embedder.getKafkaListenTopics().get(0), indexer.getKafkaListenTopics().get(0));
+        assertSame(embedder.getName(), indexer.getGrpcForwardTo().get(0));
+        assertSame(first.services().get("embedder"), embedder);
+    }
+
+    @Test
+    void symbolTableGrowsPastItsInitialCapacity() {
+        SymbolTable symbols = new SymbolTable(1);
+        for (int i = 0; i < 100; i++) {
+            String name = symbols.canonical("service-" + i);
+            assertSame(name, symbols.canonical(new String("service-" + i)));
+            assertEquals(i, symbols.idOf(name));
+        }
+        assertEquals(100, symbols.size());
+        assertEquals("service-42", symbols.name(42));
+    }
+}
@@ -0,0 +1,80 @@
+package com.krickert.search;
+
+import com.krickert.search.pipeline.PipelineConfig;
+import com.krickert.search.pipeline.PipelineDiff;
+import com.krickert.search.pipeline.ServiceConfiguration;
+import com.krickert.search.pipeline.ServiceConfigurationDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineHistoryTest {
+
+    @Test
+    void diffReportsOnlyTheServicesThatChanged() {
+        PipelineConfig config = pipeline();
+        long v1 = config.getVersion();
+        config.addOrUpdateService(dto("embedder", List.of("chunks"), List.of("vectors")));
+        config.addOrUpdateService(dto("indexer", List.of("vectors"), List.of()));
+        config.deleteService("audit");
+        // Re-saving a service unchanged is not a change.
+        config.addOrUpdateService(dto("chunker", List.of("input"), List.of("chunks")));
+
+        PipelineDiff diff = config.diff(v1, config.getVersion());
+
+        assertEquals(List.of("audit", "embedder", "indexer"), diff.changes().stream().map(PipelineDiff.Change::name).toList());
+        assertEquals(PipelineDiff.Type.REMOVED, diff.changes().get(0).type());
+        assertEquals(PipelineDiff.Type.UPDATED, diff.changes().get(1).type());
+        assertEquals(List.of("vectors"), diff.changes().get(1).after().getKafkaPublishTopics());
+        assertEquals(PipelineDiff.Type.ADDED, diff.changes().get(2).type());
+    }
+
+    @Test
+    void rollbackRestoresAnEarlierVersionAsANewVersion() {
+        PipelineConfig config = pipeline();
+        long v1 = config.getVersion();
+        config.deleteService("audit");
+        config.addOrUpdateService(dto("embedder", List.of("other"), List.of()));
+
+        PipelineDiff applied = config.rollback(v1);
+
+        assertEquals(v1 + 3, config.getVersion());
+        assertEquals(v1 + 3, applied.to());
+        assertEquals(List.of("audit", "embedder"), applied.changes().stream().map(PipelineDiff.Change::name).toList());
+        assertTrue(config.diff(v1, config.getVersion()).changes().isEmpty());
+        assertTrue(config.containsService("audit"));
+    }
+
+    @Test
+    void historyIsBounded() {
+        PipelineConfig config = pipeline();
+        config.retainHistory(4);
+        for (int i = 0; i < 10; i++) {
+            config.addOrUpdateService(dto("svc" + i, List.of(), List.of()));
+        }
+        assertEquals(4, config.history().revisions().size());
+        assertNull(config.diff(1, config.getVersion()));
+        assertNull(config.rollback(1));
+        assertNotNull(config.diff(config.getVersion() - 3, config.getVersion()));
+    }
+
+    private static PipelineConfig pipeline() {
+        PipelineConfig config = new PipelineConfig("history");
+        config.setService(Map.of(
+                "chunker", ServiceConfiguration.of("chunker", List.of("input"), List.of("chunks"), null),
+                "embedder", ServiceConfiguration.of("embedder", List.of("chunks"), null, null),
+                "audit", ServiceConfiguration.of("audit", List.of("chunks"), null, null)));
+        return config;
+    }
+
+    private static ServiceConfigurationDto dto(String name, List<String> listen, List<String> publish) {
+        ServiceConfigurationDto dto = new ServiceConfigurationDto();
+        dto.setName(name);
+        dto.setKafkaListenTopics(listen);
+        dto.setKafkaPublishTopics(publish);
+        return dto;
+    }
+}
@@ -0,0 +1,140 @@
+package com.krickert.search;
+
+import com.krickert.search.pipeline.PipelineConfig;
+import com.krickert.search.pipeline.PipelineDiff;
+import com.krickert.search.pipeline.PipelineExecution;
+import com.krickert.search.pipeline.PipelineSnapshot;
+import com.krickert.search.pipeline.ServiceConfigurationDto;
+import com.krickert.search.pipeline.journal.PipelineJournal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.testcontainers.shaded.org.awaitility.Awaitility;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void restartRecoversSnapshotAndTail() throws Exception {
+        PipelineConfig pipeline = new PipelineConfig("pipeline1");
+        PipelineJournal journal = open(25);
+        pipeline.addChangeListener(journal::onPipelineChange);
+        for (int i = 0; i < 200; i++) {
+            PipelineSnapshot snapshot = i % 7 == 6
+                    ? pipeline.deleteService("svc-" + (i - 3))
+                    : pipeline.addOrUpdateService(dto("svc-" + i, "topic-" + i, "svc-" + (i + 1)));
+            journal.awaitDurable(snapshot.name(), snapshot.version());
+        }
+        // Snapshots are written in the background.
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> {
+            try (Stream<Path> files = Files.list(directory)) {
+                return files.anyMatch(file -> file.getFileName().toString().endsWith(".snap"));
+            }
+        });
+        journal.close();
+
+        PipelineJournal restarted = open(25);
+        assertSameServices(pipeline.snapshot(), restarted);
+        restarted.close();
+    }
+
+    @Test
+    void tornTailIsCutOffOnRecovery() throws Exception {
+        PipelineConfig pipeline = new PipelineConfig("pipeline1");
+        PipelineJournal journal = open(1_000);
+        pipeline.addChangeListener(journal::onPipelineChange);
+        for (int i = 0; i < 10; i++) {
+            PipelineSnapshot snapshot = pipeline.addOrUpdateService(dto("svc-" + i, "topic-" + i, null));
+            journal.awaitDurable(snapshot.name(), snapshot.version());
+        }
+        journal.close();
+
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.getFileName().toString().endsWith(".log")).findFirst().orElseThrow();
+        }
+        long validLength = Files.size(segment);
+        // A frame header promising more bytes than were written, as a crash mid-append leaves it.
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 1, 0, 12, 34, 56, 78, 1, 2, 3}));
+        }
+
+        PipelineJournal restarted = open(1_000);
+        assertSameServices(pipeline.snapshot(), restarted);
+        assertEquals(validLength, Files.size(segment));
+
+        // Appends continue after the cut, and survive another restart.
+        PipelineConfig recovered = new PipelineConfig("pipeline1");
+        recovered.setService(restarted.pipelines().get("pipeline1"));
+        recovered.addChangeListener(restarted::onPipelineChange);
+        PipelineSnapshot next = recovered.addOrUpdateService(dto("svc-10", "topic-10", null));
+        restarted.awaitDurable(next.name(), next.version());
+        restarted.close();
+
+        PipelineJournal again = open(1_000);
+        assertSameServices(recovered.snapshot(), again);
+        again.close();
+    }
+
+    @Test
+    void nullListElementsAreNotJournaled() throws Exception {
+        PipelineConfig pipeline = new PipelineConfig("pipeline1");
+        PipelineJournal journal = open(1_000);
+        pipeline.addChangeListener(journal::onPipelineChange);
+        ServiceConfigurationDto dto = dto("svc-0", "topic-0", null);
+        // As posted to /pipeline/add with {"kafkaListenTopics": ["topic-0", null], "grpcForwardTo": [null]}.
+        dto.setKafkaListenTopics(Arrays.asList("topic-0", null));
+        dto.setGrpcForwardTo(Arrays.asList((String) null));
+        PipelineSnapshot snapshot = pipeline.addOrUpdateService(dto);
+        journal.awaitDurable(snapshot.name(), snapshot.version());
+        assertEquals(List.of("topic-0"), snapshot.services().get("svc-0").getKafkaListenTopics());
+
+        // The writer is still running for the next change.
+        PipelineSnapshot next = pipeline.addOrUpdateService(dto("svc-1", "topic-1", null));
+        journal.awaitDurable(next.name(), next.version());
+        journal.close();
+
+        PipelineJournal restarted = open(1_000);
+        assertSameServices(pipeline.snapshot(), restarted);
+        restarted.close();
+    }
+
+    private PipelineJournal open(long snapshotEvery) throws Exception {
+        PipelineJournal journal = new PipelineJournal(new PipelineExecution("platform", 1), new SimpleMeterRegistry(),
+                directory.toString(), true, snapshotEvery, 64, 1_000, Duration.ofSeconds(5));
+        journal.open();
+        return journal;
+    }
+
+    private static void assertSameServices(PipelineSnapshot expected, PipelineJournal journal) {
+        PipelineSnapshot recovered = PipelineSnapshot.of(expected.name(), 0,
+                journal.pipelines().get(expected.name()));
+        PipelineDiff diff = PipelineDiff.between(recovered, expected);
+        assertEquals(expected.services().size(), recovered.services().size());
+        assertTrue(diff.changes().isEmpty(), () -> "recovered pipeline differs: " + diff.changes());
+    }
+
+    private static ServiceConfigurationDto dto(String name, String topic, String forwardTo) {
+        ServiceConfigurationDto dto = new ServiceConfigurationDto();
+        dto.setName(name);
+        dto.setKafkaListenTopics(List.of(topic));
+        dto.setKafkaPublishTopics(List.of(topic + "-out"));
+        dto.setGrpcForwardTo(forwardTo == null ? null : List.of(forwardTo));
+        return dto;
+    }
+}
@@ -0,0 +1,107 @@
+package com.krickert.search;
+
+import com.krickert.search.pipeline.PipelineConfig;
+import com.krickert.search.pipeline.PipelineVersionCache;
+import com.krickert.search.pipeline.render.PipelineJson;
+import com.krickert.search.pipeline.render.PipelineJsonService;
+import io.micronaut.runtime.server.EmbeddedServer;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@MicronautTest
+class PipelineJsonCacheTest {
+
+    @Inject
+    EmbeddedServer server;
+
+    @Inject
+    PipelineJsonService jsonService;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @Test
+    void servesPreEncodedGzipAndNotModified() throws Exception {
+        HttpResponse<byte[]> plain = http.send(request("/pipelines/pipeline1").build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, plain.statusCode());
+        String etag = plain.headers().firstValue("ETag").orElseThrow();
+        assertEquals("Accept, Accept-Encoding", plain.headers().firstValue("Vary").orElseThrow());
+
+        HttpResponse<byte[]> gzip = http.send(request("/pipelines/pipeline1")
+                .header("Accept-Encoding", "gzip").build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals("gzip", gzip.headers().firstValue("Content-Encoding").orElseThrow());
+        assertNotEquals(etag, gzip.headers().firstValue("ETag").orElseThrow());
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip.body()))) {
+            assertArrayEquals(plain.body(), in.readAllBytes());
+        }
+
+        HttpResponse<byte[]> notModified = http.send(request("/pipelines/pipeline1")
+                .header("If-None-Match", etag).build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(304, notModified.statusCode());
+        assertTrue(new String(plain.body(), StandardCharsets.UTF_8).contains("\"chunker\""));
+    }
+
+    @Test
+    void concurrentMissesShareOneBuild() throws Exception {
+        PipelineConfig config = new PipelineConfig("json-cache");
+        config.setService(Map.of());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<PipelineJson>> calls = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                calls.add(() -> jsonService.render(config.snapshot()));
+            }
+            Set<PipelineJson> results = new HashSet<>();
+            for (Future<PipelineJson> future : executor.invokeAll(calls)) {
+                results.add(future.get());
+            }
+            assertEquals(1, results.size(), "every caller should get the same cached instance");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void acceptEncodingHonoursQualityZero() {
+        assertTrue(PipelineJsonService.acceptsGzip("gzip, deflate, br"));
+        assertTrue(PipelineJsonService.acceptsGzip("*"));
+        assertFalse(PipelineJsonService.acceptsGzip("gzip;q=0, br"));
+        assertFalse(PipelineJsonService.acceptsGzip("identity"));
+        assertFalse(PipelineJsonService.acceptsGzip(null));
+    }
+
+    @Test
+    void olderReaderDoesNotReplaceNewerEntry() {
+        PipelineVersionCache<String> cache = new PipelineVersionCache<>();
+        assertEquals("v5", cache.get("pipeline1", 5, () -> "v5"));
+
+        // A request still holding version 4 gets its own value, built but not cached.
+        assertEquals("v4", cache.get("pipeline1", 4, () -> "v4"));
+        assertEquals("v5", cache.get("pipeline1", 5, () -> "rebuilt"));
+        assertEquals("v6", cache.get("pipeline1", 6, () -> "v6"));
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(server.getURL() + path)).GET();
+    }
+}
@@ -0,0 +1,131 @@
+package com.krickert.search;
+
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.runtime.server.EmbeddedServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives an in-process server with an open-loop mix of editor page loads, pipeline polls and
+ * service edits against a synthetic pipeline, and reports latency percentiles per request kind.
+ * Full HdrHistogram distributions are written to {@code loadtest.report-dir}.
+ * <p>
+ * Opt-in: {@code ./gradlew loadTest}, tuned with system properties, e.g.
+ * {@code -Dloadtest.rate=2000 -Dloadtest.services=5000 -Dloadtest.mix=index:1,pipeline:8,add:1,delete:1}.
+ * <ul>
+ *     <li>{@code loadtest.rate}: requests started per second (default 500)</li>
+ *     <li>{@code loadtest.duration} / {@code loadtest.warmup}: seconds measured / discarded (30 / 5)</li>
+ *     <li>{@code loadtest.services}: services in the synthetic pipeline (1000)</li>
+ *     <li>{@code loadtest.mix}: relative weights of {@code index} ({@code GET /}), {@code pipeline}
+ *     ({@code GET /pipeline}), {@code add} and {@code delete} (index:1,pipeline:6,add:2,delete:1)</li>
+ *     <li>{@code loadtest.max-in-flight}: outstanding requests before new ones are dropped (10000)</li>
+ * </ul>
+ */
+@EnabledIfSystemProperty(named = "pipeline.loadtest", matches = "true")
+class PipelineLoadTest {
+
+    private static final String PIPELINE = "loadtest";
+
+    enum Request {
+        INDEX, PIPELINE, ADD, DELETE
+    }
+
+    @Test
+    void openLoopRequestMix() throws Exception {
+        double rate = Double.parseDouble(System.getProperty("loadtest.rate", "500"));
+        Duration duration = Duration.ofSeconds(Long.getLong("loadtest.duration", 30));
+        Duration warmup = Duration.ofSeconds(Long.getLong("loadtest.warmup", 5));
+        int services = Integer.getInteger("loadtest.services", 1000);
+        int maxInFlight = Integer.getInteger("loadtest.max-in-flight", 10_000);
+        Map<Request, Integer> mix = parseMix(System.getProperty("loadtest.mix", "index:1,pipeline:6,add:2,delete:1"));
+        Path reportDir = Path.of(System.getProperty("loadtest.report-dir", "build/reports/loadtest"));
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("pipeline.active", PIPELINE);
+        for (int i = 0; i < services; i++) {
+            String prefix = "pipeline.configs." + PIPELINE + ".service.svc-" + i + ".";
+            properties.put(prefix + "kafka-listen-topics", "topic-" + i);
+            properties.put(prefix + "kafka-publish-topics", "topic-" + (i + 1));
+            if (i + 1 < services) {
+                properties.put(prefix + "grpc-forward-to", "svc-" + (i + 1));
+            }
+        }
+
+        try (EmbeddedServer server = ApplicationContext.run(EmbeddedServer.class, properties);
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient http = HttpClient.newBuilder().executor(clients).build();
+            String base = server.getURL().toString();
+            LoadGenerator<Request> generator = new LoadGenerator<>(http, Request.class, mix,
+                    requests(base), maxInFlight);
+            LoadGenerator.Report<Request> report = generator.run(rate, warmup, duration);
+
+            report.printSummary(System.out, rate);
+            report.writeHistograms(reportDir);
+            System.out.println("Histograms written to " + reportDir.toAbsolutePath());
+            assertTrue(report.requests() > 0, "no request completed");
+        }
+    }
+
+    /**
+     * Edits add {@code load-<n>} services and deletes them again in the order they were added,
+     * so the pipeline stays near its configured size.
+     */
+    private static Map<Request, LongFunction<HttpRequest>> requests(String base) {
+        AtomicLong added = new AtomicLong();
+        AtomicLong deleted = new AtomicLong();
+        Map<Request, LongFunction<HttpRequest>> requests = new EnumMap<>(Request.class);
+        requests.put(Request.INDEX, sequence -> HttpRequest.newBuilder(URI.create(base + "/")).GET().build());
+        requests.put(Request.PIPELINE, sequence -> HttpRequest.newBuilder(URI.create(base + "/pipeline"))
+                .header("Accept", "application/json")
+                .GET().build());
+        requests.put(Request.ADD, sequence -> post(base + "/pipeline/add", service("load-" + added.getAndIncrement())));
+        requests.put(Request.DELETE, sequence -> {
+            long next = deleted.get();
+            // With nothing left to delete, the request takes the no-op path for a missing service.
+            if (next < added.get() && deleted.compareAndSet(next, next + 1)) {
+                return post(base + "/pipeline/delete", "{\"name\":\"load-" + next + "\"}");
+            }
+            return post(base + "/pipeline/delete", "{\"name\":\"load-missing\"}");
+        });
+        return requests;
+    }
+
+    private static String service(String name) {
+        return "{\"name\":\"" + name + "\",\"kafkaListenTopics\":[\"topic-1\"],\"kafkaPublishTopics\":[\"" + name + "-out\"]}";
+    }
+
+    private static HttpRequest post(String uri, String json) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private static Map<Request, Integer> parseMix(String mix) {
+        Map<Request, Integer> weights = new EnumMap<>(Request.class);
+        for (String part : mix.split(",")) {
+            String[] entry = part.trim().split(":");
+            if (entry.length != 2) {
+                throw new IllegalArgumentException("Expected <request>:<weight> in loadtest.mix, got " + part);
+            }
+            weights.put(Request.valueOf(entry[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(entry[1].trim()));
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,81 @@
+package com.krickert.search;
+
+import com.krickert.search.pipeline.PipelineChange;
+import com.krickert.search.pipeline.PipelineMetrics;
+import com.krickert.search.pipeline.PipelineSnapshot;
+import com.krickert.search.pipeline.ServiceConfiguration;
+import com.krickert.search.pipeline.ServiceConfigurationDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.http.HttpRequest;
+import io.micronaut.http.client.HttpClient;
+import io.micronaut.http.client.annotation.Client;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@MicronautTest
+class PipelineMetricsTest {
+
+    @Inject
+    @Client("/")
+    HttpClient client;
+
+    @Inject
+    PipelineMetrics metrics;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @Test
+    void prometheusEndpointExposesPipelineMetrics() {
+        client.toBlocking().retrieve("/");
+        client.toBlocking().retrieve("/pipeline");
+        ServiceConfigurationDto dto = new ServiceConfigurationDto();
+        dto.setName("metrics-probe");
+        dto.setKafkaListenTopics(List.of("enhanced-documents"));
+        client.toBlocking().exchange(HttpRequest.POST("/pipeline/add", dto));
+
+        String scrape = client.toBlocking().retrieve("/prometheus");
+
+        assertTrue(scrape.contains("pipeline_http_requests_seconds_count{endpoint=\"/pipeline\""), scrape);
+        assertTrue(scrape.contains("pipeline_http_requests_seconds_count{endpoint=\"/pipeline/add\""), scrape);
+        assertTrue(scrape.contains("pipeline_view_render_seconds_count{view=\"mermaid-editor\"}"), scrape);
+        assertTrue(scrape.contains("pipeline_json_payload_size_bytes_count"), scrape);
+        assertTrue(scrape.contains("pipeline_defaults_load_seconds_count"), scrape);
+        assertTrue(scrape.contains("pipeline_services{pipeline=\"pipeline1\"}"), scrape);
+        assertTrue(scrape.contains("pipeline_edges{pipeline=\"pipeline1\"}"), scrape);
+        assertTrue(scrape.contains("pipeline_mutations_total{pipeline=\"pipeline1\",source=\"local\",type=\"added\"}"), scrape);
+    }
+
+    @Test
+    void resetCountsOnlyTheServicesThatDiffer() {
+        PipelineSnapshot previous = PipelineSnapshot.of("metrics-reset", 1, Map.of(
+                "kept", ServiceConfiguration.of("kept", List.of("a"), null, null),
+                "changed", ServiceConfiguration.of("changed", List.of("a"), null, null),
+                "removed", ServiceConfiguration.of("removed", null, null, null)));
+        // Equal content in new instances, as a reload from the store produces.
+        PipelineSnapshot current = PipelineSnapshot.of("metrics-reset", 2, Map.of(
+                "kept", ServiceConfiguration.of("kept", List.of("a"), null, null),
+                "changed", ServiceConfiguration.of("changed", List.of("b"), null, null),
+                "added", ServiceConfiguration.of("added", null, null, null)));
+
+        metrics.onPipelineChange(new PipelineChange(previous, current, current.services().keySet(), true, true));
+
+        assertEquals(1.0, mutations("added"));
+        assertEquals(1.0, mutations("updated"));
+        assertEquals(1.0, mutations("removed"));
+    }
+
+    private double mutations(String type) {
+        Counter counter = meterRegistry.find("pipeline.mutations")
+                .tags("pipeline", "metrics-reset", "type", type, "source", "remote")
+                .counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
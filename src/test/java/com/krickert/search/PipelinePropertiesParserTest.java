@@ -0,0 +1,98 @@
+package com.krickert.search;
+
+import com.krickert.search.pipeline.PipelineConfig;
+import com.krickert.search.pipeline.PipelinePropertiesParser;
+import com.krickert.search.pipeline.ServiceConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelinePropertiesParserTest {
+
+    @Test
+    void parsesCommaSeparatedAndIndexedLists() throws Exception {
+        String properties = """
+                # comment
+                ! also a comment
+                other.key=ignored
+                pipeline.configs.pipeline1.service.chunker.kafka-listen-topics[0]=solr-documents
+                pipeline.configs.pipeline1.service.chunker.kafka-listen-topics[2] = tika-documents
+                pipeline.configs.pipeline1.service.chunker.kafka-listen-topics[1]=input-documents
+                pipeline.configs.pipeline1.service.chunker.kafka-publish-topics=chunker-results, other
+                pipeline.configs.pipeline1.service.solr-indexer.grpc-forward-to=null
+                pipeline.configs.pipeline1.service.embedder.kafkaListenTopics:chunker-results
+                pipeline.configs.pipeline1.service.embedder.grpc-forward-to=solr-indexer,\\
+                    audit
+                pipeline.configs.pipeline2.service.importer.kafka-publish-topics=input-documents
+                """;
+
+        Map<String, PipelineConfig> pipelines = PipelinePropertiesParser.parse(new StringReader(properties));
+
+        assertEquals(2, pipelines.size());
+        Map<String, ServiceConfiguration> services = pipelines.get("pipeline1").getService();
+        assertEquals(3, services.size());
+        ServiceConfiguration chunker = services.get("chunker");
+        assertEquals(List.of("solr-documents", "input-documents", "tika-documents"), chunker.getKafkaListenTopics());
+        assertEquals(List.of("chunker-results", "other"), chunker.getKafkaPublishTopics());
+        assertNull(chunker.getGrpcForwardTo());
+        assertNull(services.get("solr-indexer").getGrpcForwardTo());
+        assertEquals(List.of("chunker-results"), services.get("embedder").getKafkaListenTopics());
+        assertEquals(List.of("solr-indexer", "audit"), services.get("embedder").getGrpcForwardTo());
+        assertTrue(pipelines.get("pipeline2").containsService("importer"));
+    }
+
+    @Test
+    void parsesFiftyThousandServicesQuickly() {
+        Reader input = new SyntheticPipelineReader(50_000);
+        Map<String, PipelineConfig> pipelines = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> PipelinePropertiesParser.parse(input));
+        assertEquals(50_000, pipelines.get("pipeline1").getService().size());
+        assertEquals(List.of("topic-41", "topic-42"),
+                pipelines.get("pipeline1").getService().get("svc-42").getKafkaListenTopics());
+    }
+
+    /**
+     * Generates a large pipeline file on the fly so the test never holds the whole text in memory.
+     */
+    private static final class SyntheticPipelineReader extends Reader {
+
+        private final int services;
+        private int next;
+        private String pending = "";
+        private int offset;
+
+        private SyntheticPipelineReader(int services) {
+            this.services = services;
+        }
+
+        @Override
+        public int read(char[] buffer, int off, int len) {
+            if (offset == pending.length()) {
+                if (next == services) {
+                    return -1;
+                }
+                int i = next++;
+                String prefix = "pipeline.configs.pipeline1.service.svc-" + i + ".";
+                pending = prefix + "kafka-listen-topics[0]=topic-" + Math.max(0, i - 1) + "\n"
+                        + prefix + "kafka-listen-topics[1]=topic-" + i + "\n"
+                        + prefix + "kafka-publish-topics=topic-" + (i + 1) + "\n"
+                        + prefix + "grpc-forward-to=svc-" + (i + 1) + "\n";
+                offset = 0;
+            }
+            int count = Math.min(len, pending.length() - offset);
+            pending.getChars(offset, offset + count, buffer, off);
+            offset += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
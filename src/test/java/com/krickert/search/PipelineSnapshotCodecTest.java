@@ -0,0 +1,42 @@
+package com.krickert.search;
+
+import com.krickert.search.pipeline.PipelineConfig;
+import com.krickert.search.pipeline.PipelinePropertiesParser;
+import com.krickert.search.pipeline.PipelineSnapshotCodec;
+import com.krickert.search.pipeline.ServiceConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineSnapshotCodecTest {
+
+    @Test
+    void snapshotRoundTripsDefaultPipelines() throws Exception {
+        Map<String, PipelineConfig> parsed;
+        try (InputStream input = getClass().getClassLoader().getResourceAsStream("pipeline.default.properties")) {
+            assertNotNull(input);
+            parsed = PipelinePropertiesParser.parse(new InputStreamReader(input, StandardCharsets.ISO_8859_1));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PipelineSnapshotCodec.write(parsed, 42L, out);
+        Map<String, PipelineConfig> loaded = PipelineSnapshotCodec.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(parsed.keySet(), loaded.keySet());
+        Map<String, ServiceConfiguration> expected = parsed.get("pipeline1").getService();
+        Map<String, ServiceConfiguration> actual = loaded.get("pipeline1").getService();
+        assertEquals(expected.keySet(), actual.keySet());
+        expected.forEach((name, service) -> {
+            assertEquals(service.getKafkaListenTopics(), actual.get(name).getKafkaListenTopics(), name);
+            assertEquals(service.getKafkaPublishTopics(), actual.get(name).getKafkaPublishTopics(), name);
+            assertEquals(service.getGrpcForwardTo(), actual.get(name).getGrpcForwardTo(), name);
+        });
+    }
+}
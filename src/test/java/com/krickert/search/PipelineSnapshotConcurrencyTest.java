@@ -0,0 +1,109 @@
+package com.krickert.search;
+
+import com.krickert.search.pipeline.PipelineConfig;
+import com.krickert.search.pipeline.PipelineSnapshot;
+import com.krickert.search.pipeline.ServiceConfiguration;
+import com.krickert.search.pipeline.ServiceConfigurationDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineSnapshotConcurrencyTest {
+
+    private static final int WRITERS = 4;
+    private static final int WRITES_PER_WRITER = 500;
+
+    @Test
+    void concurrentWritersAndReadersSeeConsistentSnapshots() throws Exception {
+        PipelineConfig config = new PipelineConfig("pipeline1");
+        config.setService(Map.of());
+        long startVersion = config.getVersion();
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + 2);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int w = 0; w < WRITERS; w++) {
+                int writer = w;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < WRITES_PER_WRITER; i++) {
+                        ServiceConfigurationDto dto = new ServiceConfigurationDto();
+                        dto.setName("svc-" + writer + "-" + i);
+                        dto.setKafkaPublishTopics(List.of("topic-" + writer));
+                        config.addOrUpdateService(dto);
+                    }
+                    return null;
+                }));
+            }
+            for (int r = 0; r < 2; r++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    long lastVersion = -1;
+                    while (writing.get()) {
+                        PipelineSnapshot snapshot = config.snapshot();
+                        assertTrue(snapshot.version() >= lastVersion, "versions must not go backwards");
+                        lastVersion = snapshot.version();
+                        int publishers = 0;
+                        for (ServiceConfiguration service : snapshot.services().values()) {
+                            assertNotNull(service.getName());
+                            publishers++;
+                        }
+                        assertEquals(snapshot.services().size(), publishers);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < WRITERS; i++) {
+                futures.get(i).get(30, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(WRITERS * WRITES_PER_WRITER, config.getService().size());
+        assertEquals(startVersion + WRITERS * WRITES_PER_WRITER, config.getVersion());
+        for (int w = 0; w < WRITERS; w++) {
+            assertEquals(WRITES_PER_WRITER, config.publishersOf("topic-" + w).size());
+        }
+        assertThrows(UnsupportedOperationException.class, () -> config.getService().remove("svc-0-0"));
+    }
+
+    @Test
+    void changesThatChangeNothingKeepTheVersion() {
+        PipelineConfig config = new PipelineConfig("pipeline1");
+        config.setService(Map.of());
+        ServiceConfigurationDto dto = new ServiceConfigurationDto();
+        dto.setName("chunker");
+        dto.setKafkaPublishTopics(List.of("chunks"));
+        PipelineSnapshot added = config.addOrUpdateService(dto);
+        List<Long> published = new ArrayList<>();
+        config.addChangeListener(change -> published.add(change.current().version()));
+
+        assertSame(added, config.deleteService("missing"));
+        dto.setKafkaPublishTopics(new ArrayList<>(List.of("chunks")));
+        assertSame(added, config.addOrUpdateService(dto));
+        assertSame(added, config.snapshot());
+        assertEquals(List.of(), published);
+
+        dto.setKafkaPublishTopics(List.of("other"));
+        assertEquals(added.version() + 1, config.addOrUpdateService(dto).version());
+        assertEquals(List.of(added.version() + 1), published);
+    }
+}
@@ -0,0 +1,67 @@
+package com.krickert.search;
+
+import com.krickert.search.pipeline.PipelineSnapshot;
+import com.krickert.search.pipeline.PipelineSubgraph;
+import com.krickert.search.pipeline.PipelineSubgraph.Direction;
+import com.krickert.search.pipeline.ServiceConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineSubgraphTest {
+
+    // importer -> input-documents -> chunker -> chunks -> embedder -(grpc)-> solr-indexer
+    //                                                   -> audit
+    private final PipelineSnapshot snapshot = PipelineSnapshot.of("p", 1, Map.of(
+            "importer", ServiceConfiguration.of("importer", null, List.of("input-documents"), null),
+            "chunker", ServiceConfiguration.of("chunker", List.of("input-documents"), List.of("chunks"), null),
+            "embedder", ServiceConfiguration.of("embedder", List.of("chunks"), null, List.of("solr-indexer")),
+            "audit", ServiceConfiguration.of("audit", List.of("chunks"), null, null),
+            "solr-indexer", ServiceConfiguration.of("solr-indexer", null, null, null),
+            "unrelated", ServiceConfiguration.of("unrelated", List.of("other"), List.of("other-out"), null)));
+
+    @Test
+    void walksUpstreamThroughTopicsAndForwards() {
+        assertEquals(Set.of("solr-indexer", "embedder"), slice("solr-indexer", 1, Direction.UP));
+        assertEquals(Set.of("solr-indexer", "embedder", "chunker", "importer"), slice("solr-indexer", 10, Direction.UP));
+    }
+
+    @Test
+    void walksDownstreamAndBoundsDepth() {
+        assertEquals(Set.of("chunker"), slice("chunker", 0, Direction.DOWN));
+        assertEquals(Set.of("chunker", "embedder", "audit"), slice("chunker", 1, Direction.DOWN));
+        assertEquals(Set.of("chunker", "embedder", "audit", "solr-indexer"), slice("chunker", 2, Direction.DOWN));
+    }
+
+    @Test
+    void bothIsTheUnionWithoutSiblings() {
+        // audit shares an input with embedder but is neither upstream nor downstream of it.
+        assertEquals(Set.of("embedder", "chunker", "importer", "solr-indexer"), slice("embedder", 5, Direction.BOTH));
+        assertEquals("embedder", PipelineSubgraph.of(snapshot, "embedder", 5, Direction.BOTH)
+                .services().keySet().iterator().next());
+    }
+
+    @Test
+    void unknownServiceHasNoSubgraph() {
+        assertNull(PipelineSubgraph.of(snapshot, "missing", 2, Direction.BOTH));
+    }
+
+    @Test
+    void longChainsOnlyVisitTheRequestedDepth() {
+        Map<String, ServiceConfiguration> services = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            services.put("s" + i, ServiceConfiguration.of("s" + i, null, null, List.of("s" + (i + 1))));
+        }
+        PipelineSubgraph subgraph = PipelineSubgraph.of(PipelineSnapshot.of("chain", 1, services), "s5000", 3, Direction.BOTH);
+        assertEquals(Set.of("s4997", "s4998", "s4999", "s5000", "s5001", "s5002", "s5003"), subgraph.services().keySet());
+    }
+
+    private Set<String> slice(String service, int depth, Direction direction) {
+        return PipelineSubgraph.of(snapshot, service, depth, direction).services().keySet();
+    }
+}
@@ -0,0 +1,74 @@
+package com.krickert.search;
+
+import com.krickert.search.pipeline.PipelineConfig;
+import com.krickert.search.pipeline.PipelineSnapshot;
+import com.krickert.search.pipeline.ServiceConfiguration;
+import com.krickert.search.pipeline.ServiceConfigurationDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServiceGraphIndexTest {
+
+    @Test
+    void indexTracksTopicsAndForwardsThroughMutations() {
+        PipelineConfig config = new PipelineConfig("pipeline1");
+        Map<String, ServiceConfiguration> services = new HashMap<>();
+        ServiceConfiguration chunker = new ServiceConfiguration(null, List.of("input-documents"),
+                List.of("chunker-results"), List.of("embedder"));
+        services.put("chunker", chunker);
+        config.setService(services);
+
+        assertEquals(Set.of("chunker"), config.listenersOf("input-documents"));
+        assertEquals(Set.of("chunker"), config.publishersOf("chunker-results"));
+        assertEquals(Set.of("chunker"), config.forwardSourcesOf("embedder"));
+
+        config.addOrUpdateService(dto("embedder", List.of("chunker-results"), List.of("enhanced-documents"), List.of()));
+        assertEquals(Set.of("embedder"), config.listenersOf("chunker-results"));
+
+        config.deleteService("Embedder");
+        assertFalse(config.containsService("Embedder"));
+        assertTrue(config.forwardSourcesOf("embedder").isEmpty());
+        assertTrue(config.getService().get("chunker").getGrpcForwardTo().isEmpty());
+
+        config.deleteService("embedder");
+        assertTrue(config.listenersOf("chunker-results").isEmpty());
+        assertTrue(config.publishersOf("enhanced-documents").isEmpty());
+    }
+
+    @Test
+    void publishedIndexIsUnchangedByLaterVersions() {
+        PipelineConfig config = new PipelineConfig("pipeline1");
+        for (int i = 0; i < 100; i++) {
+            config.addOrUpdateService(dto("svc-" + i, List.of("topic-" + i), List.of("topic-" + (i + 1)),
+                    List.of("svc-" + (i + 1))));
+        }
+        PipelineSnapshot before = config.snapshot();
+
+        config.addOrUpdateService(dto("svc-50", List.of("topic-0"), List.of(), List.of()));
+        config.deleteService("svc-51");
+        PipelineSnapshot after = config.snapshot();
+
+        assertEquals(Set.of("svc-50"), before.index().listenersOf("topic-50"));
+        assertEquals(Set.of("svc-0", "svc-50"), after.index().listenersOf("topic-0"));
+        assertEquals(Set.of("svc-0"), before.index().listenersOf("topic-0"));
+        assertTrue(after.index().listenersOf("topic-50").isEmpty());
+        assertEquals(Set.of("svc-50"), before.index().forwardSourcesOf("svc-51"));
+        assertTrue(after.index().forwardSourcesOf("svc-51").isEmpty());
+        assertEquals(before.index().topics().size() - 1, after.index().topics().size());
+    }
+
+    private static ServiceConfigurationDto dto(String name, List<String> listen, List<String> publish, List<String> forward) {
+        ServiceConfigurationDto dto = new ServiceConfigurationDto();
+        dto.setName(name);
+        dto.setKafkaListenTopics(listen);
+        dto.setKafkaPublishTopics(publish);
+        dto.setGrpcForwardTo(forward);
+        return dto;
+    }
+}